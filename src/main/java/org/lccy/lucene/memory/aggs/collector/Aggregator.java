@@ -59,6 +59,11 @@ public abstract class Aggregator extends BucketCollector {
     public abstract InternalAggregation doBuildEmptyAggregation();
 
 
+    /**
+     * 返回当前分组收集器（包括子分组）对应的不可变分组定义，查询时通过分组定义创建新的分组收集器，当前对象不会被收集
+     */
+    public abstract AggregatorFactory factory();
+
     /**
      * 是否已经收集
      */
@@ -113,6 +113,17 @@ public abstract class AggregatorBase extends Aggregator {
         return subAggregators;
     }
 
+    /**
+     * 子分组收集器对应的分组定义
+     */
+    protected final List<AggregatorFactory> subFactories() {
+        List<AggregatorFactory> factories = new ArrayList<>(subAggregators.size());
+        for (Aggregator subAggregator : subAggregators) {
+            factories.add(subAggregator.factory());
+        }
+        return factories;
+    }
+
     protected final List<InternalAggregation> buildEmptySubAggregations() {
         List<InternalAggregation> aggs = new ArrayList<>();
         for (Aggregator aggregator : subAggregators) {
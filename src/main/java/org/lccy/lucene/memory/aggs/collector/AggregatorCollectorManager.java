@@ -0,0 +1,84 @@
+package org.lccy.lucene.memory.aggs.collector;
+
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.FilterCollector;
+import org.apache.lucene.search.MultiCollector;
+import org.lccy.lucene.memory.aggs.collector.aggregation.InternalAggregation;
+import org.lccy.lucene.memory.search.SearchContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 分组收集的CollectorManager：每个切片通过分组定义创建各自的分组收集器，检索完成后构造各切片的分组结果并按位置合并<br/>
+ * 并行检索或分片查询时各切片收集部分结果，只有一个切片且为最终合并时直接收集完整结果
+ *
+ * @Date: 2026/10/17 23:50 <br>
+ * @author: liuchen11
+ */
+public class AggregatorCollectorManager implements CollectorManager<AggregatorCollectorManager.AggregatorsCollector, List<InternalAggregation>> {
+
+    private final List<AggregatorFactory> factories;
+    private final SearchContext searchContext;
+    // 是否为最终合并，分片查询时各分片的结果还需要继续合并
+    private final boolean finalReduce;
+    // 是否收集部分结果
+    private final boolean partial;
+
+    /**
+     * @param factories     分组定义
+     * @param searchContext 查询上下文，所有切片共享
+     * @param finalReduce   是否为最终合并
+     */
+    public AggregatorCollectorManager(List<AggregatorFactory> factories, SearchContext searchContext, boolean finalReduce) {
+        this.factories = factories;
+        this.searchContext = searchContext;
+        this.finalReduce = finalReduce;
+        this.partial = !finalReduce || searchContext.getSearcher().getExecutor() != null;
+    }
+
+    @Override
+    public AggregatorsCollector newCollector() throws IOException {
+        List<Aggregator> aggregators = AggregatorFactory.createAll(factories, partial);
+        for (Aggregator aggregator : aggregators) {
+            aggregator.preCollection(searchContext);
+        }
+        return new AggregatorsCollector(aggregators);
+    }
+
+    @Override
+    public List<InternalAggregation> reduce(Collection<AggregatorsCollector> collectors) throws IOException {
+        List<List<InternalAggregation>> sliceAggregations = new ArrayList<>(collectors.size());
+        for (AggregatorsCollector collector : collectors) {
+            List<InternalAggregation> aggregations = new ArrayList<>(collector.aggregators.size());
+            for (Aggregator aggregator : collector.aggregators) {
+                aggregator.postCollection(searchContext);
+                aggregations.add(aggregator.buildAggregation(0));
+            }
+            sliceAggregations.add(aggregations);
+        }
+        if (sliceAggregations.size() == 1 && (!partial || !finalReduce)) {
+            return sliceAggregations.get(0);
+        }
+        return InternalAggregation.reduceAll(sliceAggregations, finalReduce);
+    }
+
+    /**
+     * 一个切片的分组收集器
+     */
+    public static final class AggregatorsCollector extends FilterCollector {
+
+        private final List<Aggregator> aggregators;
+
+        AggregatorsCollector(List<Aggregator> aggregators) {
+            super(MultiCollector.wrap(aggregators));
+            this.aggregators = aggregators;
+        }
+
+        public List<Aggregator> getAggregators() {
+            return aggregators;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.lccy.lucene.memory.aggs.collector;
+
+import org.lccy.lucene.memory.aggs.collector.aggregation.InternalAggregation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分组定义，不可变，不保存查询过程中的状态，可以在多次查询、同一查询的多个切片/分片间复用<br/>
+ * 每次收集时通过{@link #create(Aggregator, boolean)}创建新的分组收集器（包括子分组），
+ * 各切片/分片的部分结果通过{@link InternalAggregation#reduce(List, boolean)}合并
+ *
+ * @Date: 2026/10/17 23:40 <br>
+ * @author: liuchen11
+ */
+public abstract class AggregatorFactory {
+
+    // 分组名称
+    protected final String name;
+    // 子分组定义
+    protected final List<AggregatorFactory> subFactories;
+
+    protected AggregatorFactory(String name, List<AggregatorFactory> subFactories) {
+        if (name == null) {
+            throw new IllegalArgumentException("aggregation name must not be null");
+        }
+        this.name = name;
+        this.subFactories = subFactories == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(subFactories));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<AggregatorFactory> getSubFactories() {
+        return subFactories;
+    }
+
+    /**
+     * 创建分组收集器及其子分组收集器
+     *
+     * @param parent  父分组收集器，顶层分组为null
+     * @param partial 是否收集部分结果，如terms返回全部分桶、top_hits返回前from+size个文档，合并后再截取
+     * @return
+     */
+    public final Aggregator create(Aggregator parent, boolean partial) {
+        AggregatorBase aggregator = createInternal(parent, partial);
+        for (AggregatorFactory subFactory : subFactories) {
+            aggregator.addSubAggregator(subFactory.create(aggregator, partial));
+        }
+        return aggregator;
+    }
+
+    protected abstract AggregatorBase createInternal(Aggregator parent, boolean partial);
+
+    /**
+     * 批量创建顶层分组收集器
+     */
+    public static List<Aggregator> createAll(List<AggregatorFactory> factories, boolean partial) {
+        List<Aggregator> aggregators = new ArrayList<>(factories.size());
+        for (AggregatorFactory factory : factories) {
+            aggregators.add(factory.create(null, partial));
+        }
+        return aggregators;
+    }
+}
@@ -1,5 +1,8 @@
 package org.lccy.lucene.memory.aggs.collector.aggregation;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 分组结果父类（内部用）
  *
@@ -37,4 +40,33 @@ public abstract class InternalAggregation implements Aggregation {
         }
         return maxScore;
     }
+
+    /**
+     * 合并同一个分组在各分片（或同一索引的各查询切片）上的部分结果
+     *
+     * @param aggregations 各分片的结果，包括当前对象
+     * @param finalReduce  是否为最终合并，非最终合并的结果仍然是部分结果（不截取分桶、文档），可以继续合并
+     * @return
+     */
+    public abstract InternalAggregation reduce(List<InternalAggregation> aggregations, boolean finalReduce);
+
+    /**
+     * 按位置合并各分片的分组结果，各分片的分组顺序一致
+     *
+     * @param shardAggregations 各分片的分组结果
+     * @param finalReduce       是否为最终合并
+     * @return
+     */
+    public static List<InternalAggregation> reduceAll(List<List<InternalAggregation>> shardAggregations, boolean finalReduce) {
+        int size = shardAggregations.get(0).size();
+        List<InternalAggregation> reduced = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            List<InternalAggregation> same = new ArrayList<>(shardAggregations.size());
+            for (List<InternalAggregation> aggregations : shardAggregations) {
+                same.add(aggregations.get(i));
+            }
+            reduced.add(same.get(0).reduce(same, finalReduce));
+        }
+        return reduced;
+    }
 }
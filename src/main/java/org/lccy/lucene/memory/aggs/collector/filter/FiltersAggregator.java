@@ -7,6 +7,7 @@ import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.Bits;
 import org.lccy.lucene.memory.aggs.collector.Aggregator;
+import org.lccy.lucene.memory.aggs.collector.AggregatorFactory;
 import org.lccy.lucene.memory.aggs.collector.BucketsAggregator;
 import org.lccy.lucene.memory.aggs.collector.aggregation.InternalAggregation;
 import org.lccy.lucene.memory.aggs.leaf.LeafBucketCollector;
@@ -136,7 +137,7 @@ public class FiltersAggregator extends BucketsAggregator {
             }
         }
 
-        return new InternalFilters(name, buckets);
+        return new InternalFilters(name, buckets, bucketsSort);
     }
 
     public InternalAggregation doBuildEmptyAggregation() {
@@ -152,6 +153,15 @@ public class FiltersAggregator extends BucketsAggregator {
             buckets.add(bucket);
         }
 
-        return new InternalFilters(name, buckets);
+        return new InternalFilters(name, buckets, bucketsSort);
+    }
+
+    @Override
+    public AggregatorFactory factory() {
+        List<KeyedFilter> filters = new ArrayList<>(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            filters.add(new KeyedFilter(keys[i], querys[i]));
+        }
+        return new FiltersAggregatorFactory(name, filters, otherBucketKey, bucketsSort, subFactories());
     }
 }
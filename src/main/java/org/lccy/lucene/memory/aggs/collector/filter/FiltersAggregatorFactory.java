@@ -0,0 +1,48 @@
+package org.lccy.lucene.memory.aggs.collector.filter;
+
+import org.lccy.lucene.memory.aggs.collector.Aggregator;
+import org.lccy.lucene.memory.aggs.collector.AggregatorBase;
+import org.lccy.lucene.memory.aggs.collector.AggregatorFactory;
+import org.lccy.lucene.memory.aggs.sort.BucketsSort;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Filters分组定义，每个过滤条件的Weight在收集时按查询的IndexSearcher创建
+ *
+ * @Date: 2026/10/17 23:45 <br>
+ * @author: liuchen11
+ */
+public class FiltersAggregatorFactory extends AggregatorFactory {
+
+    // 过滤条件
+    private final List<KeyedFilter> filters;
+    // 其他分桶的key，为null时不返回其他分桶
+    private final String otherBucketKey;
+    // 桶排序器
+    private final BucketsSort bucketsSort;
+
+    public FiltersAggregatorFactory(String name, List<KeyedFilter> filters, String otherBucketKey, BucketsSort bucketsSort) {
+        this(name, filters, otherBucketKey, bucketsSort, null);
+    }
+
+    public FiltersAggregatorFactory(String name, List<KeyedFilter> filters, String otherBucketKey, BucketsSort bucketsSort,
+                                    List<AggregatorFactory> subFactories) {
+        super(name, subFactories);
+        List<KeyedFilter> copy = new ArrayList<>(filters.size());
+        for (KeyedFilter filter : filters) {
+            copy.add(new KeyedFilter(filter.getKey(), filter.getQuery()));
+        }
+        this.filters = Collections.unmodifiableList(copy);
+        this.otherBucketKey = otherBucketKey;
+        this.bucketsSort = bucketsSort;
+    }
+
+    @Override
+    protected AggregatorBase createInternal(Aggregator parent, boolean partial) {
+        // 各分桶的文档数可以直接累加，部分结果与完整结果相同
+        return new FiltersAggregator(name, parent, filters, otherBucketKey, bucketsSort);
+    }
+}
@@ -1,9 +1,12 @@
 package org.lccy.lucene.memory.aggs.collector.filter;
 
 import org.lccy.lucene.memory.aggs.collector.aggregation.InternalAggregation;
+import org.lccy.lucene.memory.aggs.sort.BucketsSort;
 import org.lccy.lucene.memory.util.CommonUtil;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -16,11 +19,18 @@ import java.util.Map;
 public class InternalFilters extends InternalAggregation implements Filters {
 
     private final List<InternalBucket> buckets;
+    // 合并分片结果时使用的排序，为空时按filter的顺序
+    private final BucketsSort bucketsSort;
     private transient Map<String, InternalBucket> bucketMap;
 
     public InternalFilters(String name, List<InternalBucket> buckets) {
+        this(name, buckets, null);
+    }
+
+    public InternalFilters(String name, List<InternalBucket> buckets, BucketsSort bucketsSort) {
         super(name);
         this.buckets = buckets;
+        this.bucketsSort = bucketsSort;
     }
 
     @Override
@@ -54,6 +64,35 @@ public class InternalFilters extends InternalAggregation implements Filters {
         return maxScoreLocal;
     }
 
+    /**
+     * 相同key的分桶累加文档数并合并子分组
+     */
+    @Override
+    public InternalAggregation reduce(List<InternalAggregation> aggregations, boolean finalReduce) {
+        Map<String, List<InternalBucket>> sameBuckets = new LinkedHashMap<>();
+        for (InternalAggregation aggregation : aggregations) {
+            for (InternalBucket bucket : ((InternalFilters) aggregation).buckets) {
+                sameBuckets.computeIfAbsent(bucket.key, key -> new ArrayList<>(aggregations.size())).add(bucket);
+            }
+        }
+
+        List<InternalBucket> reducedBuckets = new ArrayList<>(sameBuckets.size());
+        for (Map.Entry<String, List<InternalBucket>> entry : sameBuckets.entrySet()) {
+            long docCount = 0;
+            List<List<InternalAggregation>> subAggregations = new ArrayList<>(entry.getValue().size());
+            for (InternalBucket bucket : entry.getValue()) {
+                docCount += bucket.docCount;
+                subAggregations.add(bucket.aggregations);
+            }
+            List<InternalAggregation> reduced = CommonUtil.isNotEmpty(subAggregations.get(0)) ? reduceAll(subAggregations, finalReduce) : subAggregations.get(0);
+            reducedBuckets.add(new InternalBucket(entry.getKey(), docCount, reduced));
+        }
+        if (bucketsSort != null) {
+            reducedBuckets.sort(bucketsSort.getComparator());
+        }
+        return new InternalFilters(getName(), reducedBuckets, bucketsSort);
+    }
+
     public static class InternalBucket implements Filters.Bucket {
 
         private final String key;
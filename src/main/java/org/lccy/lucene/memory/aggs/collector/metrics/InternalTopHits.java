@@ -1,8 +1,18 @@
 package org.lccy.lucene.memory.aggs.collector.metrics;
 
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
 import org.lccy.lucene.memory.aggs.collector.aggregation.InternalAggregation;
+import org.lccy.lucene.memory.constants.Constants;
 import org.lccy.lucene.memory.search.SearchHits;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Top aggs的结果实现类
  *
@@ -13,11 +23,24 @@ public class InternalTopHits extends InternalAggregation implements TopHits {
 
     private final SearchHits hits;
     private final float maxScore;
+    // 分片查询的部分结果，hits中的文档与topDocs的前几个一一对应，用于合并
+    private final TopDocs topDocs;
+    private final Sort sort;
+    private final int from;
+    private final int size;
 
     public InternalTopHits(String name, SearchHits hits, float maxScore) {
+        this(name, hits, maxScore, null, null, 0, 0);
+    }
+
+    public InternalTopHits(String name, SearchHits hits, float maxScore, TopDocs topDocs, Sort sort, int from, int size) {
         super(name);
         this.hits = hits;
         this.maxScore = maxScore;
+        this.topDocs = topDocs;
+        this.sort = sort;
+        this.from = from;
+        this.size = size;
     }
 
     @Override
@@ -29,4 +52,67 @@ public class InternalTopHits extends InternalAggregation implements TopHits {
     public SearchHits getHits() {
         return hits;
     }
+
+    /**
+     * 按排序合并各分片的topDocs，最终合并时截取from开始的size个文档，否则保留前from+size个文档
+     */
+    @Override
+    public InternalAggregation reduce(List<InternalAggregation> aggregations, boolean finalReduce) {
+        List<InternalTopHits> shardHits = new ArrayList<>(aggregations.size());
+        // 分片topDocs中的文档 -> 在该分片结果中的位置
+        Map<ScoreDoc, Integer> positions = new IdentityHashMap<>();
+        float maxScoreTotal = Float.NaN;
+        for (InternalAggregation aggregation : aggregations) {
+            InternalTopHits topHits = (InternalTopHits) aggregation;
+            if (topHits.topDocs == null) {
+                continue;
+            }
+            shardHits.add(topHits);
+            int count = topHits.hits.getDocuments().size();
+            for (int i = 0; i < count; i++) {
+                positions.put(topHits.topDocs.scoreDocs[i], i);
+            }
+            if (Float.isNaN(maxScoreTotal) || maxScoreTotal < topHits.maxScore) {
+                maxScoreTotal = topHits.maxScore;
+            }
+        }
+        if (shardHits.isEmpty()) {
+            return this;
+        }
+
+        int start = finalReduce ? from : 0;
+        int topN = finalReduce ? size : from + size;
+        TopDocs merged;
+        if (sort == null) {
+            TopDocs[] shardDocs = new TopDocs[shardHits.size()];
+            for (int i = 0; i < shardDocs.length; i++) {
+                shardDocs[i] = shardHits.get(i).topDocs;
+            }
+            merged = TopDocs.merge(start, topN, shardDocs, true);
+        } else {
+            TopFieldDocs[] shardDocs = new TopFieldDocs[shardHits.size()];
+            for (int i = 0; i < shardDocs.length; i++) {
+                shardDocs[i] = (TopFieldDocs) shardHits.get(i).topDocs;
+            }
+            merged = TopDocs.merge(sort, start, topN, shardDocs, true);
+        }
+
+        SearchHits reducedHits = new SearchHits();
+        reducedHits.setDocuments(new ArrayList<>(merged.scoreDocs.length));
+        float maxHitScore = Float.NEGATIVE_INFINITY;
+        for (ScoreDoc scoreDoc : merged.scoreDocs) {
+            // 合并时设置了shardIndex，即所在分片在shardHits中的位置
+            SearchHits shard = shardHits.get(scoreDoc.shardIndex).hits;
+            int position = positions.get(scoreDoc);
+            reducedHits.getDocuments().add(shard.getDocuments().get(position));
+            float score = ((Number) shard.getDocuments().get(position).get(Constants._SCORE)).floatValue();
+            if (maxHitScore < score) {
+                maxHitScore = score;
+            }
+        }
+        reducedHits.setTotal(merged.totalHits.value);
+        reducedHits.setMaxScore(maxHitScore);
+        reducedHits.setSortFields(shardHits.get(0).hits.getSortFields());
+        return new InternalTopHits(getName(), reducedHits, maxScoreTotal, merged, sort, from, size);
+    }
 }
@@ -4,6 +4,7 @@ import com.carrotsearch.hppc.LongObjectHashMap;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.*;
 import org.lccy.lucene.memory.aggs.collector.Aggregator;
+import org.lccy.lucene.memory.aggs.collector.AggregatorFactory;
 import org.lccy.lucene.memory.aggs.collector.MaxScoreCollector;
 import org.lccy.lucene.memory.aggs.collector.aggregation.InternalAggregation;
 import org.lccy.lucene.memory.aggs.leaf.LeafBucketCollector;
@@ -29,6 +30,8 @@ public class TopHitsAggregator extends MetricsAggregator {
     private final TopHitsAggsConfig topHitsAggs;
     private final LongObjectHashMap<Collectors> topDocsCollectors;
     private SearchContext searchContext;
+    // 分片查询时返回前from+size个文档，合并各分片的结果后再截取
+    boolean partial;
 
     public TopHitsAggregator(String name, Aggregator parent, TopHitsAggsConfig context) {
         super(name, parent);
@@ -116,6 +119,11 @@ public class TopHitsAggregator extends MetricsAggregator {
             maxScore = collectors.maxScoreCollector.getMaxScore();
         }
 
+        Sort sort = topHitsAggs.getSort(searchContext.getIndexConfig());
+        if (partial) {
+            SearchHits hits = SearchHitsBuilder.buildHits(topDocs, searchContext, topHitsAggs, 0, topHitsAggs.getFrom() + topHitsAggs.getSize());
+            return new InternalTopHits(name, hits, maxScore, topDocs, sort, topHitsAggs.getFrom(), topHitsAggs.getSize());
+        }
         SearchHits hits = SearchHitsBuilder.buildHits(topDocs, searchContext, topHitsAggs);
 
         return new InternalTopHits(name, hits, maxScore);
@@ -129,7 +137,12 @@ public class TopHitsAggregator extends MetricsAggregator {
             hits.setSortFields(sort.getSort());
         }
         hits.setDocuments(new ArrayList<>(0));
-        return new InternalTopHits(name, hits, Float.NaN);
+        return new InternalTopHits(name, hits, Float.NaN, null, sort, topHitsAggs.getFrom(), topHitsAggs.getSize());
+    }
+
+    @Override
+    public AggregatorFactory factory() {
+        return new TopHitsAggregatorFactory(name, topHitsAggs, subFactories());
     }
 
 
@@ -0,0 +1,35 @@
+package org.lccy.lucene.memory.aggs.collector.metrics;
+
+import org.lccy.lucene.memory.aggs.collector.Aggregator;
+import org.lccy.lucene.memory.aggs.collector.AggregatorBase;
+import org.lccy.lucene.memory.aggs.collector.AggregatorFactory;
+
+import java.util.List;
+
+/**
+ * Top hits分组定义
+ *
+ * @Date: 2026/10/17 23:45 <br>
+ * @author: liuchen11
+ */
+public class TopHitsAggregatorFactory extends AggregatorFactory {
+
+    // top hits配置，创建后不应再修改
+    private final TopHitsAggsConfig config;
+
+    public TopHitsAggregatorFactory(String name, TopHitsAggsConfig config) {
+        this(name, config, null);
+    }
+
+    public TopHitsAggregatorFactory(String name, TopHitsAggsConfig config, List<AggregatorFactory> subFactories) {
+        super(name, subFactories);
+        this.config = config;
+    }
+
+    @Override
+    protected AggregatorBase createInternal(Aggregator parent, boolean partial) {
+        TopHitsAggregator aggregator = new TopHitsAggregator(name, parent, config);
+        aggregator.partial = partial;
+        return aggregator;
+    }
+}
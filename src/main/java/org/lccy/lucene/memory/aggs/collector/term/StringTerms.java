@@ -2,9 +2,13 @@ package org.lccy.lucene.memory.aggs.collector.term;
 
 import org.lccy.lucene.memory.aggs.collector.aggregation.Aggregation;
 import org.lccy.lucene.memory.aggs.collector.aggregation.InternalAggregation;
+import org.lccy.lucene.memory.aggs.sort.BucketsSort;
 import org.lccy.lucene.memory.util.CommonUtil;
+import org.lccy.lucene.memory.util.OrderedQueue;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -19,13 +23,22 @@ public class StringTerms extends InternalAggregation implements Terms {
     private final List<InternalBucket> buckets;
     private final long otherDocCount;
     private final long bucketCounts;
+    // 合并分片结果时使用的排序和分桶数
+    private final BucketsSort bucketsSort;
+    private final int size;
     private transient Map<String, InternalBucket> bucketMap;
 
     public StringTerms(String name, List<InternalBucket> buckets, long otherDocCount, long bucketCounts) {
+        this(name, buckets, otherDocCount, bucketCounts, BucketsSort.COUNT_DESC, -1);
+    }
+
+    public StringTerms(String name, List<InternalBucket> buckets, long otherDocCount, long bucketCounts, BucketsSort bucketsSort, int size) {
         super(name);
         this.buckets = buckets;
         this.otherDocCount = otherDocCount;
         this.bucketCounts = bucketCounts;
+        this.bucketsSort = bucketsSort;
+        this.size = size;
     }
 
     @Override
@@ -69,6 +82,42 @@ public class StringTerms extends InternalAggregation implements Terms {
         return maxScoreLocal;
     }
 
+    /**
+     * 相同term的分桶累加文档数并合并子分组，最终合并时重新排序并截取size个分桶
+     */
+    @Override
+    public InternalAggregation reduce(List<InternalAggregation> aggregations, boolean finalReduce) {
+        Map<String, List<InternalBucket>> sameBuckets = new LinkedHashMap<>();
+        long otherDocCountTotal = 0;
+        for (InternalAggregation aggregation : aggregations) {
+            StringTerms terms = (StringTerms) aggregation;
+            otherDocCountTotal += terms.otherDocCount;
+            for (InternalBucket bucket : terms.buckets) {
+                sameBuckets.computeIfAbsent(bucket.term, key -> new ArrayList<>(aggregations.size())).add(bucket);
+            }
+        }
+
+        int bucketSize = sameBuckets.size();
+        OrderedQueue<InternalBucket> orderedBuckets = new OrderedQueue<InternalBucket>(bucketSize, bucketsSort.getComparator());
+        for (Map.Entry<String, List<InternalBucket>> entry : sameBuckets.entrySet()) {
+            long docCount = 0;
+            List<List<InternalAggregation>> subAggregations = new ArrayList<>(entry.getValue().size());
+            for (InternalBucket bucket : entry.getValue()) {
+                docCount += bucket.docCount;
+                subAggregations.add(bucket.aggregations);
+            }
+            List<InternalAggregation> reduced = CommonUtil.isNotEmpty(subAggregations.get(0)) ? reduceAll(subAggregations, finalReduce) : subAggregations.get(0);
+            orderedBuckets.insertWithOverflow(new InternalBucket(entry.getKey(), docCount, reduced));
+        }
+
+        int gotSize = size == -1 || !finalReduce ? bucketSize : Math.min(size, bucketSize);
+        List<InternalBucket> list = new ArrayList<>(gotSize);
+        for (int i = 0; i < gotSize; i++) {
+            list.add(orderedBuckets.pop());
+        }
+        return new StringTerms(getName(), list, otherDocCountTotal, bucketSize, bucketsSort, size);
+    }
+
     public static class InternalBucket implements Terms.Bucket {
 
         private String term;
@@ -5,6 +5,7 @@ import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
 import org.lccy.lucene.memory.aggs.collector.Aggregator;
+import org.lccy.lucene.memory.aggs.collector.AggregatorFactory;
 import org.lccy.lucene.memory.aggs.collector.aggregation.InternalAggregation;
 import org.lccy.lucene.memory.aggs.leaf.LeafBucketCollector;
 import org.lccy.lucene.memory.aggs.leaf.LeafBucketCollectorBase;
@@ -94,17 +95,22 @@ public class StringTermsAggregator extends TermsAggregator {
 
         // Get the top size buckets
         final List<StringTerms.InternalBucket> list = new ArrayList<>(bucketSize);
-        int gotSize = size == -1 ? bucketSize : size;
+        int gotSize = size == -1 || partial ? bucketSize : size;
         for (int i = bucketSize - 1; i >= bucketSize - gotSize; --i) {
             final StringTerms.InternalBucket bucket = orderedBuckets.pop();
             list.add(bucket);
         }
 
-        return new StringTerms(name, list, otherDocCount, bucketSize);
+        return new StringTerms(name, list, otherDocCount, bucketSize, bucketsSorter, size);
     }
 
     @Override
     public InternalAggregation doBuildEmptyAggregation() {
-        return new StringTerms(name, new ArrayList<>(0), 0, 0);
+        return new StringTerms(name, new ArrayList<>(0), 0, 0, bucketsSort == null ? BucketsSort.COUNT_DESC : bucketsSort, size);
+    }
+
+    @Override
+    public AggregatorFactory factory() {
+        return new StringTermsAggregatorFactory(name, field, bucketsSort, size, subFactories());
     }
 }
@@ -0,0 +1,43 @@
+package org.lccy.lucene.memory.aggs.collector.term;
+
+import org.lccy.lucene.memory.aggs.collector.Aggregator;
+import org.lccy.lucene.memory.aggs.collector.AggregatorBase;
+import org.lccy.lucene.memory.aggs.collector.AggregatorFactory;
+import org.lccy.lucene.memory.aggs.sort.BucketsSort;
+
+import java.util.List;
+
+/**
+ * 字符串terms分组定义
+ *
+ * @Date: 2026/10/17 23:45 <br>
+ * @author: liuchen11
+ */
+public class StringTermsAggregatorFactory extends AggregatorFactory {
+
+    // term分桶字段
+    private final String field;
+    // 桶排序器
+    private final BucketsSort bucketsSort;
+    // term分桶返回的大小，-1时返回全部
+    private final int size;
+
+    public StringTermsAggregatorFactory(String name, String field, BucketsSort bucketsSort, int size) {
+        this(name, field, bucketsSort, size, null);
+    }
+
+    public StringTermsAggregatorFactory(String name, String field, BucketsSort bucketsSort, int size, List<AggregatorFactory> subFactories) {
+        super(name, subFactories);
+        this.field = field;
+        this.bucketsSort = bucketsSort;
+        this.size = size;
+    }
+
+    @Override
+    protected AggregatorBase createInternal(Aggregator parent, boolean partial) {
+        StringTermsAggregator aggregator = new StringTermsAggregator(name, field, parent, bucketsSort);
+        aggregator.setSize(size);
+        aggregator.partial = partial;
+        return aggregator;
+    }
+}
@@ -17,6 +17,8 @@ public abstract class TermsAggregator extends BucketsAggregator {
     protected String field;
     // term分桶返回的大小
     protected int size = -1;
+    // 分片查询时返回全部分桶，合并各分片的结果后再截取size个
+    protected boolean partial;
 
     public TermsAggregator(String name, String field, Aggregator parent, BucketsSort bucketsSort) {
         super(name, parent, bucketsSort);
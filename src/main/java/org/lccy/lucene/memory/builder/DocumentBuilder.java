@@ -1,9 +1,19 @@
 package org.lccy.lucene.memory.builder;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.StringHelper;
+import org.lccy.lucene.memory.builder.DocumentPlan.FieldPlan;
+import org.lccy.lucene.memory.constants.Constants;
+import org.lccy.lucene.memory.constants.FieldTypeEnum;
 import org.lccy.lucene.memory.index.config.IndexConfig;
 import org.lccy.lucene.memory.index.mapping.IndexFieldMapping;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -23,23 +33,125 @@ public final class DocumentBuilder {
      * @return
      */
     public static Document build(Map<String, Object> document, IndexConfig indexConfig) {
-        Document result = new Document();
-        String primaryName = indexConfig.getPrimaryField().getName();
-        if (!document.containsKey(primaryName)) {
-            throw new IllegalArgumentException("MemoryIndex document must has primary field:" + primaryName);
+        ReusableDocument result = new ReusableDocument(indexConfig.getDocumentPlan());
+        build(document, result);
+        return result.getDocument();
+    }
+
+    /**
+     * 构造文档到可复用文档中，复用已创建的Field；开启noopDetection时同时保存内容哈希
+     * @param document
+     * @param target 构造前清空
+     */
+    public static void build(Map<String, Object> document, ReusableDocument target) {
+        buildFields(document, target);
+        if (target.getPlan().isNoopDetection()) {
+            target.ensureContentHash();
+        }
+    }
+
+    /**
+     * 计算Lucene文档的内容哈希，用于判断全量更新的内容是否变化<br/>
+     * 所有写入路径（原始数据、直接构造的Document、可复用文档，导入、重新导入、插入/更新）都按构造后的文档计算，结果可以相互比较；
+     * 每个Field按字段名和值计算64位哈希后相加，与字段顺序无关
+     * @param document
+     * @return 不会返回0
+     */
+    public static long contentHash(Document document) {
+        long hash = 0;
+        BytesRefBuilder bytes = new BytesRefBuilder();
+        BytesRefBuilder value = new BytesRefBuilder();
+        for (IndexableField field : document) {
+            if (Constants._HASH.equals(field.name())) {
+                continue;
+            }
+            bytes.copyChars(field.name());
+            bytes.append((byte) 0);
+            if (field.binaryValue() != null) {
+                bytes.append(field.binaryValue());
+            } else if (field.stringValue() != null) {
+                value.copyChars(field.stringValue());
+                bytes.append(value.get());
+            } else if (field.numericValue() != null) {
+                value.copyChars(field.numericValue().getClass().getSimpleName() + field.numericValue());
+                bytes.append(value.get());
+            } else {
+                // Reader、TokenStream的值无法计算哈希
+                return 0;
+            }
+            hash += hash64(bytes);
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * 文档没有内容哈希时按{@link #contentHash(Document)}计算并添加
+     * @param document
+     * @return 文档的内容哈希，无法计算时返回0
+     */
+    public static long ensureContentHash(Document document) {
+        IndexableField field = document.getField(Constants._HASH);
+        if (field != null) {
+            return field.numericValue().longValue();
+        }
+        long hash = contentHash(document);
+        if (hash != 0) {
+            document.add(new NumericDocValuesField(Constants._HASH, hash));
+        }
+        return hash;
+    }
+
+    private static long hash64(BytesRefBuilder bytes) {
+        long high = StringHelper.murmurhash3_x86_32(bytes.bytes(), 0, bytes.length(), 0x5bd1e995);
+        long low = StringHelper.murmurhash3_x86_32(bytes.bytes(), 0, bytes.length(), 0x1b873593);
+        return (high << 32) | (low & 0xffffffffL);
+    }
+
+    private static void buildFields(Map<String, Object> document, ReusableDocument target) {
+        DocumentPlan plan = target.getPlan();
+        target.reset();
+        if (!document.containsKey(plan.getPrimaryName())) {
+            throw new IllegalArgumentException("MemoryIndex document must has primary field:" + plan.getPrimaryName());
         }
         for (Map.Entry<String, Object> entry : document.entrySet()) {
             String fieldName = entry.getKey();
-            Object value = entry.getValue();
-            if(indexConfig.isSystemKeyword(fieldName)) {
+            if (plan.isSystemKeyword(fieldName)) {
                 continue;
             }
-            IndexFieldMapping fieldConf = indexConfig.getFieldConfig(fieldName);
-            if(fieldConf.isDefaultFd() && !indexConfig.getIndexSetting().isDynamicsMapping()) {
+            FieldPlan field = plan.getField(fieldName);
+            if (field != null) {
+                target.add(field, entry.getValue());
+            } else if (plan.isDynamicsMapping()) {
+                target.addDynamic(fieldName, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 从文档的存储字段还原原始数据，局部更新时与新的字段合并后重新构造文档<br/>
+     * 未保存的字段无法还原
+     * @param stored 文档，只读取其中的存储字段
+     * @param indexConfig
+     * @return
+     */
+    public static Map<String, Object> source(Document stored, IndexConfig indexConfig) {
+        Map<String, List<Object>> values = new HashMap<>();
+        for (IndexableField field : stored) {
+            if (!field.fieldType().stored()) {
                 continue;
             }
-            fieldConf.getType().convertField(result, fieldName, fieldConf, value);
+            String fieldName = field.name();
+            IndexFieldMapping fieldConf = indexConfig.getFieldConfig(fieldName);
+            // 经纬度保留"lat,lon"格式，其他字段与查询结果的转换一致
+            Object value = fieldConf.getType() == FieldTypeEnum.GEO_POINT ? field.stringValue() : fieldConf.convertStoreValue(field);
+            values.computeIfAbsent(fieldName, key -> new ArrayList<>(1)).add(value);
+        }
+        // 单值字段还原为值本身，多值字段还原为列表
+        Map<String, Object> source = new HashMap<>(values.size() * 2);
+        for (Map.Entry<String, List<Object>> entry : values.entrySet()) {
+            List<Object> fieldValues = entry.getValue();
+            source.put(entry.getKey(), fieldValues.size() == 1 ? fieldValues.get(0) : fieldValues);
         }
-        return result;
+        return source;
     }
 }
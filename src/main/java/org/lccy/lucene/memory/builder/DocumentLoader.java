@@ -0,0 +1,74 @@
+package org.lccy.lucene.memory.builder;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.lccy.lucene.memory.builder.DocumentPlan.FieldPlan;
+import org.lccy.lucene.memory.index.config.IndexConfig;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 读取文档的存储字段<br/>
+ * 只保存DocValues的字段没有存储字段，从DocValues读取后按存储字段的格式加入文档，
+ * 查询结果、按主键查询、局部更新读取到的字段与普通字段一致
+ *
+ * @Date: 2026/10/17 20:20 <br>
+ * @author: liuchen11
+ */
+public final class DocumentLoader {
+
+    private DocumentLoader() {}
+
+    /**
+     * 按IndexReader中的文档号读取
+     * @param reader
+     * @param docId 顶层IndexReader中的文档号
+     * @param indexConfig
+     * @return
+     * @throws IOException
+     */
+    public static Document load(IndexReader reader, int docId, IndexConfig indexConfig) throws IOException {
+        FieldPlan[] docValueOnly = indexConfig.getDocumentPlan().getDocValueOnlyFields();
+        if (docValueOnly.length == 0) {
+            return reader.document(docId);
+        }
+        List<LeafReaderContext> leaves = reader.leaves();
+        LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+        return load(leaf.reader(), docId - leaf.docBase, indexConfig);
+    }
+
+    /**
+     * 按段中的文档号读取
+     * @param reader
+     * @param docId 段中的文档号
+     * @param indexConfig
+     * @return
+     * @throws IOException
+     */
+    public static Document load(LeafReader reader, int docId, IndexConfig indexConfig) throws IOException {
+        Document document = reader.document(docId);
+        for (FieldPlan field : indexConfig.getDocumentPlan().getDocValueOnlyFields()) {
+            NumericDocValues values = reader.getNumericDocValues(field.getName());
+            if (values == null || !values.advanceExact(docId)) {
+                continue;
+            }
+            Object value = field.fromDocValue(values.longValue());
+            if (value instanceof Long) {
+                document.add(new StoredField(field.getName(), (Long) value));
+            } else if (value instanceof Float) {
+                document.add(new StoredField(field.getName(), (Float) value));
+            } else if (value instanceof Double) {
+                document.add(new StoredField(field.getName(), (Double) value));
+            } else {
+                document.add(new StoredField(field.getName(), (String) value));
+            }
+        }
+        return document;
+    }
+}
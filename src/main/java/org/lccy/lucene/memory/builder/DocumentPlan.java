@@ -0,0 +1,303 @@
+package org.lccy.lucene.memory.builder;
+
+import org.lccy.lucene.memory.constants.FieldTypeEnum;
+import org.lccy.lucene.memory.index.config.IndexConfig;
+import org.lccy.lucene.memory.index.mapping.IndexFieldMapping;
+import org.lccy.lucene.memory.util.DateUtil;
+import org.lccy.lucene.memory.util.StringUtil;
+
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文档构造计划，索引配置初始化时编译一次<br/>
+ * 每个已配置的字段分配一个序号，{@link ReusableDocument}按序号复用Field对象；日期格式预先拆分并编译为DateTimeFormatter
+ *
+ * @Date: 2026/10/17 16:40 <br>
+ * @author: liuchen11
+ */
+public final class DocumentPlan {
+
+    private final IndexConfig indexConfig;
+    private final Map<String, FieldPlan> fieldMap = new HashMap<>();
+    private final FieldPlan[] fields;
+    private final FieldPlan[] docValueOnlyFields;
+    private final String primaryName;
+
+    public DocumentPlan(IndexConfig indexConfig, Collection<IndexFieldMapping> mappings) {
+        this.indexConfig = indexConfig;
+        this.primaryName = indexConfig.getPrimaryField().getName();
+        this.fields = new FieldPlan[mappings.size()];
+        ZoneId zone = ZoneId.systemDefault();
+        int ordinal = 0;
+        List<FieldPlan> docValueOnly = new ArrayList<>();
+        for (IndexFieldMapping mapping : mappings) {
+            FieldPlan field = new FieldPlan(ordinal, mapping, zone);
+            fields[ordinal++] = field;
+            fieldMap.put(mapping.getName(), field);
+            if (mapping.isDocValueOnly()) {
+                docValueOnly.add(field);
+            }
+        }
+        this.docValueOnlyFields = docValueOnly.toArray(new FieldPlan[0]);
+    }
+
+    /**
+     * 只保存DocValues的字段，读取文档时从DocValues还原
+     */
+    public FieldPlan[] getDocValueOnlyFields() {
+        return docValueOnlyFields;
+    }
+
+    /**
+     * 根据字段名获取字段计划
+     *
+     * @param fieldName
+     * @return 未配置的字段返回null
+     */
+    public FieldPlan getField(String fieldName) {
+        return fieldMap.get(fieldName);
+    }
+
+    /**
+     * 已配置的字段数
+     */
+    public int size() {
+        return fields.length;
+    }
+
+    public String getPrimaryName() {
+        return primaryName;
+    }
+
+    public boolean isSystemKeyword(String fieldName) {
+        return indexConfig.isSystemKeyword(fieldName);
+    }
+
+    public boolean isNoopDetection() {
+        return indexConfig.getIndexSetting().isNoopDetection();
+    }
+
+    public boolean isDynamicsMapping() {
+        return indexConfig.getIndexSetting().isDynamicsMapping();
+    }
+
+    /**
+     * 未配置字段使用的缺省字段配置
+     */
+    public IndexFieldMapping getDefaultField() {
+        return indexConfig.getDefaultField();
+    }
+
+    /**
+     * 单个字段的构造计划
+     */
+    public static final class FieldPlan {
+
+        private final int ordinal;
+        private final IndexFieldMapping mapping;
+        private final String[] formats;
+        private final DateTimeFormatter[] formatters;
+        private final ZoneId zone;
+
+        FieldPlan(int ordinal, IndexFieldMapping mapping, ZoneId zone) {
+            this.ordinal = ordinal;
+            this.mapping = mapping;
+            this.zone = zone;
+            if (mapping.getType() == FieldTypeEnum.DATE && StringUtil.isNotEmpty(mapping.getFormat())) {
+                this.formats = mapping.getFormat().split("\\|\\|");
+                this.formatters = new DateTimeFormatter[formats.length];
+                for (int i = 0; i < formats.length; i++) {
+                    formatters[i] = compile(formats[i]);
+                }
+            } else {
+                this.formats = new String[0];
+                this.formatters = new DateTimeFormatter[0];
+            }
+        }
+
+        public int getOrdinal() {
+            return ordinal;
+        }
+
+        public String getName() {
+            return mapping.getName();
+        }
+
+        public FieldTypeEnum getType() {
+            return mapping.getType();
+        }
+
+        public IndexFieldMapping getMapping() {
+            return mapping;
+        }
+
+        /**
+         * 按配置的日期格式解析日期，与{@link DateUtil#convertTime(String, String...)}一致，使用长度相同的第一个格式<br/>
+         * 预编译的格式解析失败时（非法日期等），使用SimpleDateFormat宽松解析
+         *
+         * @param value 日期字符串
+         * @return 毫秒时间戳
+         * @throws IllegalArgumentException 未配置格式或解析失败
+         */
+        public long parseDate(String value) {
+            if (formats.length == 0) {
+                throw new IllegalArgumentException("field:" + getName() + ", type:date must has format");
+            }
+            if (StringUtil.isNotEmpty(value)) {
+                for (int i = 0; i < formats.length; i++) {
+                    if (StringUtil.isEmpty(formats[i]) || value.length() != formats[i].length()) {
+                        continue;
+                    }
+                    if (formatters[i] != null) {
+                        try {
+                            return LocalDateTime.parse(value, formatters[i]).atZone(zone).toInstant().toEpochMilli();
+                        } catch (DateTimeParseException e) {
+                        }
+                    }
+                    Long time = DateUtil.convertTime(value, formats[i]);
+                    if (time != null) {
+                        return time;
+                    }
+                    break;
+                }
+            }
+            throw new IllegalArgumentException("field:" + getName() + ", date format error, value:" + value + ", format:" + mapping.getFormat());
+        }
+
+        /**
+         * 将值转换为NumericDocValues中保存的值，与构造文档时的转换一致（浮点数保存为IEEE位表示）
+         *
+         * @param value 字段值
+         * @return
+         * @throws IllegalArgumentException 不是数值、日期字段或值格式错误
+         */
+        public long toDocValue(Object value) {
+            boolean integral = value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+            try {
+                switch (getType()) {
+                    case DATE:
+                        return parseDate(StringUtil.conver2String(value));
+                    case LONG:
+                        return integral ? ((Number) value).longValue() : Long.parseLong(StringUtil.conver2String(value));
+                    case FLOAT:
+                        float data = integral ? ((Number) value).longValue() : Float.parseFloat(StringUtil.conver2String(value));
+                        return Float.floatToIntBits(data);
+                    case DOUBLE:
+                        double number = integral ? ((Number) value).longValue() : Double.parseDouble(StringUtil.conver2String(value));
+                        return Double.doubleToLongBits(number);
+                    default:
+                        throw new IllegalArgumentException("field:" + getName() + ", type:" + getType().getName() + " has no numeric doc values");
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("field:" + getName() + ", number format error, value:" + value);
+            }
+        }
+
+        /**
+         * 将NumericDocValues中保存的值还原为存储字段的值，日期按第一个格式输出
+         *
+         * @param docValue
+         * @return
+         */
+        public Object fromDocValue(long docValue) {
+            switch (getType()) {
+                case DATE:
+                    return formatDate(docValue);
+                case LONG:
+                    return docValue;
+                case FLOAT:
+                    return Float.intBitsToFloat((int) docValue);
+                case DOUBLE:
+                    return Double.longBitsToDouble(docValue);
+                default:
+                    throw new IllegalArgumentException("field:" + getName() + ", type:" + getType().getName() + " has no numeric doc values");
+            }
+        }
+
+        private String formatDate(long time) {
+            if (formats.length == 0) {
+                return Long.toString(time);
+            }
+            if (formatters[0] != null) {
+                return formatters[0].format(Instant.ofEpochMilli(time).atZone(zone));
+            }
+            return new SimpleDateFormat(formats[0]).format(new Date(time));
+        }
+
+        /**
+         * 编译日期格式，只支持yyyy、MM、dd、HH、mm、ss、SSS组成的格式，其他格式返回null，使用SimpleDateFormat解析
+         */
+        private static DateTimeFormatter compile(String format) {
+            if (StringUtil.isEmpty(format)) {
+                return null;
+            }
+            boolean hasYear = false;
+            int i = 0;
+            while (i < format.length()) {
+                char ch = format.charAt(i);
+                int j = i;
+                while (j < format.length() && format.charAt(j) == ch) {
+                    j++;
+                }
+                int run = j - i;
+                if (ch == '\'') {
+                    return null;
+                } else if (Character.isLetter(ch)) {
+                    boolean valid;
+                    switch (ch) {
+                        case 'y':
+                            valid = run == 4;
+                            hasYear = true;
+                            break;
+                        case 'M':
+                        case 'd':
+                        case 'H':
+                        case 'm':
+                        case 's':
+                            valid = run == 2;
+                            break;
+                        case 'S':
+                            valid = run == 3;
+                            break;
+                        default:
+                            valid = false;
+                    }
+                    if (!valid) {
+                        return null;
+                    }
+                }
+                i = j;
+            }
+            if (!hasYear) {
+                return null;
+            }
+            try {
+                return new DateTimeFormatterBuilder()
+                        .appendPattern(format.replace('y', 'u'))
+                        .parseDefaulting(ChronoField.MONTH_OF_YEAR, 1)
+                        .parseDefaulting(ChronoField.DAY_OF_MONTH, 1)
+                        .parseDefaulting(ChronoField.HOUR_OF_DAY, 0)
+                        .parseDefaulting(ChronoField.MINUTE_OF_HOUR, 0)
+                        .parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0)
+                        .toFormatter()
+                        .withResolverStyle(ResolverStyle.STRICT);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package org.lccy.lucene.memory.builder;
+
+import com.alibaba.fastjson.JSON;
+import org.apache.lucene.document.*;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.lccy.lucene.memory.builder.DocumentPlan.FieldPlan;
+import org.lccy.lucene.memory.constants.Constants;
+import org.lccy.lucene.memory.exception.LuceneException;
+import org.lccy.lucene.memory.index.mapping.IndexFieldMapping;
+import org.lccy.lucene.memory.util.StringUtil;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 可复用的Lucene文档，参照Lucene的Field复用方式：每个字段按{@link FieldPlan}的序号保存已创建的Field对象，
+ * 下一个文档只修改Field的值，不再重新创建<br/>
+ * 文档写入IndexWriter后才能{@link #reset()}复用，写入前不能再修改；非线程安全
+ *
+ * @Date: 2026/10/17 16:55 <br>
+ * @author: liuchen11
+ */
+public final class ReusableDocument {
+
+    private final DocumentPlan plan;
+    private final Document document = new Document();
+    private final Slot[] slots;
+    private NumericDocValuesField contentHash;
+
+    public ReusableDocument(DocumentPlan plan) {
+        this.plan = plan;
+        this.slots = new Slot[plan.size()];
+    }
+
+    public DocumentPlan getPlan() {
+        return plan;
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    /**
+     * 清空文档，复用已创建的Field
+     */
+    public void reset() {
+        document.clear();
+        for (Slot slot : slots) {
+            if (slot != null) {
+                slot.used = 0;
+            }
+        }
+    }
+
+    /**
+     * 添加已配置字段的值，List值按多值处理（keyword、store）
+     */
+    public void add(FieldPlan field, Object value) {
+        if (value == null) {
+            return;
+        }
+        switch (field.getType()) {
+            case KEYWORD:
+            case STORE:
+                if (value instanceof List) {
+                    for (Object val : (List<?>) value) {
+                        if (val != null) {
+                            addString(field, StringUtil.conver2String(val));
+                        }
+                    }
+                } else {
+                    addString(field, StringUtil.conver2String(value));
+                }
+                break;
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                    addLong(field, ((Number) value).longValue());
+                } else {
+                    addString(field, StringUtil.conver2String(value));
+                }
+                break;
+            case JSON:
+                addJson(field, JSON.toJSONString(value));
+                break;
+            default:
+                addString(field, StringUtil.conver2String(value));
+        }
+    }
+
+    /**
+     * 添加整数值，数值字段不经过字符串解析
+     */
+    public void addLong(FieldPlan field, long value) {
+        switch (field.getType()) {
+            case LONG:
+                Field[] fields = next(field);
+                if (fields[0] != null) {
+                    fields[0].setLongValue(value);
+                }
+                fields[1].setLongValue(value);
+                if (fields[2] != null) {
+                    fields[2].setLongValue(value);
+                }
+                addAll(fields);
+                break;
+            case FLOAT:
+            case DOUBLE:
+                addDouble(field, value);
+                break;
+            default:
+                addString(field, Long.toString(value));
+        }
+    }
+
+    /**
+     * 添加浮点值，数值字段不经过字符串解析
+     */
+    public void addDouble(FieldPlan field, double value) {
+        Field[] fields;
+        switch (field.getType()) {
+            case FLOAT:
+                float data = (float) value;
+                fields = next(field);
+                if (fields[0] != null) {
+                    fields[0].setFloatValue(data);
+                }
+                fields[1].setLongValue(Float.floatToIntBits(data));
+                if (fields[2] != null) {
+                    fields[2].setFloatValue(data);
+                }
+                addAll(fields);
+                break;
+            case DOUBLE:
+                fields = next(field);
+                if (fields[0] != null) {
+                    fields[0].setDoubleValue(value);
+                }
+                fields[1].setLongValue(Double.doubleToLongBits(value));
+                if (fields[2] != null) {
+                    fields[2].setDoubleValue(value);
+                }
+                addAll(fields);
+                break;
+            default:
+                addString(field, Double.toString(value));
+        }
+    }
+
+    /**
+     * 添加字符串值，按字段类型转换
+     */
+    public void addString(FieldPlan field, String value) {
+        Field[] fields;
+        switch (field.getType()) {
+            case KEYWORD:
+            case TEXT:
+                Slot slot = slot(field);
+                fields = slot.next(field);
+                fields[0].setStringValue(value);
+                if (fields[1] != null) {
+                    BytesRefBuilder bytes = slot.bytes[slot.used - 1];
+                    bytes.copyChars(value);
+                    fields[1].setBytesValue(bytes.get());
+                }
+                addAll(fields);
+                break;
+            case DATE:
+                long date = field.parseDate(value);
+                fields = next(field);
+                if (fields[0] != null) {
+                    fields[0].setLongValue(date);
+                }
+                fields[1].setLongValue(date);
+                if (fields[2] != null) {
+                    fields[2].setStringValue(value);
+                }
+                addAll(fields);
+                break;
+            case LONG:
+                addLong(field, Long.parseLong(value));
+                break;
+            case FLOAT:
+                addDouble(field, Float.parseFloat(value));
+                break;
+            case DOUBLE:
+                addDouble(field, Double.parseDouble(value));
+                break;
+            case STORE:
+                fields = next(field);
+                fields[0].setStringValue(value);
+                addAll(fields);
+                break;
+            case JSON:
+                addJson(field, JSON.toJSONString(value));
+                break;
+            case GEO_POINT:
+                if (value.indexOf(",") < 0) {
+                    throw new LuceneException("geo_point setting error, please enter the correct value, example: 32.1, 33.2");
+                }
+                String[] vals = value.split(",", -1);
+                double lat = Double.parseDouble(vals[0].trim());
+                double lon = Double.parseDouble(vals[1].trim());
+                fields = next(field);
+                ((LatLonPoint) fields[0]).setLocationValue(lat, lon);
+                ((LatLonDocValuesField) fields[1]).setLocationValue(lat, lon);
+                if (fields[2] != null) {
+                    fields[2].setStringValue(value);
+                }
+                addAll(fields);
+                break;
+            default:
+                throw new LuceneException(field.getType().getName() + " not implemented");
+        }
+    }
+
+    /**
+     * 添加已经序列化的json字段
+     */
+    private void addJson(FieldPlan field, String json) {
+        Field[] fields = next(field);
+        fields[0].setStringValue(json);
+        addAll(fields);
+    }
+
+    /**
+     * 设置文档的内容哈希
+     */
+    public void setContentHash(long hash) {
+        if (contentHash == null) {
+            contentHash = new NumericDocValuesField(Constants._HASH, hash);
+        } else {
+            contentHash.setLongValue(hash);
+        }
+        document.add(contentHash);
+    }
+
+    /**
+     * 文档没有内容哈希时按{@link DocumentBuilder#contentHash(Document)}计算并设置
+     *
+     * @return 文档的内容哈希，无法计算时返回0
+     */
+    public long ensureContentHash() {
+        IndexableField field = document.getField(Constants._HASH);
+        if (field != null) {
+            return field.numericValue().longValue();
+        }
+        long hash = DocumentBuilder.contentHash(document);
+        if (hash != 0) {
+            setContentHash(hash);
+        }
+        return hash;
+    }
+
+    /**
+     * 添加未配置的字段（动态映射），使用缺省字段配置，不复用
+     */
+    public void addDynamic(String fieldName, Object value) {
+        IndexFieldMapping defaultField = plan.getDefaultField();
+        defaultField.getType().convertField(document, fieldName, defaultField, value);
+    }
+
+    private void addAll(Field[] fields) {
+        for (Field field : fields) {
+            if (field != null) {
+                document.add(field);
+            }
+        }
+    }
+
+    private Field[] next(FieldPlan field) {
+        return slot(field).next(field);
+    }
+
+    private Slot slot(FieldPlan field) {
+        Slot slot = slots[field.getOrdinal()];
+        if (slot == null) {
+            slot = slots[field.getOrdinal()] = new Slot();
+        }
+        return slot;
+    }
+
+    /**
+     * 单个字段已创建的Field，多值字段每个值一组
+     */
+    private static final class Slot {
+
+        private Field[][] values = new Field[1][];
+        private BytesRefBuilder[] bytes = new BytesRefBuilder[1];
+        private int used = 0;
+
+        Field[] next(FieldPlan field) {
+            if (used == values.length) {
+                values = Arrays.copyOf(values, used * 2);
+                bytes = Arrays.copyOf(bytes, used * 2);
+            }
+            Field[] fields = values[used];
+            if (fields == null) {
+                fields = values[used] = create(field.getMapping());
+                bytes[used] = new BytesRefBuilder();
+            }
+            used++;
+            return fields;
+        }
+
+        private static Field[] create(IndexFieldMapping mapping) {
+            String name = mapping.getName();
+            boolean store = mapping.isStore();
+            if (mapping.isDocValueOnly()) {
+                // 只保存DocValues：不建立点索引、不保存字段
+                return new Field[]{null, new NumericDocValuesField(name, 0L), null};
+            }
+            Field.Store fieldStore = store ? Field.Store.YES : Field.Store.NO;
+            switch (mapping.getType()) {
+                case KEYWORD:
+                    return new Field[]{new StringField(name, "", fieldStore),
+                            mapping.isDocValue() ? new SortedSetDocValuesField(name, new BytesRef()) : null};
+                case TEXT:
+                    return new Field[]{new TextField(name, "", fieldStore),
+                            mapping.isDocValue() ? new SortedDocValuesField(name, new BytesRef()) : null};
+                case DATE:
+                    return new Field[]{new LongPoint(name, 0L), new NumericDocValuesField(name, 0L),
+                            store ? new StoredField(name, "") : null};
+                case LONG:
+                    return new Field[]{new LongPoint(name, 0L), new NumericDocValuesField(name, 0L),
+                            store ? new StoredField(name, 0L) : null};
+                case FLOAT:
+                    return new Field[]{new FloatPoint(name, 0f), new NumericDocValuesField(name, 0L),
+                            store ? new StoredField(name, 0f) : null};
+                case DOUBLE:
+                    return new Field[]{new DoublePoint(name, 0d), new NumericDocValuesField(name, 0L),
+                            store ? new StoredField(name, 0d) : null};
+                case STORE:
+                    return new Field[]{new StoredField(name, "")};
+                case JSON:
+                    return new Field[]{new StringField(name, "", fieldStore)};
+                case GEO_POINT:
+                    return new Field[]{new LatLonPoint(name, 0d, 0d), new LatLonDocValuesField(name, 0d, 0d),
+                            store ? new StoredField(name, "") : null};
+                default:
+                    throw new LuceneException(mapping.getType().getName() + " not implemented");
+            }
+        }
+    }
+}
@@ -67,7 +67,7 @@ public final class SearchHitsBuilder {
         SearchResultFilter resultFilter = request.getFilter();
         for (i = start; i < end && i < scoreDocs.length; i++) {
             ScoreDoc scoreDoc = scoreDocs[i];
-            Document document = searcher.doc(scoreDoc.doc);
+            Document document = DocumentLoader.load(searcher.getIndexReader(), scoreDoc.doc, idxConf);
 
             // 在查询结果上继续过滤结果集，比如查询指定数据、去重等，但是此时总条数是不精确的，分页查询禁用，适合查询size很大时，取topN的数据
             if(resultFilter != null && resultFilter.filter(scoreDoc, document)) {
@@ -142,6 +142,30 @@ public final class SearchHitsBuilder {
         return result;
     }
 
+    /**
+     * 按主键获取的文档转换为结果，不包含评分
+     *
+     * @param docId    IndexReader中的文档号
+     * @param document 文档的存储字段
+     * @param idxConf  索引配置
+     */
+    public static Map<String, Object> buildDocument(int docId, Document document, IndexConfig idxConf) {
+        Map<String, List<Object>> values = new HashMap<>();
+        for (IndexableField field : document) {
+            String fieldName = field.name();
+            IndexFieldMapping fieldConf = idxConf.getFieldConfig(fieldName);
+            values.computeIfAbsent(fieldName, key -> new ArrayList<>(1)).add(fieldConf.convertStoreValue(field));
+        }
+        // 单值字段返回值本身，多值字段返回列表
+        Map<String, Object> line = new HashMap<>(values.size() * 2 + 2);
+        line.put(Constants._ID, docId);
+        for (Map.Entry<String, List<Object>> entry : values.entrySet()) {
+            List<Object> fieldValues = entry.getValue();
+            line.put(entry.getKey(), fieldValues.size() == 1 ? fieldValues.get(0) : fieldValues);
+        }
+        return line;
+    }
+
     /**
      * top_hits分组查询，根据topDocs获取数据
      *
@@ -150,12 +174,24 @@ public final class SearchHitsBuilder {
      * @param topHitsAggsConfig top_hits配置
      */
     public static SearchHits buildHits(TopDocs topDocs, SearchContext searchContext, TopHitsAggsConfig topHitsAggsConfig) throws IOException {
+        int start = topHitsAggsConfig.getFrom();
+        return buildHits(topDocs, searchContext, topHitsAggsConfig, start, start + topHitsAggsConfig.getSize());
+    }
+
+    /**
+     * top_hits分组查询，根据start、end下标位置获取数据
+     *
+     * @param topDocs       查询返回top结果
+     * @param searchContext 查询上下文
+     * @param topHitsAggsConfig top_hits配置
+     * @param start         开始下标（包含）
+     * @param end           结束下标（不包含）
+     */
+    public static SearchHits buildHits(TopDocs topDocs, SearchContext searchContext, TopHitsAggsConfig topHitsAggsConfig, int start, int end) throws IOException {
         SearchHits result = new SearchHits();
         List<Map> dataList = new ArrayList<>();
         result.setDocuments(dataList);
         long total = topDocs.totalHits.value;
-        int start = topHitsAggsConfig.getFrom();
-        int end = start + topHitsAggsConfig.getSize();
         // 处理查询结果
         ScoreDoc[] scoreDocs = topDocs.scoreDocs;
         if (scoreDocs.length == 0 || start >= scoreDocs.length) {
@@ -180,7 +216,7 @@ public final class SearchHitsBuilder {
         final IndexSearcher indexSearcher = searchContext.getSearcher();
         for (int i = start; i < end && i < scoreDocs.length; i++) {
             ScoreDoc scoreDoc = scoreDocs[i];
-            Document document = indexSearcher.doc(scoreDoc.doc);
+            Document document = DocumentLoader.load(indexSearcher.getIndexReader(), scoreDoc.doc, indexConfig);
 
             Map<String, Object> line = new HashMap<>();
             float score = scoreDoc.score;
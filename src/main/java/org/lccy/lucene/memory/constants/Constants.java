@@ -11,6 +11,8 @@ public class Constants {
 
     public static final String _ID = "_id";
     public static final String _SCORE = "_score";
+    // 文档内容哈希（DocValues）
+    public static final String _HASH = "_hash";
 
     public interface ComplexFieldFunction {
 
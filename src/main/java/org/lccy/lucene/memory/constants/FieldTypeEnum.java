@@ -53,32 +53,19 @@ public enum FieldTypeEnum {
         if (date == null) {
             throw new IllegalArgumentException("field:" + fieldName + ", date format error, value:" + value + ", format:" + fieldConfig.getFormat());
         }
-        document.add(new LongPoint(fieldName, date));
+        if (!fieldConfig.isDocValueOnly()) {
+            document.add(new LongPoint(fieldName, date));
+        }
         document.add(new NumericDocValuesField(fieldName, date));
-        if(fieldConfig.isStore()) {
+        if(fieldConfig.isStore() && !fieldConfig.isDocValueOnly()) {
             document.add(new StoredField(fieldName, dateStr));
         }
     })), LONG("long", ((document, fieldName, fieldConfig, value) -> {
-        Long data = Long.parseLong(StringUtil.conver2String(value));
-        document.add(new LongPoint(fieldName, data));
-        document.add(new NumericDocValuesField(fieldName, data));
-        if(fieldConfig.isStore()) {
-            document.add(new StoredField(fieldName, data));
-        }
+        addLong(document, fieldName, fieldConfig, Long.parseLong(StringUtil.conver2String(value)));
     })), FLOAT("float", ((document, fieldName, fieldConfig, value) -> {
-        Float data = Float.parseFloat(StringUtil.conver2String(value));
-        document.add(new FloatPoint(fieldName, data));
-        document.add(new NumericDocValuesField(fieldName, Float.floatToIntBits(data)));
-        if(fieldConfig.isStore()) {
-            document.add(new StoredField(fieldName, data));
-        }
+        addFloat(document, fieldName, fieldConfig, Float.parseFloat(StringUtil.conver2String(value)));
     })), DOUBLE("double", ((document, fieldName, fieldConfig, value) -> {
-        Double data = Double.parseDouble(StringUtil.conver2String(value));
-        document.add(new DoublePoint(fieldName, data));
-        document.add(new NumericDocValuesField(fieldName, Double.doubleToLongBits(data)));
-        if(fieldConfig.isStore()) {
-            document.add(new StoredField(fieldName, data));
-        }
+        addDouble(document, fieldName, fieldConfig, Double.parseDouble(StringUtil.conver2String(value)));
     })), STORE("store", ((document, fieldName, fieldConfig, value) -> {
         if (value instanceof List) {
             List<Object> valList = (List<Object>) value;
@@ -151,6 +138,36 @@ public enum FieldTypeEnum {
         this.convert.convert(document, fieldName, fieldConfig, value);
     }
 
+    private static void addLong(Document document, String fieldName, IndexFieldMapping fieldConfig, long data) {
+        if (!fieldConfig.isDocValueOnly()) {
+            document.add(new LongPoint(fieldName, data));
+        }
+        document.add(new NumericDocValuesField(fieldName, data));
+        if(fieldConfig.isStore() && !fieldConfig.isDocValueOnly()) {
+            document.add(new StoredField(fieldName, data));
+        }
+    }
+
+    private static void addFloat(Document document, String fieldName, IndexFieldMapping fieldConfig, float data) {
+        if (!fieldConfig.isDocValueOnly()) {
+            document.add(new FloatPoint(fieldName, data));
+        }
+        document.add(new NumericDocValuesField(fieldName, Float.floatToIntBits(data)));
+        if(fieldConfig.isStore() && !fieldConfig.isDocValueOnly()) {
+            document.add(new StoredField(fieldName, data));
+        }
+    }
+
+    private static void addDouble(Document document, String fieldName, IndexFieldMapping fieldConfig, double data) {
+        if (!fieldConfig.isDocValueOnly()) {
+            document.add(new DoublePoint(fieldName, data));
+        }
+        document.add(new NumericDocValuesField(fieldName, Double.doubleToLongBits(data)));
+        if(fieldConfig.isStore() && !fieldConfig.isDocValueOnly()) {
+            document.add(new StoredField(fieldName, data));
+        }
+    }
+
     interface FieldTypeConvert {
         void convert(Document document, String fieldName, IndexFieldMapping fieldConfig, Object value);
     }
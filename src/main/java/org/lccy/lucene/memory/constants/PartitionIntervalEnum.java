@@ -0,0 +1,88 @@
+package org.lccy.lucene.memory.constants;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * 按时间分区的时间间隔
+ *
+ * @Date: 2026/10/17 22:10 <br>
+ * @author: liuchen11
+ */
+public enum PartitionIntervalEnum {
+
+    // 按天分区（默认）
+    DAY("day"),
+    // 按周分区，从周一开始
+    WEEK("week"),
+    // 按月分区
+    MONTH("month");
+
+    private String name;
+
+    PartitionIntervalEnum(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 时间所在分区的开始日期
+     *
+     * @param millis 毫秒时间戳
+     * @param zone   时区
+     * @return
+     */
+    public LocalDate floor(long millis, ZoneId zone) {
+        LocalDate date = Instant.ofEpochMilli(millis).atZone(zone).toLocalDate();
+        switch (this) {
+            case WEEK:
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH:
+                return date.withDayOfMonth(1);
+            default:
+                return date;
+        }
+    }
+
+    /**
+     * 下一个分区的开始日期
+     *
+     * @param start 分区的开始日期
+     * @return
+     */
+    public LocalDate next(LocalDate start) {
+        switch (this) {
+            case WEEK:
+                return start.plusWeeks(1);
+            case MONTH:
+                return start.plusMonths(1);
+            default:
+                return start.plusDays(1);
+        }
+    }
+
+    @JsonValue
+    public String value() {
+        return this.name;
+    }
+
+    @JsonCreator
+    public static PartitionIntervalEnum fromValue(String name) {
+        for (PartitionIntervalEnum c : values()) {
+            if (c.name.equals(name)) {
+                return c;
+            }
+        }
+
+        throw new IllegalArgumentException("PartitionIntervalEnum invalid name: " + name);
+    }
+}
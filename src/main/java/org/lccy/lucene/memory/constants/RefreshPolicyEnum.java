@@ -0,0 +1,46 @@
+package org.lccy.lucene.memory.constants;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * 写操作的刷新策略，决定写操作返回时是否已经可以被检索
+ *
+ * @Date: 2026/10/17 23:58 <br>
+ * @author: liuchen11
+ */
+public enum RefreshPolicyEnum {
+
+    // 不刷新，等待定时刷新后可以被检索（默认）
+    NONE("false"),
+    // 写入后立即刷新IndexSearcher
+    IMMEDIATE("true"),
+    // 等待写操作可以被检索后返回，同时等待的多个写操作只触发一次刷新
+    WAIT_UNTIL("wait_for");
+
+    private String name;
+
+    RefreshPolicyEnum(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @JsonValue
+    public String value() {
+        return this.name;
+    }
+
+    @JsonCreator
+    public static RefreshPolicyEnum fromValue(String name) {
+        for (RefreshPolicyEnum c : values()) {
+            if (c.name.equals(name)) {
+                return c;
+            }
+        }
+
+        throw new IllegalArgumentException("RefreshPolicyEnum invalid name: " + name);
+    }
+}
@@ -0,0 +1,48 @@
+package org.lccy.lucene.memory.constants;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * 索引文件的存储方式
+ *
+ * @Date: 2026/10/17 18:40 <br>
+ * @author: liuchen11
+ */
+public enum StoreTypeEnum {
+
+    // 堆内存ByteBuffer（默认）
+    HEAP("heap"),
+    // 堆外直接内存ByteBuffer，不占用堆，不参与GC扫描
+    DIRECT("direct"),
+    // 内存映射文件，storePath建议使用tmpfs等内存文件系统
+    MMAP("mmap"),
+    // 混合存储：新写入的小段缓存在堆内存，合并后的大段以内存映射文件保存在storePath（本地磁盘），堆内存占用与数据量无关
+    HYBRID("hybrid");
+
+    private String name;
+
+    StoreTypeEnum(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @JsonValue
+    public String value() {
+        return this.name;
+    }
+
+    @JsonCreator
+    public static StoreTypeEnum fromValue(String name) {
+        for (StoreTypeEnum c : values()) {
+            if (c.name.equals(name)) {
+                return c;
+            }
+        }
+
+        throw new IllegalArgumentException("StoreTypeEnum invalid name: " + name);
+    }
+}
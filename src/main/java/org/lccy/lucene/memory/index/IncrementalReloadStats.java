@@ -0,0 +1,36 @@
+package org.lccy.lucene.memory.index;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 增量重新导入的统计
+ *
+ * @Date: 2026/10/17 21:40 <br>
+ * @author: liuchen11
+ */
+@Getter
+@Setter
+public class IncrementalReloadStats {
+
+    // 数据源加载的文档数
+    private long loaded;
+    // 新增的文档数
+    private long inserted;
+    // 内容变化重新写入的文档数
+    private long updated;
+    // 内容未变化跳过的文档数
+    private long unchanged;
+    // 数据源中已经不存在而删除的文档数
+    private long deleted;
+    // 导入期间被其他写操作修改过、以其他写操作为准的文档数
+    private long skipped;
+    // 耗时（毫秒）
+    private long took;
+
+    @Override
+    public String toString() {
+        return "loaded=" + loaded + ", inserted=" + inserted + ", updated=" + updated + ", unchanged=" + unchanged
+                + ", deleted=" + deleted + ", skipped=" + skipped + ", took=" + took + "ms";
+    }
+}
@@ -0,0 +1,251 @@
+package org.lccy.lucene.memory.index;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.lccy.lucene.memory.index.config.CustomSearcherFactory;
+import org.lccy.lucene.memory.index.config.IndexConfig;
+import org.lccy.lucene.memory.index.write.LiveHashMap;
+import org.lccy.lucene.memory.index.write.RefreshListeners;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 索引代（generation），一次完整导入产生的Directory、IndexWriter、SearcherManager、索引配置的不可变组合<br/>
+ * reload时在后台构建新的索引代，构建完成后整体替换，避免多个字段分别替换时出现不一致的中间状态<br/>
+ * 索引代带有引用计数：索引代本身持有一个引用，SearcherManager打开的每个IndexReader各持有一个引用，
+ * 被替换后正在执行的查询仍然可以使用旧的索引代，最后一个IndexReader释放时才关闭IndexWriter和Directory
+ *
+ * @Date: 2026/10/17 14:05 <br>
+ * @author: liuchen11
+ */
+public final class IndexGeneration implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexGeneration.class);
+
+    private final IndexConfig indexConfig;
+    private final Directory directory;
+    private final IndexWriter indexWriter;
+    private final SearcherManager searcherManager;
+    private final RefreshListeners refreshListeners;
+    private final PrimaryKeyLookup primaryKeyLookup;
+    private final LiveHashMap liveHashes;
+    // 已经以NUMERIC DocValues登记在IndexWriter中的字段，只增不减，与IndexWriter的字段登记一致
+    private final Set<String> numericDocValues = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger refCount = new AtomicInteger(1);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * 基于已经导入数据的IndexWriter打开SearcherManager
+     *
+     * @param indexConfig 索引配置
+     * @param directory   索引目录
+     * @param indexWriter   索引写入器
+     * @param sliceExecutor 并行检索的切片线程池，由注册中心管理
+     * @throws IOException
+     */
+    public IndexGeneration(IndexConfig indexConfig, Directory directory, IndexWriter indexWriter, ExecutorService sliceExecutor) throws IOException {
+        this.indexConfig = indexConfig;
+        this.directory = directory;
+        this.indexWriter = indexWriter;
+        this.searcherManager = new SearcherManager(indexWriter, new GenerationSearcherFactory(indexConfig, sliceExecutor));
+        this.refreshListeners = new RefreshListeners(indexWriter::getMaxCompletedSequenceNumber);
+        this.searcherManager.addListener(this.refreshListeners);
+        this.primaryKeyLookup = new PrimaryKeyLookup(indexConfig.getPrimaryField().getName());
+        if (indexConfig.getIndexSetting().isNoopDetection()) {
+            this.liveHashes = new LiveHashMap();
+            this.searcherManager.addListener(this.liveHashes);
+        } else {
+            this.liveHashes = null;
+        }
+    }
+
+    /**
+     * 获取当前的IndexSearcher，只对IndexReader的引用计数做一次CAS，不经过任何锁
+     *
+     * @return 使用后必须关闭
+     * @throws org.apache.lucene.store.AlreadyClosedException 索引代已经被替换关闭
+     */
+    public SearcherHandle acquireSearcher() throws IOException {
+        return new SearcherHandle(this, searcherManager.acquire());
+    }
+
+    public IndexConfig getIndexConfig() {
+        return indexConfig;
+    }
+
+    public Directory getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 主键到文档的查找，本索引代的更新、删除、按主键查询共用
+     */
+    public PrimaryKeyLookup getPrimaryKeyLookup() {
+        return primaryKeyLookup;
+    }
+
+    /**
+     * 未刷新的文档内容哈希
+     *
+     * @return 未开启noopDetection时返回null
+     */
+    public LiveHashMap getLiveHashes() {
+        return liveHashes;
+    }
+
+    /**
+     * 字段是否已经以NUMERIC DocValues登记在索引中，可以原地updateDocValues<br/>
+     * 包含刷新可见的段中的字段、重放时登记的字段；刚写入还没有刷新的字段不包含在内
+     */
+    public boolean isNumericDocValues(String field) {
+        return numericDocValues.contains(field);
+    }
+
+    /**
+     * 登记重放写入的文档中的NUMERIC DocValues字段，重放期间不刷新也能判断字段是否已经存在
+     */
+    public void registerNumericDocValues(Document document) {
+        for (IndexableField field : document.getFields()) {
+            if (field.fieldType().docValuesType() == DocValuesType.NUMERIC) {
+                numericDocValues.add(field.name());
+            }
+        }
+    }
+
+    public IndexWriter getIndexWriter() {
+        return indexWriter;
+    }
+
+    public SearcherManager getSearcherManager() {
+        return searcherManager;
+    }
+
+    public RefreshListeners getRefreshListeners() {
+        return refreshListeners;
+    }
+
+    /**
+     * 用于快照的删除策略，快照期间保留提交点引用的文件
+     */
+    public SnapshotDeletionPolicy getSnapshotPolicy() {
+        return (SnapshotDeletionPolicy) indexWriter.getConfig().getIndexDeletionPolicy();
+    }
+
+    private void incRef() {
+        refCount.incrementAndGet();
+    }
+
+    private void decRef() {
+        int count = refCount.decrementAndGet();
+        if (count == 0) {
+            doClose();
+        } else if (count < 0) {
+            throw new IllegalStateException("MemoryIndex generation is over released, refCount:" + count);
+        }
+    }
+
+    /**
+     * 释放索引代本身持有的引用，不再接受新的查询，正在执行的查询结束后自动释放资源
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed.compareAndSet(false, true)) {
+            try {
+                this.searcherManager.close();
+            } finally {
+                this.refreshListeners.close();
+                decRef();
+            }
+        }
+    }
+
+    private void doClose() {
+        try {
+            this.indexWriter.close();
+        } catch (IOException e) {
+            logger.error("MemoryIndex close indexWriter error:{}", e.getMessage(), e);
+        }
+        try {
+            this.directory.close();
+        } catch (IOException e) {
+            logger.warn("MemoryIndex close directory error:{}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 每个新打开的IndexReader持有索引代的一个引用，IndexReader关闭时释放；同时登记其中的NUMERIC DocValues字段
+     */
+    private class GenerationSearcherFactory extends CustomSearcherFactory {
+
+        GenerationSearcherFactory(IndexConfig indexConfig, ExecutorService sliceExecutor) {
+            super(indexConfig.getIndexSetting(), sliceExecutor);
+        }
+
+        @Override
+        public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+            IndexSearcher searcher = super.newSearcher(reader, previousReader);
+            // 每次打开IndexReader时读取一次字段信息，写入、局部更新时不再访问IndexWriter的字段表
+            for (LeafReaderContext leaf : reader.leaves()) {
+                for (FieldInfo fieldInfo : leaf.reader().getFieldInfos()) {
+                    if (fieldInfo.getDocValuesType() == DocValuesType.NUMERIC) {
+                        numericDocValues.add(fieldInfo.name);
+                    }
+                }
+            }
+            IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
+            if (cacheHelper != null) {
+                incRef();
+                cacheHelper.addClosedListener(key -> decRef());
+            }
+            return searcher;
+        }
+    }
+
+    /**
+     * 已获取的IndexSearcher，关闭时归还
+     */
+    public static final class SearcherHandle implements Closeable {
+
+        private final IndexGeneration generation;
+        private final IndexSearcher searcher;
+
+        private SearcherHandle(IndexGeneration generation, IndexSearcher searcher) {
+            this.generation = generation;
+            this.searcher = searcher;
+        }
+
+        public IndexGeneration getGeneration() {
+            return generation;
+        }
+
+        public IndexSearcher getSearcher() {
+            return searcher;
+        }
+
+        @Override
+        public void close() {
+            try {
+                generation.searcherManager.release(searcher);
+            } catch (IOException e) {
+                logger.error("MemoryIndex release IndexSearcher error:{}", e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package org.lccy.lucene.memory.index;
+
+import org.lccy.lucene.memory.exception.LuceneException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 索引注册中心，同一个JVM中的多个索引共享一个定时调度线程、一个查询线程池、一个写线程池、一个维护线程池和一个并行检索的切片线程池，线程数不随索引数增长<br/>
+ * 快照、日志fsync、删除过期文档等周期任务由调度线程按错开的时间触发，在维护线程池中执行，同一任务上次未执行完时跳过本次；
+ * 刷新间隔相同的索引合并为一个刷新任务，每次依次刷新其中有变更的索引，不同间隔的刷新任务同样错开；
+ * 维护任务不占用写线程池，异步写入管道在写线程池中批量写入，ShardedMemoryIndex在查询线程池中并行查询各分片；
+ * 开启concurrentSearch的索引在切片线程池中按切片并行检索，与查询线程池分开，避免分片查询任务占满线程后等待切片任务<br/>
+ * 只注册一个JVM关闭钩子，关闭时先停止调度并等待执行中的维护任务，再关闭已注册的索引（写完已提交的写操作），最后关闭线程池
+ *
+ * @Date: 2026/10/17 23:55 <br>
+ * @author: liuchen11
+ */
+public class IndexRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexRegistry.class);
+    // 黄金分割比例，按注册顺序错开周期任务的首次执行时间，任意数量的任务都能在周期内分布均匀
+    private static final double PHASE_STEP = 0.6180339887498949;
+
+    private static volatile IndexRegistry defaultRegistry;
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService searchExecutor;
+    private final ExecutorService writeExecutor;
+    private final ExecutorService sliceExecutor;
+    private final ExecutorService maintenanceExecutor;
+    // 已注册的索引
+    private final Set<MemoryIndex> indexes = ConcurrentHashMap.newKeySet();
+    // 刷新间隔 -> 使用该间隔的索引
+    private final ConcurrentHashMap<Long, RefreshGroup> refreshGroups = new ConcurrentHashMap<>();
+    // 已注册的周期任务数，用于错开首次执行时间
+    private final AtomicLong taskSequence = new AtomicLong();
+    // 被跳过（合并到正在执行的任务）的周期任务次数
+    private final AtomicLong coalescedTasks = new AtomicLong();
+    private final Thread shutdownHook;
+    private volatile boolean closed = false;
+
+    /**
+     * 切片线程数为CPU核数，维护线程数为2
+     *
+     * @param searchThreads 查询线程池的线程数
+     * @param writeThreads  写线程池的线程数，执行异步写入
+     */
+    public IndexRegistry(int searchThreads, int writeThreads) {
+        this(searchThreads, writeThreads, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 维护线程数为2，快照等耗时的任务执行期间其他维护任务仍然可以执行
+     *
+     * @param searchThreads 查询线程池的线程数
+     * @param writeThreads  写线程池的线程数，执行异步写入
+     * @param sliceThreads  并行检索的切片线程数
+     */
+    public IndexRegistry(int searchThreads, int writeThreads, int sliceThreads) {
+        this(searchThreads, writeThreads, sliceThreads, 2);
+    }
+
+    /**
+     * @param searchThreads      查询线程池的线程数
+     * @param writeThreads       写线程池的线程数，执行异步写入
+     * @param sliceThreads       并行检索的切片线程数
+     * @param maintenanceThreads 维护线程池的线程数，执行刷新、快照、日志fsync、删除过期文档等周期任务
+     */
+    public IndexRegistry(int searchThreads, int writeThreads, int sliceThreads, int maintenanceThreads) {
+        if (searchThreads <= 0 || writeThreads <= 0 || sliceThreads <= 0 || maintenanceThreads <= 0) {
+            throw new IllegalArgumentException("IndexRegistry search, write, slice and maintenance threads must be positive.");
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("memory-index-scheduler"));
+        this.searchExecutor = Executors.newFixedThreadPool(searchThreads, daemonThreadFactory("memory-index-search"));
+        this.writeExecutor = Executors.newFixedThreadPool(writeThreads, daemonThreadFactory("memory-index-write"));
+        // 线程都忙或已经关闭时由查询线程直接执行切片，IndexSearcher等待的切片任务不会被丢弃
+        this.sliceExecutor = new ThreadPoolExecutor(sliceThreads, sliceThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                daemonThreadFactory("memory-index-slice"), (runnable, executor) -> runnable.run());
+        // 每个周期任务同时最多提交一次，队列长度不超过周期任务数
+        this.maintenanceExecutor = Executors.newFixedThreadPool(maintenanceThreads, daemonThreadFactory("memory-index-maintenance"));
+        this.shutdownHook = new Thread(this::shutdown, "memory-index-shutdown");
+        Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+    }
+
+    /**
+     * 默认的注册中心，未指定注册中心的索引都使用它，查询线程数为CPU核数，写线程数为CPU核数的一半（至少2个）
+     */
+    public static IndexRegistry getDefault() {
+        IndexRegistry registry = defaultRegistry;
+        if (registry == null || registry.closed) {
+            synchronized (IndexRegistry.class) {
+                registry = defaultRegistry;
+                if (registry == null || registry.closed) {
+                    int processors = Runtime.getRuntime().availableProcessors();
+                    registry = new IndexRegistry(processors, Math.max(2, processors / 2));
+                    defaultRegistry = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    private static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    void register(MemoryIndex index) throws LuceneException {
+        if (closed) {
+            throw new LuceneException("IndexRegistry is closed.");
+        }
+        indexes.add(index);
+    }
+
+    void unregister(MemoryIndex index) {
+        indexes.remove(index);
+        for (RefreshGroup group : refreshGroups.values()) {
+            group.members.remove(index);
+        }
+    }
+
+    /**
+     * 加入刷新间隔相同的刷新任务，索引关闭时由{@link #unregister}移除
+     *
+     * @param index    索引
+     * @param interval 刷新间隔(ms)
+     */
+    void scheduleRefresh(MemoryIndex index, long interval) {
+        synchronized (refreshGroups) {
+            refreshGroups.computeIfAbsent(interval, key -> new RefreshGroup(key)).members.add(index);
+        }
+    }
+
+    /**
+     * 注册周期任务，首次执行时间在一个周期内错开，在维护线程池中执行，同一任务上次未执行完时跳过本次
+     *
+     * @param name     任务名称，用于日志
+     * @param task     任务
+     * @param interval 执行间隔(ms)
+     * @return 索引关闭时取消
+     */
+    PeriodicTask schedule(String name, Runnable task, long interval) {
+        PeriodicTask periodic = new PeriodicTask(name, task);
+        double phase = (taskSequence.getAndIncrement() * PHASE_STEP) % 1;
+        long initialDelay = interval + (long) (phase * interval);
+        periodic.future = scheduler.scheduleAtFixedRate(periodic::trigger, initialDelay, interval, TimeUnit.MILLISECONDS);
+        return periodic;
+    }
+
+    /**
+     * 刷新间隔相同的索引共享的刷新任务，每次依次刷新全部索引，没有变更的索引只检查是否需要刷新<br/>
+     * 上次刷新未完成时跳过本次，多个索引的刷新合并为一次维护任务，不会随索引数增加同时等待执行的刷新
+     */
+    private final class RefreshGroup implements Runnable {
+
+        // 使用该刷新间隔的索引
+        private final Set<MemoryIndex> members = ConcurrentHashMap.newKeySet();
+
+        RefreshGroup(long interval) {
+            schedule("refresh-" + interval, this, interval);
+        }
+
+        @Override
+        public void run() {
+            for (MemoryIndex index : members) {
+                try {
+                    index.scheduledRefresh();
+                } catch (Exception ex) {
+                    logger.warn("MemoryIndex refresh error:{}", ex.getMessage(), ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * 周期任务，调度线程只负责触发，任务在维护线程池中执行
+     */
+    final class PeriodicTask {
+
+        private final String name;
+        private final Runnable task;
+        // 是否已提交到维护线程池且未执行完
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean cancelled = false;
+
+        PeriodicTask(String name, Runnable task) {
+            this.name = name;
+            this.task = task;
+        }
+
+        private void trigger() {
+            if (cancelled) {
+                return;
+            }
+            if (!running.compareAndSet(false, true)) {
+                coalescedTasks.incrementAndGet();
+                return;
+            }
+            try {
+                maintenanceExecutor.execute(() -> {
+                    try {
+                        if (!cancelled) {
+                            task.run();
+                        }
+                    } catch (Throwable ex) {
+                        logger.warn("IndexRegistry task {} error:{}", name, ex.getMessage(), ex);
+                    } finally {
+                        running.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                running.set(false);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    public ExecutorService getSearchExecutor() {
+        return searchExecutor;
+    }
+
+    public ExecutorService getWriteExecutor() {
+        return writeExecutor;
+    }
+
+    public ExecutorService getSliceExecutor() {
+        return sliceExecutor;
+    }
+
+    public ExecutorService getMaintenanceExecutor() {
+        return maintenanceExecutor;
+    }
+
+    /**
+     * 刷新任务数，刷新间隔相同的索引共享一个刷新任务
+     */
+    public int refreshTaskCount() {
+        return refreshGroups.size();
+    }
+
+    /**
+     * 已注册的索引数
+     */
+    public int indexCount() {
+        return indexes.size();
+    }
+
+    /**
+     * 被跳过的周期任务次数，任务执行时间超过间隔或维护线程池繁忙时增加
+     */
+    public long coalescedTaskCount() {
+        return coalescedTasks.get();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 关闭注册中心及所有已注册的索引
+     */
+    public void close() {
+        try {
+            // 已经关闭的注册中心不再需要在JVM退出时关闭
+            Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+        } catch (IllegalStateException ex) {
+            // JVM正在退出
+        }
+        shutdown();
+    }
+
+    private synchronized void shutdown() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        logger.info("IndexRegistry shutdown, {} indexes.", indexes.size());
+        // 先停止调度并等待执行中的维护任务（如快照），再关闭索引：写完已提交的写操作后关闭索引代和日志，此时写线程池仍然可用
+        scheduler.shutdownNow();
+        maintenanceExecutor.shutdown();
+        try {
+            if (!maintenanceExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                maintenanceExecutor.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            maintenanceExecutor.shutdownNow();
+        }
+        List<MemoryIndex> registered = new ArrayList<>(indexes);
+        for (MemoryIndex index : registered) {
+            try {
+                index.close();
+            } catch (Exception ex) {
+                logger.error("IndexRegistry close index error:{}", ex.getMessage(), ex);
+            }
+        }
+        indexes.clear();
+        writeExecutor.shutdown();
+        searchExecutor.shutdown();
+        sliceExecutor.shutdown();
+        try {
+            if (!writeExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                writeExecutor.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            writeExecutor.shutdownNow();
+        }
+    }
+}
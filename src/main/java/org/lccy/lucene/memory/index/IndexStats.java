@@ -0,0 +1,50 @@
+package org.lccy.lucene.memory.index;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 索引运行状态统计
+ *
+ * @Date: 2026/10/17 11:02 <br>
+ * @author: liuchen11
+ */
+@Getter
+@Setter
+public class IndexStats {
+
+    // 当前可检索的文档数
+    private int numDocs;
+    // 异步写入队列当前长度
+    private int writeQueueSize;
+    // 异步写入队列容量
+    private int writeQueueCapacity;
+    // 异步写入提交的操作数
+    private long writeSubmitted;
+    // 异步写入实际写入索引的操作数
+    private long writeApplied;
+    // 同一主键被合并掉的操作数
+    private long writeFolded;
+    // 队列已满被拒绝的操作数
+    private long writeRejected;
+    // 异步写入批次数
+    private long writeBatches;
+    // 内容未变化跳过的插入/更新数
+    private long noopUpdates;
+    // 等待可见的写操作数
+    private int pendingRefreshListeners;
+    // 等待可见时合并到其他写操作的刷新中的次数
+    private long coalescedRefreshWaits;
+    // 索引文件存储方式
+    private String storeType;
+    // 索引文件总大小
+    private long storeSizeInBytes;
+    // 索引文件占用的堆内存
+    private long storeHeapBytes;
+    // 索引文件占用的堆外内存（直接内存、内存映射文件）
+    private long storeOffHeapBytes;
+    // JVM直接内存使用量
+    private long directMemoryUsed;
+    // JVM内存映射文件使用量
+    private long mappedMemoryUsed;
+}
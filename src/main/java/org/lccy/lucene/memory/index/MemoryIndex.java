@@ -4,26 +4,63 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.core.KeywordAnalyzer;
 import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.KeepOnlyLastCommitDeletionPolicy;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
+import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.similarities.BM25Similarity;
-import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
-import org.lccy.lucene.memory.aggs.collector.Aggregator;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IOUtils;
+import org.lccy.lucene.memory.aggs.collector.AggregatorCollectorManager;
+import org.lccy.lucene.memory.aggs.collector.AggregatorFactory;
 import org.lccy.lucene.memory.aggs.collector.aggregation.InternalAggregation;
 import org.lccy.lucene.memory.builder.DocumentBuilder;
+import org.lccy.lucene.memory.builder.DocumentLoader;
+import org.lccy.lucene.memory.builder.DocumentPlan;
 import org.lccy.lucene.memory.builder.QueryBuilder;
+import org.lccy.lucene.memory.builder.ReusableDocument;
 import org.lccy.lucene.memory.builder.SearchHitsBuilder;
 import org.lccy.lucene.memory.builder.SortBuilder;
 import org.lccy.lucene.memory.constants.Constants;
+import org.lccy.lucene.memory.constants.RefreshPolicyEnum;
 import org.lccy.lucene.memory.exception.LuceneException;
 import org.lccy.lucene.memory.exception.QueryException;
-import org.lccy.lucene.memory.index.config.CustomSearcherFactory;
 import org.lccy.lucene.memory.index.config.IndexConfig;
 import org.lccy.lucene.memory.index.mapping.IndexFieldMapping;
 import org.lccy.lucene.memory.index.mapping.IndexSettingMapping;
+import org.lccy.lucene.memory.index.snapshot.SnapshotStore;
+import org.lccy.lucene.memory.index.store.DirectoryFactory;
+import org.lccy.lucene.memory.index.translog.Translog;
+import org.lccy.lucene.memory.index.write.BulkIndexer;
+import org.lccy.lucene.memory.index.write.BulkItemResponse;
+import org.lccy.lucene.memory.index.write.BulkRequest;
+import org.lccy.lucene.memory.index.write.BulkResponse;
+import org.lccy.lucene.memory.index.write.IndexWritePipeline;
+import org.lccy.lucene.memory.index.write.LiveHashMap;
+import org.lccy.lucene.memory.index.write.RefreshListeners;
+import org.lccy.lucene.memory.index.write.WriteOperation;
+import org.lccy.lucene.memory.loader.IndexDataConsumer;
 import org.lccy.lucene.memory.loader.IndexDataLoader;
 import org.lccy.lucene.memory.search.*;
 import org.lccy.lucene.memory.util.CollectionUtils;
@@ -33,21 +70,37 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 /**
  * 基于lucene的内存倒序索引，支持导入、重新导入、插入、更新、删除、查询操作<br/>
  * 查询支持分组查询、自定义查询、评分查询等方式<br/>
- * 注意：保存的数据量不宜过大，数据量过多，考虑使用elasticsearch、solr等可靠的基于文件系统的方案<br/>
+ * 注意：默认保存在堆内存中，数据量不宜过大；数据量超过堆内存时可以使用storeType=hybrid把合并后的段保存在本地磁盘，
+ * 数据量过多，考虑使用elasticsearch、solr等可靠的基于文件系统的方案<br/>
  * 注意：插入/更新是整体覆盖更新，不是只更新某些字段!!!<br/>
- * 每次必须给出全量字段，只更新某些字段现在还没有做，等有空了做
+ * 每次必须给出全量字段，只更新某些字段请使用{@link #bulk(BulkRequest)}的局部更新
  *
  * @Date: 2023/11/21 09:08 <br>
  * @author: liuchen11
@@ -56,101 +109,458 @@ public class MemoryIndex {
 
     private static final Logger logger = LoggerFactory.getLogger(MemoryIndex.class);
     protected static final int TOTAL_HITS_THRESHOLD = 10000;
+    // 按主键删除时每批的文档数
+    protected static final int DELETE_BATCH_SIZE = 1000;
+    // 查询时过滤过期文档的时间取整(ms)，取整后的过滤条件在该时间内不变，可以被查询缓存复用
+    protected static final long EXPIRY_ROUNDING = 60000L;
+    // 写操作等待可以被检索的最长时间(ms)
+    protected static final long WAIT_FOR_REFRESH_TIMEOUT = 60000L;
 
-    protected Directory directory;
     protected IndexConfig indexConfig;
-    protected IndexWriter indexWriter;
-    protected SearcherManager searcherManager;
+    // 当前索引代，reload时整体替换
+    protected volatile IndexGeneration generation;
     protected IndexDataLoader indexDataLoader;
-    // reload时禁止其他操作（插入、更新、删除、查询）
+    protected IndexWritePipeline writePipeline;
+    // 插入、更新、删除持有读锁，reload只在替换索引代的瞬间持有写锁；查询、刷新不加锁，直接获取当前索引代
     protected final ReadWriteLock reloadLock = new ReentrantReadWriteLock();
-    protected ScheduledExecutorService schedule = Executors.newScheduledThreadPool(1);
+    // reload期间捕获的写操作，新索引代发布前重放
+    protected volatile Queue<WriteOperation> reloadCapture;
+    protected final AtomicBoolean reloading = new AtomicBoolean(false);
+    // 索引注册中心，提供共享的定时调度和写线程池，JVM退出时关闭索引
+    protected final IndexRegistry registry;
+    // 在注册中心中注册的周期任务，关闭索引时取消
+    protected final List<IndexRegistry.PeriodicTask> periodicTasks = new CopyOnWriteArrayList<>();
+    protected final AtomicBoolean closed = new AtomicBoolean(false);
+    // 快照存储，未配置snapshotPath时为null
+    protected SnapshotStore snapshotStore;
+    // 创建索引代的Directory，由storeType决定存储方式
+    protected DirectoryFactory directoryFactory;
+    // 写操作日志，未配置translogPath时为null
+    protected Translog translog;
+    // 同一主键的写入索引、写入日志、记录内容哈希在同一把锁内完成，保证日志、内容哈希的顺序与索引一致
+    protected final Object[] writeStripes = new Object[32];
+    // 内容未变化跳过的插入/更新数
+    protected final LongAdder noopUpdates = new LongAdder();
+    // 等待可检索时合并到其他调用的刷新中的次数
+    protected final LongAdder coalescedRefreshWaits = new LongAdder();
+    // 增量重新导入期间被写入的主键，导入不会覆盖或删除这些主键
+    protected volatile Set<String> reloadTouched;
 
+    /**
+     * 使用默认的索引注册中心
+     */
     public MemoryIndex(IndexConfig indexConfig, IndexDataLoader loader) throws LuceneException {
+        this(indexConfig, loader, IndexRegistry.getDefault());
+    }
+
+    /**
+     * @param indexConfig 索引配置
+     * @param loader      数据加载
+     * @param registry    索引注册中心，多个索引共享定时调度和线程池
+     */
+    public MemoryIndex(IndexConfig indexConfig, IndexDataLoader loader, IndexRegistry registry) throws LuceneException {
         if (indexConfig == null) {
             throw new IllegalArgumentException("MemoryIndex config must set.");
         }
+        if (registry == null) {
+            throw new IllegalArgumentException("MemoryIndex registry must set.");
+        }
+        if (registry.isClosed()) {
+            throw new LuceneException("IndexRegistry is closed.");
+        }
         this.indexConfig = indexConfig;
+        this.registry = registry;
         this.indexDataLoader = loader;
-        createIndexAndLoad();
-        addRefreshTask();
-        destroy();
+        for (int i = 0; i < writeStripes.length; i++) {
+            writeStripes[i] = new Object();
+        }
+        this.directoryFactory = new DirectoryFactory(indexConfig.getIndexSetting());
+        String snapshotPath = indexConfig.getIndexSetting().getSnapshotPath();
+        if (StringUtil.isNotEmpty(snapshotPath)) {
+            this.snapshotStore = new SnapshotStore(Paths.get(snapshotPath));
+        }
+        openTranslog();
+        try {
+            createIndexAndLoad();
+            startWritePipeline();
+            addRefreshTask();
+            addSnapshotTask();
+            addTranslogSyncTask();
+            addExpiryTask();
+        } catch (RuntimeException ex) {
+            closeOnFailure(ex);
+            throw ex;
+        }
+        register();
+    }
+
+    /**
+     * 构造失败时释放已经打开的日志、索引代、写入管道和定时任务，没有使用的日志代一并删除
+     *
+     * @param cause 构造失败的异常，释放时的异常作为其suppressed异常
+     */
+    private void closeOnFailure(RuntimeException cause) {
+        this.closed.set(true);
+        this.registry.unregister(this);
+        for (IndexRegistry.PeriodicTask task : this.periodicTasks) {
+            task.cancel();
+        }
+        if (this.writePipeline != null) {
+            this.writePipeline.close();
+        }
+        IOUtils.closeWhileHandlingException(this.generation);
+        if (this.translog != null) {
+            try {
+                this.translog.closeAndDeleteUnused();
+            } catch (IOException | RuntimeException ex) {
+                cause.addSuppressed(ex);
+            }
+        }
+    }
+
+    /**
+     * 打开写操作日志
+     */
+    private void openTranslog() throws LuceneException {
+        String translogPath = indexConfig.getIndexSetting().getTranslogPath();
+        if (StringUtil.isEmpty(translogPath)) {
+            return;
+        }
+        try {
+            this.translog = Translog.open(Paths.get(translogPath));
+        } catch (IOException ex) {
+            throw new LuceneException("MemoryIndex open translog error", ex);
+        }
     }
 
     /**
-     * 创建索引并导入初期数据
+     * 创建索引并导入初期数据，配置了快照时优先从快照恢复，之后重放写操作日志
      *
      * @throws IOException
      */
     private void createIndexAndLoad() throws LuceneException {
+        Map<String, String> userData = readSnapshotUserData();
+        IndexGeneration restored = restoreSnapshot(userData);
+        this.generation = restored != null ? restored : createGeneration();
+        long fromGeneration = 0;
+        if (restored != null && userData.containsKey(Translog.TRANSLOG_GENERATION)) {
+            fromGeneration = Long.parseLong(userData.get(Translog.TRANSLOG_GENERATION));
+        }
+        recoverFromTranslog(fromGeneration);
+    }
+
+    /**
+     * 读取最近一次快照的提交数据
+     *
+     * @return 没有快照、读取失败时返回null
+     */
+    private Map<String, String> readSnapshotUserData() {
+        if (snapshotStore == null || !indexConfig.getIndexSetting().isSnapshotRestore()) {
+            return null;
+        }
+        try {
+            return snapshotStore.readUserData();
+        } catch (IOException ex) {
+            logger.warn("MemoryIndex read snapshot error, load from data loader:{}", ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * 把写操作日志重放到当前索引代
+     *
+     * @param fromGeneration 快照之前的写操作已经包含在快照中，从快照记录的日志代开始重放；从数据源导入时重放全部日志
+     */
+    private void recoverFromTranslog(long fromGeneration) throws LuceneException {
+        if (translog == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        String primaryName = indexConfig.getPrimaryField().getName();
+        IndexGeneration target = this.generation;
+        try {
+            long count = translog.replay(fromGeneration, operation -> applyOperation(target, primaryName, operation));
+            if (count > 0) {
+                this.generation.getSearcherManager().maybeRefreshBlocking();
+            }
+            logger.info("MemoryIndex replay {} operations from translog {} in {}ms.", count, translog.getRoot(),
+                    System.currentTimeMillis() - start);
+        } catch (IOException ex) {
+            closeGeneration(this.generation);
+            throw new LuceneException("MemoryIndex replay translog error", ex);
+        }
+    }
+
+    /**
+     * 创建IndexWriter配置
+     *
+     * @return
+     */
+    private IndexWriterConfig newIndexWriterConfig() {
+        Analyzer defAnalyzer = new KeywordAnalyzer();
+        Map<String, Analyzer> fieldAnalyzers = indexConfig.getFieldAnalyzers();
+        PerFieldAnalyzerWrapper analyzerWrapper = new PerFieldAnalyzerWrapper(defAnalyzer, fieldAnalyzers);
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzerWrapper);
+        indexWriterConfig.setSimilarity(new BM25Similarity());
+        indexWriterConfig.setCodec(indexConfig.getCodec());
+        // 内存索引不需要复合文件
+        indexWriterConfig.setUseCompoundFile(false);
+        // 快照期间保留提交点的文件
+        indexWriterConfig.setIndexDeletionPolicy(new SnapshotDeletionPolicy(new KeepOnlyLastCommitDeletionPolicy()));
+        return indexWriterConfig;
+    }
+
+    /**
+     * 每次提交时写入的提交数据
+     *
+     * @return
+     */
+    private Map<String, String> commitData() {
+        return commitData(-1);
+    }
+
+    /**
+     * 每次提交时写入的提交数据
+     *
+     * @param translogGeneration 提交包含该日志代之前的全部写操作，小于0时不记录
+     * @return
+     */
+    private Map<String, String> commitData(long translogGeneration) {
+        Map<String, String> commitData = new HashMap<>();
+        commitData.put(SnapshotStore.MAPPING_SIGNATURE, indexConfig.mappingSignature());
+        if (translogGeneration >= 0) {
+            commitData.put(Translog.TRANSLOG_GENERATION, Long.toString(translogGeneration));
+        }
+        return commitData;
+    }
+
+    /**
+     * 从最近一次快照恢复索引代，直接复制段文件，不重新分词
+     *
+     * @param userData 最近一次快照的提交数据
+     * @return 没有快照、字段映射已变更或恢复失败时返回null
+     */
+    private IndexGeneration restoreSnapshot(Map<String, String> userData) {
+        if (userData == null) {
+            return null;
+        }
+        Directory directoryLocal = null;
+        IndexWriter indexWriterLocal = null;
+        try {
+            if (!indexConfig.mappingSignature().equals(userData.get(SnapshotStore.MAPPING_SIGNATURE))) {
+                logger.warn("MemoryIndex mapping changed, ignore snapshot:{}", snapshotStore.getRoot());
+                return null;
+            }
+            long start = System.currentTimeMillis();
+            directoryLocal = directoryFactory.newDirectory();
+            long bytes = snapshotStore.restore(directoryLocal);
+            IndexWriterConfig indexWriterConfig = newIndexWriterConfig();
+            indexWriterConfig.setOpenMode(IndexWriterConfig.OpenMode.APPEND);
+            indexWriterLocal = new IndexWriter(directoryLocal, indexWriterConfig);
+            indexWriterLocal.setLiveCommitData(commitData().entrySet());
+            IndexGeneration restored = new IndexGeneration(indexConfig, directoryLocal, indexWriterLocal, registry.getSliceExecutor());
+            logger.info("MemoryIndex restore {} documents ({} bytes) from snapshot {} in {}ms.",
+                    indexWriterLocal.getDocStats().numDocs, bytes, snapshotStore.getRoot(), System.currentTimeMillis() - start);
+            return restored;
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("MemoryIndex restore snapshot error, load from data loader:{}", ex.getMessage(), ex);
+            IOUtils.closeWhileHandlingException(indexWriterLocal, directoryLocal);
+            return null;
+        }
+    }
+
+    /**
+     * 创建新的索引代并导入数据
+     *
+     * @return
+     * @throws LuceneException
+     */
+    private IndexGeneration createGeneration() throws LuceneException {
+        Directory directoryLocal = null;
+        IndexWriter indexWriterLocal = null;
         try {
-            this.directory = new ByteBuffersDirectory();
-            Analyzer defAnalyzer = new KeywordAnalyzer();
-            Map<String, Analyzer> fieldAnalyzers = indexConfig.getFieldAnalyzers();
-            PerFieldAnalyzerWrapper analyzerWrapper = new PerFieldAnalyzerWrapper(defAnalyzer, fieldAnalyzers);
-            IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzerWrapper);
-            indexWriterConfig.setSimilarity(new BM25Similarity());
-            this.indexWriter = new IndexWriter(directory, indexWriterConfig);
+            directoryLocal = directoryFactory.newDirectory();
+            IndexSettingMapping indexSetting = indexConfig.getIndexSetting();
+            IndexWriterConfig indexWriterConfig = newIndexWriterConfig();
+            // 导入期间使用较大的缓冲区减少flush和合并
+            indexWriterConfig.setRAMBufferSizeMB(indexSetting.getBulkRamBufferSizeMB());
+            indexWriterLocal = new IndexWriter(directoryLocal, indexWriterConfig);
+            indexWriterLocal.setLiveCommitData(commitData().entrySet());
 
             if (indexDataLoader != null) {
-                List<Document> documents = indexDataLoader.load(indexConfig);
-                for (Document document : documents) {
-                    this.indexWriter.addDocument(document);
+                long start = System.currentTimeMillis();
+                int threads = indexSetting.getIndexThreads();
+                BulkIndexer bulkIndexer = new BulkIndexer(indexWriterLocal, indexConfig, threads, threads * 1024);
+                try {
+                    indexDataLoader.load(indexConfig, bulkIndexer);
+                } catch (RuntimeException | Error ex) {
+                    // 加载失败时同样停止索引线程，索引线程的异常不能覆盖加载器的异常
+                    try {
+                        bulkIndexer.finish();
+                    } catch (RuntimeException e) {
+                        ex.addSuppressed(e);
+                    }
+                    throw ex;
+                }
+                long total = bulkIndexer.finish();
+                if (indexSetting.getBulkMaxMergeSegments() > 0) {
+                    indexWriterLocal.forceMerge(indexSetting.getBulkMaxMergeSegments());
                 }
-                this.indexWriter.commit();
+                indexWriterLocal.commit();
+                logger.info("MemoryIndex load {} documents with {} threads in {}ms.", total, threads,
+                        System.currentTimeMillis() - start);
+            }
+            // 导入完成后恢复默认缓冲区大小，用于增量写入
+            indexWriterLocal.getConfig().setRAMBufferSizeMB(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+            return new IndexGeneration(indexConfig, directoryLocal, indexWriterLocal, registry.getSliceExecutor());
+        } catch (IOException | RuntimeException ex) {
+            // 加载器、导入线程的异常同样需要释放IndexWriter和Directory（mmap/hybrid存储关闭时删除索引目录）
+            if (indexWriterLocal != null) {
+                try {
+                    indexWriterLocal.rollback();
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("MemoryIndex rollback indexWriter error:{}", e.getMessage(), e);
+                }
+            }
+            IOUtils.closeWhileHandlingException(directoryLocal);
+            if (ex instanceof RuntimeException) {
+                throw (RuntimeException) ex;
             }
-            this.searcherManager = new SearcherManager(this.indexWriter, new CustomSearcherFactory());
-        } catch (IOException ex) {
             throw new LuceneException("MemoryIndex create/load error", ex);
         }
     }
 
     /**
-     * 定时任务，定期刷新
+     * 启动异步批量写入管道
+     */
+    private void startWritePipeline() {
+        IndexSettingMapping indexSetting = this.indexConfig.getIndexSetting();
+        this.writePipeline = new IndexWritePipeline(indexSetting.getWriteQueueSize(), indexSetting.getWriteBatchSize(),
+                indexSetting.getWriteQueueTimeout(), new IndexWritePipeline.BatchHandler() {
+            @Override
+            public void apply(List<WriteOperation> batch) throws IOException {
+                applyBatch(batch);
+            }
+
+            @Override
+            public void refresh() throws IOException {
+                refreshBlocking();
+            }
+        }, registry.getWriteExecutor());
+        this.writePipeline.start();
+    }
+
+    /**
+     * 定时任务，定期刷新，刷新间隔相同的索引在注册中心中合并为一个刷新任务，上次刷新未完成时跳过
      */
     public void addRefreshTask() {
+        this.registry.scheduleRefresh(this, this.indexConfig.getIndexSetting().getRefreshInterval());
+    }
+
+    /**
+     * 注册中心的刷新任务调用，已经关闭的索引不再刷新；刷新期间索引被关闭时忽略SearcherManager已关闭的异常
+     *
+     * @throws IOException
+     */
+    void scheduledRefresh() throws IOException {
+        if (closed.get()) {
+            return;
+        }
+        try {
+            refreshCurrent(false);
+        } catch (AlreadyClosedException ex) {
+            if (!closed.get()) {
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * 定时任务，定期保存快照
+     */
+    public void addSnapshotTask() {
         IndexSettingMapping indexSetting = this.indexConfig.getIndexSetting();
-        this.schedule.scheduleAtFixedRate(() -> {
+        if (snapshotStore == null || indexSetting.getSnapshotInterval() <= 0) {
+            return;
+        }
+        this.periodicTasks.add(this.registry.schedule("snapshot", () -> {
             try {
-                maybeRefresh();
+                snapshot();
             } catch (Exception ex) {
-                logger.warn("MemoryIndex refresh error:{}", ex.getMessage(), ex);
+                logger.warn("MemoryIndex snapshot error:{}", ex.getMessage(), ex);
             }
-        }, indexSetting.getRefreshInterval(), indexSetting.getRefreshInterval(), TimeUnit.MILLISECONDS);
+        }, indexSetting.getSnapshotInterval()));
     }
 
     /**
-     * 销毁前释放资源
+     * 定时任务，translogSyncInterval大于0时定期fsync写操作日志，写操作不等待fsync
      */
-    private void destroy() {
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            logger.info("MemoryIndex destroy.");
+    public void addTranslogSyncTask() {
+        IndexSettingMapping indexSetting = this.indexConfig.getIndexSetting();
+        if (translog == null || indexSetting.getTranslogSyncInterval() <= 0) {
+            return;
+        }
+        this.periodicTasks.add(this.registry.schedule("translog-sync", () -> {
             try {
-                if (this.indexWriter != null) {
-                    this.indexWriter.close();
-                }
-            } catch (IOException e) {
-                logger.error("MemoryIndex destroy indexWriter error", e);
+                translog.sync();
+            } catch (Exception ex) {
+                logger.warn("MemoryIndex translog sync error:{}", ex.getMessage(), ex);
             }
+        }, indexSetting.getTranslogSyncInterval()));
+    }
+
+    /**
+     * 定时任务，定期删除过期的文档
+     */
+    public void addExpiryTask() {
+        IndexSettingMapping indexSetting = this.indexConfig.getIndexSetting();
+        if (indexConfig.getExpiryField() == null || indexSetting.getExpiryInterval() <= 0) {
+            return;
+        }
+        this.periodicTasks.add(this.registry.schedule("expiry", () -> {
             try {
-                if (this.searcherManager != null) {
-                    this.searcherManager.close();
+                long deleted = deleteExpired();
+                if (deleted > 0) {
+                    logger.info("MemoryIndex delete {} expired documents.", deleted);
                 }
-            } catch (IOException e) {
-                logger.error("MemoryIndex destroy searcherManager error", e);
+            } catch (Exception ex) {
+                logger.warn("MemoryIndex delete expired documents error:{}", ex.getMessage(), ex);
             }
-        }));
+        }, indexSetting.getExpiryInterval()));
+    }
+
+    /**
+     * 注册到索引注册中心，JVM退出时由注册中心关闭
+     */
+    private void register() throws LuceneException {
+        try {
+            this.registry.register(this);
+        } catch (LuceneException ex) {
+            close();
+            throw ex;
+        }
     }
 
     /**
      * 插入单个文档到内存索引，必须给出主键字段<br/>
      * 注意：是整体覆盖更新，不是只更新某些字段!!!<br/>
-     * 每次必须给出全量字段，只更新某些字段现在还没有做，等有空了做
+     * 每次必须给出全量字段，只更新某些字段请使用{@link #bulk(BulkRequest)}的局部更新
      *
      * @param document
      * @throws IOException
      */
     public int insertUpdate(Map<String, Object> document) throws LuceneException {
+        return insertUpdate(document, RefreshPolicyEnum.NONE);
+    }
+
+    /**
+     * 插入单个文档到内存索引，参照{@link #insertUpdate(Map)}
+     *
+     * @param document
+     * @param refreshPolicy 刷新策略，wait_for时等待写操作可以被检索后返回
+     * @throws LuceneException
+     */
+    public int insertUpdate(Map<String, Object> document, RefreshPolicyEnum refreshPolicy) throws LuceneException {
 
         if (document == null || document.isEmpty()) {
             return 0;
@@ -160,6 +570,7 @@ public class MemoryIndex {
             throw new IllegalArgumentException("MemoryIndex insert/update must has primary field:" + primaryName);
         }
 
+        int count;
         boolean lock = false;
         try {
             lock = reloadLock.readLock().tryLock(10, TimeUnit.SECONDS);
@@ -167,11 +578,9 @@ public class MemoryIndex {
                 throw new LuceneException("MemoryIndex is reloading, cannot insert/update.");
             }
 
-            Document insert = DocumentBuilder.build(document, indexConfig);
-            Term term = new Term(primaryName, StringUtil.conver2String(document.get(primaryName)));
-            long seqNo = this.indexWriter.updateDocument(term, insert);
-            this.indexWriter.commit();
-            return seqNo >= 0 ? 1 : 0;
+            Long seqNo = indexSource(StringUtil.conver2String(document.get(primaryName)), document);
+            syncTranslog();
+            count = seqNo == null || seqNo >= 0 ? 1 : 0;
         } catch (IOException ex) {
             throw new LuceneException("MemoryIndex insert/update error", ex);
         } catch (InterruptedException ex) {
@@ -181,23 +590,38 @@ public class MemoryIndex {
                 reloadLock.readLock().unlock();
             }
         }
+        applyRefreshPolicy(refreshPolicy);
+        return count;
     }
 
     /**
      * 插入单个文档到内存索引，必须给出主键字段<br/>
      * 注意：是整体覆盖更新，不是只更新某些字段!!!<br/>
-     * 每次必须给出全量字段，只更新某些字段现在还没有做，等有空了做
+     * 每次必须给出全量字段，只更新某些字段请使用{@link #bulk(BulkRequest)}的局部更新
      *
      * @param id
      * @param document
      * @throws IOException
      */
     public int insertUpdate(String id, Document document) throws LuceneException {
+        return insertUpdate(id, document, RefreshPolicyEnum.NONE);
+    }
+
+    /**
+     * 插入单个已构造的文档到内存索引，参照{@link #insertUpdate(String, Document)}
+     *
+     * @param id
+     * @param document
+     * @param refreshPolicy 刷新策略，wait_for时等待写操作可以被检索后返回
+     * @throws LuceneException
+     */
+    public int insertUpdate(String id, Document document, RefreshPolicyEnum refreshPolicy) throws LuceneException {
 
         if (StringUtil.isEmpty(id) || document == null) {
             return 0;
         }
 
+        int count;
         boolean lock = false;
         try {
             lock = reloadLock.readLock().tryLock(10, TimeUnit.SECONDS);
@@ -205,11 +629,9 @@ public class MemoryIndex {
                 throw new LuceneException("MemoryIndex is reloading, cannot insert/update.");
             }
 
-            String primaryName = indexConfig.getPrimaryField().getName();
-            Term term = new Term(primaryName, id);
-            long seqNo = this.indexWriter.updateDocument(term, document);
-            this.indexWriter.commit();
-            return seqNo >= 0 ? 1 : 0;
+            long seqNo = indexInternal(id, document);
+            syncTranslog();
+            count = seqNo >= 0 ? 1 : 0;
         } catch (IOException ex) {
             throw new LuceneException("MemoryIndex insert/update error", ex);
         } catch (InterruptedException ex) {
@@ -219,18 +641,31 @@ public class MemoryIndex {
                 reloadLock.readLock().unlock();
             }
         }
+        applyRefreshPolicy(refreshPolicy);
+        return count;
     }
 
 
     /**
      * 批量插入文档到内存索引，必须给出主键字段<br/>
      * 注意：是整体覆盖更新，不是只更新某些字段!!!<br/>
-     * 每次必须给出全量字段，只更新某些字段现在还没有做，等有空了做
+     * 每次必须给出全量字段，只更新某些字段请使用{@link #bulk(BulkRequest)}的局部更新
      *
      * @param documents
      * @throws IOException
      */
     public int batchInsertUpdate(List<Map<String, Object>> documents) throws LuceneException {
+        return batchInsertUpdate(documents, RefreshPolicyEnum.NONE);
+    }
+
+    /**
+     * 批量插入文档到内存索引，参照{@link #batchInsertUpdate(List)}，整批只刷新或等待一次
+     *
+     * @param documents
+     * @param refreshPolicy 刷新策略，wait_for时等待写操作可以被检索后返回
+     * @throws LuceneException
+     */
+    public int batchInsertUpdate(List<Map<String, Object>> documents, RefreshPolicyEnum refreshPolicy) throws LuceneException {
 
         if (documents == null || documents.isEmpty()) {
             return 0;
@@ -249,14 +684,12 @@ public class MemoryIndex {
                 if (!document.containsKey(primaryName)) {
                     continue;
                 }
-                Document insert = DocumentBuilder.build(document, indexConfig);
-                Term term = new Term(primaryName, StringUtil.conver2String(document.get(primaryName)));
-                long seqNo = this.indexWriter.updateDocument(term, insert);
-                if(seqNo >= 0) {
+                Long seqNo = indexSource(StringUtil.conver2String(document.get(primaryName)), document);
+                if(seqNo == null || seqNo >= 0) {
                     successCount++;
                 }
             }
-            this.indexWriter.commit();
+            syncTranslog();
         } catch (IOException ex) {
             throw new LuceneException("MemoryIndex insert/update error", ex);
         } catch (InterruptedException ex) {
@@ -266,6 +699,7 @@ public class MemoryIndex {
                 reloadLock.readLock().unlock();
             }
         }
+        applyRefreshPolicy(refreshPolicy);
         return successCount;
     }
 
@@ -273,12 +707,23 @@ public class MemoryIndex {
     /**
      * 批量插入文档到内存索引，必须给出主键字段(key为主键, value为文档)<br/>
      * 注意：是整体覆盖更新，不是只更新某些字段!!!<br/>
-     * 每次必须给出全量字段，只更新某些字段现在还没有做，等有空了做
+     * 每次必须给出全量字段，只更新某些字段请使用{@link #bulk(BulkRequest)}的局部更新
      *
      * @param documentMap
      * @throws IOException
      */
     public int batchInsertUpdate(Map<String, Document> documentMap) throws LuceneException {
+        return batchInsertUpdate(documentMap, RefreshPolicyEnum.NONE);
+    }
+
+    /**
+     * 批量插入已构造的文档到内存索引，参照{@link #batchInsertUpdate(Map)}，整批只刷新或等待一次
+     *
+     * @param documentMap
+     * @param refreshPolicy 刷新策略，wait_for时等待写操作可以被检索后返回
+     * @throws LuceneException
+     */
+    public int batchInsertUpdate(Map<String, Document> documentMap, RefreshPolicyEnum refreshPolicy) throws LuceneException {
 
         if (documentMap == null || documentMap.isEmpty()) {
             return 0;
@@ -291,21 +736,18 @@ public class MemoryIndex {
             if (!lock) {
                 throw new LuceneException("MemoryIndex is reloading, cannot insert/update.");
             }
-            String primaryName = indexConfig.getPrimaryField().getName();
-
             for(Map.Entry<String, Document> entry : documentMap.entrySet()) {
                 String id = entry.getKey();
                 Document insert = entry.getValue();
                 if(insert == null) {
                     continue;
                 }
-                Term term = new Term(primaryName, id);
-                long seqNo = this.indexWriter.updateDocument(term, insert);
+                long seqNo = indexInternal(id, insert);
                 if(seqNo >= 0) {
                     successCount++;
                 }
             }
-            this.indexWriter.commit();
+            syncTranslog();
         } catch (IOException ex) {
             throw new LuceneException("MemoryIndex insert/update error", ex);
         } catch (InterruptedException ex) {
@@ -315,6 +757,7 @@ public class MemoryIndex {
                 reloadLock.readLock().unlock();
             }
         }
+        applyRefreshPolicy(refreshPolicy);
         return successCount;
     }
 
@@ -326,6 +769,17 @@ public class MemoryIndex {
      * @throws IOException
      */
     public void delete(String id) throws LuceneException {
+        delete(id, RefreshPolicyEnum.NONE);
+    }
+
+    /**
+     * 根据主键删除文档，参照{@link #delete(String)}
+     *
+     * @param id
+     * @param refreshPolicy 刷新策略，wait_for时等待写操作可以被检索后返回
+     * @throws LuceneException
+     */
+    public void delete(String id, RefreshPolicyEnum refreshPolicy) throws LuceneException {
         if (StringUtil.isEmpty(id)) {
             throw new IllegalArgumentException("MemoryIndex delete must has primary value.");
         }
@@ -337,11 +791,8 @@ public class MemoryIndex {
                 throw new LuceneException("MemoryIndex is reloading, cannot delete.");
             }
 
-            IndexFieldMapping primaryConf = indexConfig.getPrimaryField();
-            String primaryName = primaryConf.getName();
-            Term term = new Term(primaryName, id);
-            this.indexWriter.deleteDocuments(term);
-            this.indexWriter.commit();
+            deleteInternal(id);
+            syncTranslog();
         } catch (IOException e) {
             throw new LuceneException("MemoryIndex delete document error", e);
         } catch (InterruptedException e) {
@@ -351,347 +802,1649 @@ public class MemoryIndex {
                 reloadLock.readLock().unlock();
             }
         }
+        applyRefreshPolicy(refreshPolicy);
     }
 
     /**
-     * 获取当前索引的文档总数
+     * 批量写入，混合插入/更新、局部更新、删除操作，按请求中的顺序执行<br/>
+     * 全部操作在一次加锁中写入IndexWriter，共用一次日志fsync；按{@link BulkRequest#getRefreshPolicy()}写入后只刷新或等待一次<br/>
+     * 单个操作的参数错误、文档不存在不影响其他操作，结果中返回每个操作的状态；IndexWriter写入异常时整体失败<br/>
+     * 局部更新读取最新写入的文档（包括同一请求中前面的操作），与给出的字段合并后整体覆盖，未保存的字段必须在局部更新中给出；
+     * 给出的字段全部只保存DocValues（docValueOnly）时，通过IndexWriter.updateDocValues原地更新，不读取、不重新构造文档
      *
-     * @return
+     * @param request
+     * @return 与请求中的操作一一对应
+     * @throws LuceneException
      */
-    public int count() {
-        IndexSearcher searcher = null;
+    public BulkResponse bulk(BulkRequest request) throws LuceneException {
+        long start = System.currentTimeMillis();
+        if (request == null || request.size() == 0) {
+            return new BulkResponse(new ArrayList<>(), 0);
+        }
+        String primaryName = indexConfig.getPrimaryField().getName();
+        List<BulkItemResponse> responses = new ArrayList<>(request.size());
+        // 本次请求中已写入的文档（删除时为null），局部更新优先从这里读取
+        Map<String, Document> written = new HashMap<>();
+        IndexGeneration.SearcherHandle handle = null;
+        // handle是否包含本次请求之前的全部写入
+        boolean realtime = false;
         boolean lock = false;
         try {
             lock = reloadLock.readLock().tryLock(10, TimeUnit.SECONDS);
             if (!lock) {
-                throw new LuceneException("MemoryIndex is reloading, cannot query.");
+                throw new LuceneException("MemoryIndex is reloading, cannot bulk.");
+            }
+            List<BulkRequest.Item> items = request.items();
+            for (int i = 0; i < items.size(); i++) {
+                BulkRequest.Item item = items.get(i);
+                String id = item.getId();
+                try {
+                    switch (item.getOpType()) {
+                        case INDEX:
+                            Document document = item.getDocument();
+                            if (document == null) {
+                                Map<String, Object> source = item.getSource();
+                                if (source == null || !source.containsKey(primaryName)) {
+                                    throw new IllegalArgumentException("MemoryIndex insert/update must has primary field:" + primaryName);
+                                }
+                                id = StringUtil.conver2String(source.get(primaryName));
+                                checkBulkId(id);
+                                if (this.generation.getLiveHashes() != null) {
+                                    Long seqNo = indexSource(id, source);
+                                    if (seqNo == null) {
+                                        // 内容未变化，当前文档（包括本次请求中前面写入的）与给出的数据一致
+                                        responses.add(BulkItemResponse.noop(i, item.getOpType(), id));
+                                    } else {
+                                        responses.add(BulkItemResponse.success(i, item.getOpType(), id, seqNo));
+                                        // 没有构造文档，之后的局部更新重新刷新后读取
+                                        written.remove(id);
+                                        realtime = false;
+                                    }
+                                    break;
+                                }
+                                document = DocumentBuilder.build(source, indexConfig);
+                            }
+                            checkBulkId(id);
+                            responses.add(BulkItemResponse.success(i, item.getOpType(), id, indexInternal(id, document)));
+                            written.put(id, document);
+                            break;
+                        case UPDATE:
+                            checkBulkId(id);
+                            Document docValues = written.containsKey(id) ? null : docValuesUpdate(item.getSource());
+                            if (docValues != null) {
+                                // 只更新DocValues，先在最近一次刷新的数据中确认文档存在，找不到时再刷新后查找
+                                if (handle == null) {
+                                    handle = acquireSearcher(false);
+                                }
+                                boolean exists = loadHit(handle, id) != null;
+                                if (!exists && !realtime) {
+                                    handle.close();
+                                    handle = null;
+                                    handle = acquireSearcher(true);
+                                    realtime = true;
+                                    exists = loadHit(handle, id) != null;
+                                }
+                                if (!exists) {
+                                    responses.add(BulkItemResponse.notFound(i, item.getOpType(), id));
+                                    break;
+                                }
+                                responses.add(BulkItemResponse.success(i, item.getOpType(), id, updateDocValuesInternal(id, docValues)));
+                                // 之后读取完整文档时需要重新刷新
+                                realtime = false;
+                                break;
+                            }
+                            Document current;
+                            if (written.containsKey(id)) {
+                                current = written.get(id);
+                            } else {
+                                if (handle == null || !realtime) {
+                                    if (handle != null) {
+                                        handle.close();
+                                        handle = null;
+                                    }
+                                    handle = acquireSearcher(true);
+                                    realtime = true;
+                                }
+                                current = loadDocument(handle, id);
+                            }
+                            if (current == null) {
+                                responses.add(BulkItemResponse.notFound(i, item.getOpType(), id));
+                                break;
+                            }
+                            Document updated = mergeDocument(id, current, item.getSource());
+                            responses.add(BulkItemResponse.success(i, item.getOpType(), id, indexInternal(id, updated)));
+                            written.put(id, updated);
+                            break;
+                        case DELETE:
+                            checkBulkId(id);
+                            responses.add(BulkItemResponse.success(i, item.getOpType(), id, deleteInternal(id)));
+                            written.put(id, null);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("MemoryIndex bulk not support operation:" + item.getOpType());
+                    }
+                } catch (IllegalArgumentException | LuceneException ex) {
+                    responses.add(BulkItemResponse.failed(i, item.getOpType(), id, ex.getMessage()));
+                }
             }
-            searcher = this.searcherManager.acquire();
-            return searcher.getIndexReader().numDocs();
+            // 整批写操作共用一次fsync
+            syncTranslog();
         } catch (IOException ex) {
-            throw new LuceneException("MemoryIndex count error", ex);
-        } catch (InterruptedException e) {
-            throw new LuceneException("MemoryIndex is reloading, cannot query.", e);
+            throw new LuceneException("MemoryIndex bulk error", ex);
+        } catch (InterruptedException ex) {
+            throw new LuceneException("MemoryIndex is reloading, cannot bulk.", ex);
         } finally {
+            if (handle != null) {
+                handle.close();
+            }
             if (lock) {
                 reloadLock.readLock().unlock();
             }
         }
+        applyRefreshPolicy(request.getRefreshPolicy());
+        return new BulkResponse(responses, System.currentTimeMillis() - start);
     }
 
     /**
-     * 如果IndexWriter有变更，则更新IndexSearcher，如果没有，保持现状
+     * 根据主键局部更新文档，只覆盖给出的字段，参照{@link #bulk(BulkRequest)}的局部更新<br/>
+     * 给出的字段全部只保存DocValues（docValueOnly）时原地更新，适合价格、库存、销量等频繁变化的数值字段
      *
-     * @throws IOException
+     * @param id     主键
+     * @param fields 需要更新的字段
+     * @return 文档不存在时返回0
+     * @throws LuceneException
      */
-    public void maybeRefresh() throws LuceneException {
+    public int update(String id, Map<String, Object> fields) throws LuceneException {
+        return update(id, fields, RefreshPolicyEnum.NONE);
+    }
+
+    /**
+     * 根据主键局部更新文档，参照{@link #update(String, Map)}
+     *
+     * @param id     主键
+     * @param fields 需要更新的字段
+     * @param refreshPolicy 刷新策略，wait_for时等待写操作可以被检索后返回
+     * @return 文档不存在时返回0
+     * @throws LuceneException
+     */
+    public int update(String id, Map<String, Object> fields, RefreshPolicyEnum refreshPolicy) throws LuceneException {
+        if (StringUtil.isEmpty(id)) {
+            throw new IllegalArgumentException("MemoryIndex update must has primary value.");
+        }
+        BulkItemResponse item = bulk(new BulkRequest().update(id, fields).setRefreshPolicy(refreshPolicy)).getItems().get(0);
+        if (item.getStatus() == BulkItemResponse.Status.FAILED) {
+            throw new LuceneException("MemoryIndex update error:" + item.getFailure());
+        }
+        return item.getStatus() == BulkItemResponse.Status.SUCCESS ? 1 : 0;
+    }
+
+    /**
+     * 删除满足条件的全部文档，删除后只刷新一次IndexSearcher<br/>
+     * 没有开启操作日志和noopDetection时直接通过IndexWriter.deleteDocuments(Query)删除；
+     * 否则先在最新数据中找出满足条件的主键，再按主键删除，保证日志可以重放
+     *
+     * @param criteriaList 删除条件，不能为空
+     * @return 删除前满足条件的文档数
+     * @throws LuceneException
+     * @throws QueryException  条件错误
+     */
+    public long deleteByQuery(List<SearchCriteria> criteriaList) throws LuceneException, QueryException {
+        Query query = QueryBuilder.createQuery(criteriaList, indexConfig, null);
+        if (query == null) {
+            throw new IllegalArgumentException("MemoryIndex delete by query must has criteria.");
+        }
+        return deleteByQuery(query);
+    }
+
+    /**
+     * 删除过期时间不晚于当前时间的文档，参照{@link #deleteByQuery(List)}，由定时任务调用
+     *
+     * @return 删除的文档数，没有配置过期时间字段时返回0
+     * @throws LuceneException
+     */
+    public long deleteExpired() throws LuceneException {
+        IndexFieldMapping expiryField = indexConfig.getExpiryField();
+        if (expiryField == null) {
+            return 0;
+        }
+        return deleteByQuery(LongPoint.newRangeQuery(expiryField.getName(), Long.MIN_VALUE, System.currentTimeMillis()));
+    }
+
+    private long deleteByQuery(Query query) throws LuceneException {
+        if (translog != null || this.generation.getLiveHashes() != null) {
+            // 分批删除，避免长时间持有读锁和过大的批量请求，最后只刷新一次
+            List<String> ids = matchedIds(query);
+            long deleted = 0;
+            for (int from = 0; from < ids.size(); from += DELETE_BATCH_SIZE) {
+                BulkRequest request = new BulkRequest().setRefresh(false);
+                for (String id : ids.subList(from, Math.min(ids.size(), from + DELETE_BATCH_SIZE))) {
+                    request.delete(id);
+                }
+                deleted += bulk(request).successCount();
+            }
+            if (deleted > 0) {
+                try {
+                    refreshBlocking();
+                } catch (IOException ex) {
+                    throw new LuceneException("MemoryIndex refresh error", ex);
+                }
+            }
+            return deleted;
+        }
+
+        long count;
         boolean lock = false;
+        IndexGeneration.SearcherHandle handle = null;
         try {
             lock = reloadLock.readLock().tryLock(10, TimeUnit.SECONDS);
             if (!lock) {
-                throw new LuceneException("MemoryIndex is reloading, cannot query.");
+                throw new LuceneException("MemoryIndex is reloading, cannot delete.");
+            }
+            handle = acquireSearcher(true);
+            count = handle.getSearcher().count(query);
+            if (count > 0) {
+                this.generation.getIndexWriter().deleteDocuments(query);
+                Queue<WriteOperation> capture = this.reloadCapture;
+                if (capture != null) {
+                    capture.add(WriteOperation.deleteByQuery(query));
+                }
             }
-            this.searcherManager.maybeRefresh();
         } catch (IOException ex) {
-            throw new LuceneException("MemoryIndex maybeRefresh error", ex);
-        } catch (InterruptedException e) {
-            throw new LuceneException("MemoryIndex is reloading, cannot query.", e);
+            throw new LuceneException("MemoryIndex delete by query error", ex);
+        } catch (InterruptedException ex) {
+            throw new LuceneException("MemoryIndex is reloading, cannot delete.", ex);
         } finally {
+            if (handle != null) {
+                handle.close();
+            }
             if (lock) {
                 reloadLock.readLock().unlock();
             }
         }
+        if (count > 0) {
+            try {
+                refreshBlocking();
+            } catch (IOException ex) {
+                throw new LuceneException("MemoryIndex refresh error", ex);
+            }
+        }
+        return count;
     }
 
     /**
-     * 重新加载数据，加载完成后替换原始数据时，会阻塞全部操作
+     * 局部更新满足条件的全部文档，参照{@link #update(String, Map)}<br/>
+     * 先在最新数据中找出满足条件的主键，再在一次{@link #bulk(BulkRequest)}中更新，更新后只刷新一次IndexSearcher；
+     * 给出的字段全部是docValueOnly字段时原地更新，否则未保存的字段必须在给出的字段中
+     *
+     * @param criteriaList 更新条件，不能为空
+     * @param fields       需要更新的字段，不能包含主键
+     * @return 每个文档的更新结果
+     * @throws LuceneException
+     * @throws QueryException  条件错误
      */
-    public void reloadData() throws LuceneException {
-        try {
-            // 先读取数据
-            List<Document> documents = null;
-            if (this.indexDataLoader != null) {
-                documents = this.indexDataLoader.load(this.indexConfig);
-            }
+    public BulkResponse updateByQuery(List<SearchCriteria> criteriaList, Map<String, Object> fields) throws LuceneException, QueryException {
+        if (fields == null || fields.isEmpty()) {
+            throw new IllegalArgumentException("MemoryIndex update document is empty.");
+        }
+        if (fields.containsKey(indexConfig.getPrimaryField().getName())) {
+            throw new IllegalArgumentException("MemoryIndex update by query cannot change primary field.");
+        }
+        Query query = QueryBuilder.createQuery(criteriaList, indexConfig, null);
+        if (query == null) {
+            throw new IllegalArgumentException("MemoryIndex update by query must has criteria.");
+        }
+        BulkRequest request = new BulkRequest();
+        for (String id : matchedIds(query)) {
+            request.update(id, fields);
+        }
+        return bulk(request);
+    }
 
-            // 写锁更新
-            boolean lock = reloadLock.writeLock().tryLock(60, TimeUnit.SECONDS);
-            if (lock) {
-                Directory directoryLocal = new ByteBuffersDirectory();
-                Analyzer defAnalyzer = new KeywordAnalyzer();
-                Map<String, Analyzer> fieldAnalyzers = this.indexConfig.getFieldAnalyzers();
-                PerFieldAnalyzerWrapper analyzerWrapper = new PerFieldAnalyzerWrapper(defAnalyzer, fieldAnalyzers);
-                IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzerWrapper);
-                indexWriterConfig.setSimilarity(new BM25Similarity());
-                IndexWriter indexWriterLocal = new IndexWriter(directoryLocal, indexWriterConfig);
-
-                if (documents != null) {
-                    for (Document document : documents) {
-                        indexWriterLocal.addDocument(document);
+    /**
+     * 在最新数据中找出满足条件的全部主键<br/>
+     * 按段遍历满足条件的文档，只为这些文档从主键的DocValues（keyword字段强制开启）读取主键，开销与满足条件的文档数成正比
+     */
+    private List<String> matchedIds(Query query) throws LuceneException {
+        String primaryName = indexConfig.getPrimaryField().getName();
+        List<String> ids = new ArrayList<>();
+        IndexGeneration.SearcherHandle handle = null;
+        try {
+            handle = acquireSearcher(true);
+            IndexSearcher searcher = handle.getSearcher();
+            Weight weight = searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1f);
+            for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                Scorer scorer = weight.scorer(leaf);
+                if (scorer == null) {
+                    continue;
+                }
+                SortedSetDocValues primaryValues = DocValues.getSortedSet(leaf.reader(), primaryName);
+                Bits liveDocs = leaf.reader().getLiveDocs();
+                DocIdSetIterator iterator = scorer.iterator();
+                for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+                    if ((liveDocs == null || liveDocs.get(doc)) && primaryValues.advanceExact(doc)) {
+                        ids.add(primaryValues.lookupOrd(primaryValues.nextOrd()).utf8ToString());
                     }
-                    indexWriterLocal.commit();
                 }
-                SearcherManager searcherManagerLocal = new SearcherManager(indexWriterLocal, new CustomSearcherFactory());
-
-                this.indexWriter.close();
-                this.searcherManager.close();
-                this.directory = directoryLocal;
-                this.indexWriter = indexWriterLocal;
-                this.searcherManager = searcherManagerLocal;
-            } else {
-                throw new LuceneException("MemoryIndex reload lock error");
             }
         } catch (IOException ex) {
-            throw new LuceneException("MemoryIndex reload error", ex);
-        } catch (InterruptedException ex) {
-            throw new LuceneException("MemoryIndex reload error, cannot lock", ex);
+            throw new LuceneException("MemoryIndex search matched documents error", ex);
         } finally {
-            reloadLock.writeLock().unlock();
+            if (handle != null) {
+                handle.close();
+            }
         }
+        return ids;
     }
 
+    private void checkBulkId(String id) {
+        if (StringUtil.isEmpty(id)) {
+            throw new IllegalArgumentException("MemoryIndex bulk operation must has primary value.");
+        }
+    }
 
     /**
-     * 分组查询
-     * @param request
-     * @return
-     * @throws QueryException
+     * 按主键读取文档的存储字段
+     *
+     * @return 不存在时返回null
      */
-    public SearchResponse search(SearchRequest request) throws QueryException {
+    private Document loadDocument(IndexGeneration.SearcherHandle handle, String id) throws IOException {
+        PrimaryKeyLookup.Hit hit = loadHit(handle, id);
+        return hit == null ? null : DocumentLoader.load(hit.getContext().reader(), hit.getDoc(), indexConfig);
+    }
+
+    private PrimaryKeyLookup.Hit loadHit(IndexGeneration.SearcherHandle handle, String id) throws IOException {
+        return handle.getGeneration().getPrimaryKeyLookup().lookup(handle.getSearcher().getIndexReader(), new BytesRef(id));
+    }
+
+    /**
+     * 局部更新：已有文档的存储字段与给出的字段合并后重新构造文档
+     */
+    private Document mergeDocument(String id, Document current, Map<String, Object> partial) {
+        if (partial == null || partial.isEmpty()) {
+            throw new IllegalArgumentException("MemoryIndex update document is empty.");
+        }
+        for (String unstored : indexConfig.getUnstoredFields()) {
+            if (!partial.containsKey(unstored)) {
+                throw new IllegalArgumentException("MemoryIndex update must has unstored field:" + unstored);
+            }
+        }
+        Map<String, Object> source = DocumentBuilder.source(current, indexConfig);
+        source.putAll(partial);
+        source.put(indexConfig.getPrimaryField().getName(), id);
+        return DocumentBuilder.build(source, indexConfig);
+    }
+
+    /**
+     * 异步插入/更新单个文档，必须给出主键字段<br/>
+     * 写操作进入异步写入队列，与其他线程的写操作合并批量写入，同一主键的多次写入只保留最后一次<br/>
+     * 注意：是整体覆盖更新，不是只更新某些字段!!!
+     *
+     * @param document
+     * @return 文档可以被检索时完成
+     * @throws LuceneException 写入队列已满
+     */
+    public CompletableFuture<Long> insertUpdateAsync(Map<String, Object> document) throws LuceneException {
+        if (document == null || document.isEmpty()) {
+            throw new IllegalArgumentException("MemoryIndex insert/update document is empty.");
+        }
+        String primaryName = indexConfig.getPrimaryField().getName();
+        if (!document.containsKey(primaryName)) {
+            throw new IllegalArgumentException("MemoryIndex insert/update must has primary field:" + primaryName);
+        }
+        Document insert = DocumentBuilder.build(document, indexConfig);
+        String id = StringUtil.conver2String(document.get(primaryName));
+        return this.writePipeline.submit(WriteOperation.index(id, insert));
+    }
 
-        IndexSearcher searcher = null;
+    /**
+     * 异步插入/更新单个文档，参照{@link #insertUpdateAsync(Map)}
+     *
+     * @param id
+     * @param document
+     * @return 文档可以被检索时完成
+     * @throws LuceneException 写入队列已满
+     */
+    public CompletableFuture<Long> insertUpdateAsync(String id, Document document) throws LuceneException {
+        if (StringUtil.isEmpty(id) || document == null) {
+            throw new IllegalArgumentException("MemoryIndex insert/update must has primary value and document.");
+        }
+        return this.writePipeline.submit(WriteOperation.index(id, document));
+    }
+
+    /**
+     * 异步根据主键删除文档
+     *
+     * @param id
+     * @return 删除结果可以被检索时完成
+     * @throws LuceneException 写入队列已满
+     */
+    public CompletableFuture<Long> deleteAsync(String id) throws LuceneException {
+        if (StringUtil.isEmpty(id)) {
+            throw new IllegalArgumentException("MemoryIndex delete must has primary value.");
+        }
+        return this.writePipeline.submit(WriteOperation.delete(id));
+    }
+
+    /**
+     * 异步写入管道的批量写入，整批写入并fsync后注册可见性监听，任一步骤失败时整批操作失败
+     */
+    private void applyBatch(List<WriteOperation> batch) throws IOException {
         boolean lock = false;
         try {
-            lock = reloadLock.readLock().tryLock(5, TimeUnit.SECONDS);
+            lock = reloadLock.readLock().tryLock(10, TimeUnit.SECONDS);
             if (!lock) {
-                throw new QueryException("MemoryIndex is reloading, cannot query.");
+                throw new LuceneException("MemoryIndex is reloading, cannot insert/update.");
+            }
+            LiveHashMap liveHashes = this.generation.getLiveHashes();
+            for (WriteOperation operation : batch) {
+                long seqNo;
+                if (operation.getOpType() == WriteOperation.OpType.DELETE) {
+                    seqNo = deleteInternal(operation.getId());
+                } else if (liveHashes == null) {
+                    seqNo = indexInternal(operation.getId(), operation.getDocument());
+                } else {
+                    seqNo = indexUnlessUnchanged(liveHashes, operation.getId(), operation.getDocument());
+                }
+                operation.setSeqNo(seqNo);
+            }
+            // 整批写操作共用一次fsync
+            syncTranslog();
+            RefreshListeners refreshListeners = this.generation.getRefreshListeners();
+            for (WriteOperation operation : batch) {
+                operation.listen(refreshListeners);
+            }
+        } catch (IOException | RuntimeException ex) {
+            // 写入中途或fsync失败时，已经分配seqNo的操作同样失败，不能一直等待可见性通知
+            for (WriteOperation operation : batch) {
+                operation.fail(ex);
+            }
+            throw ex;
+        } catch (InterruptedException ex) {
+            throw new LuceneException("MemoryIndex is reloading, cannot insert/update.", ex);
+        } finally {
+            if (lock) {
+                reloadLock.readLock().unlock();
             }
+        }
+    }
 
-            searcher = this.searcherManager.acquire();
+    /**
+     * 全量插入/更新原始数据，调用方需持有读锁<br/>
+     * 开启noopDetection时按构造后的文档计算内容哈希（与导入、重新导入的哈希相同），与当前文档一致时跳过，不写入IndexWriter和日志
+     *
+     * @return 写入的seqNo，内容未变化跳过时返回null
+     */
+    private Long indexSource(String id, Map<String, Object> source) throws IOException {
+        Document document = DocumentBuilder.build(source, indexConfig);
+        LiveHashMap liveHashes = this.generation.getLiveHashes();
+        long hash = contentHash(document);
+        if (liveHashes == null || hash == LiveHashMap.NO_HASH) {
+            return indexInternal(id, document);
+        }
+        synchronized (writeStripe(id)) {
+            if (isUnchanged(liveHashes, id, hash)) {
+                noopUpdates.increment();
+                return null;
+            }
+            return indexInternal(id, document);
+        }
+    }
+
+    /**
+     * 异步写入的文档在入队前已经构造，内容哈希与当前文档一致时跳过写入，调用方需持有读锁
+     *
+     * @return 写入的seqNo，跳过时返回已完成的最大seqNo，等待之前的写入可以被检索
+     */
+    private long indexUnlessUnchanged(LiveHashMap liveHashes, String id, Document document) throws IOException {
+        long hash = contentHash(document);
+        if (hash == LiveHashMap.NO_HASH) {
+            return indexInternal(id, document);
+        }
+        synchronized (writeStripe(id)) {
+            if (isUnchanged(liveHashes, id, hash)) {
+                noopUpdates.increment();
+                return this.generation.getIndexWriter().getMaxCompletedSequenceNumber();
+            }
+            return indexInternal(id, document);
+        }
+    }
+
+    /**
+     * 内容哈希与当前文档一致时返回true，调用方需持有主键的分段锁<br/>
+     * 先查最近一次刷新之后的写入，没有时再查IndexSearcher中的DocValues
+     */
+    private boolean isUnchanged(LiveHashMap liveHashes, String id, long hash) throws IOException {
+        Long live = liveHashes.get(id);
+        if (live != null) {
+            return live == hash;
+        }
+        IndexGeneration.SearcherHandle handle = acquireSearcher();
+        try {
+            PrimaryKeyLookup.Hit hit = loadHit(handle, id);
+            return hit != null && contentHash(hit) == hash;
+        } finally {
+            handle.close();
+        }
+    }
+
+    /**
+     * 读取IndexSearcher中文档的内容哈希
+     */
+    private static long contentHash(PrimaryKeyLookup.Hit hit) throws IOException {
+        NumericDocValues values = hit.getContext().reader().getNumericDocValues(Constants._HASH);
+        return values != null && values.advanceExact(hit.getDoc()) ? values.longValue() : LiveHashMap.NO_HASH;
+    }
+
+    private static long contentHash(Document document) {
+        IndexableField field = document.getField(Constants._HASH);
+        return field == null ? LiveHashMap.NO_HASH : field.numericValue().longValue();
+    }
 
-            int maxDoc = Math.max(1, searcher.getIndexReader().maxDoc());
-            ScoreDoc after = request.getLastDoc();
-            if (after != null) {
-                if(CollectionUtils.isNotEmpty(request.getSorts()) && !(after instanceof FieldDoc)) {
-                    throw new QueryException("When sorting query, after must be a FieldDoc; got " + after);
+    /**
+     * 写入当前索引代，调用方需持有读锁，reload期间同时记录写操作用于重放；开启日志时同时写入日志，开启noopDetection时记录内容哈希<br/>
+     * 记录写操作与写入在同一主键分段锁内，同一主键的并发写入在捕获中的顺序与写入当前索引代的顺序一致，重放后结果相同
+     */
+    private long indexInternal(String id, Document document) throws IOException {
+        String primaryName = indexConfig.getPrimaryField().getName();
+        LiveHashMap liveHashes = this.generation.getLiveHashes();
+        Queue<WriteOperation> capture = this.reloadCapture;
+        long seqNo;
+        if (translog == null && liveHashes == null && capture == null) {
+            seqNo = this.generation.getIndexWriter().updateDocument(new Term(primaryName, id), document);
+        } else {
+            synchronized (writeStripe(id)) {
+                seqNo = this.generation.getIndexWriter().updateDocument(new Term(primaryName, id), document);
+                if (translog != null) {
+                    translog.add(WriteOperation.index(id, document));
+                }
+                if (liveHashes != null) {
+                    liveHashes.put(id, contentHash(document));
+                    markReloadTouched(id);
                 }
-                if (after.doc >= maxDoc) {
-                    throw new QueryException("after.doc exceeds the number of documents in the reader: after.doc="
-                            + after.doc + " maxDoc=" + maxDoc);
+                if (capture != null) {
+                    capture.add(WriteOperation.index(id, document));
                 }
             }
+        }
+        return seqNo;
+    }
 
-            // 初始化分页
-            int pageNum = 1;
-            int pageSize = 10;
-            PageArg pageArg = request.getPageArg();
-            if (pageArg != null) {
-                pageNum = pageArg.getPageNum() < 1 ? 1 : pageArg.getPageNum();
-                pageSize = pageArg.getPageSize() < 0 ? 10 : pageArg.getPageSize();
-            }
-            if(pageNum > 1 && request.getFilter() != null) {
-                throw new QueryException("Paging query disabling result filtering");
+    /**
+     * 从当前索引代删除，调用方需持有读锁，reload期间同时记录写操作用于重放；开启日志时同时写入日志
+     */
+    private long deleteInternal(String id) throws IOException {
+        String primaryName = indexConfig.getPrimaryField().getName();
+        LiveHashMap liveHashes = this.generation.getLiveHashes();
+        Queue<WriteOperation> capture = this.reloadCapture;
+        long seqNo;
+        if (translog == null && liveHashes == null && capture == null) {
+            seqNo = this.generation.getIndexWriter().deleteDocuments(new Term(primaryName, id));
+        } else {
+            synchronized (writeStripe(id)) {
+                seqNo = this.generation.getIndexWriter().deleteDocuments(new Term(primaryName, id));
+                if (translog != null) {
+                    translog.add(WriteOperation.delete(id));
+                }
+                if (liveHashes != null) {
+                    liveHashes.put(id, LiveHashMap.NO_HASH);
+                    markReloadTouched(id);
+                }
+                if (capture != null) {
+                    capture.add(WriteOperation.delete(id));
+                }
             }
-            if(pageSize <= 0 && CollectionUtils.isEmpty(request.getAggregators())) {
-                return new SearchResponse();
-            }
-
-            // 构建查询
-            Query query = QueryBuilder.createQuery(request.getCriteriaList(), indexConfig, null);
-            // 构造排序字段
-            Sort sort = SortBuilder.buildSort(request.getSorts(), indexConfig);
-
-            // 构建查询上下文
-            SearchContext searchContext = new SearchContext();
-            searchContext.setRequest(request);
-            searchContext.setQuery(query);
-            searchContext.setIndexConfig(indexConfig);
-            searchContext.setSearcher(searcher);
-
-            int numHits = pageSize;
-            int start = 0;
-            int end = pageSize;
-            if(after == null) {
-                start = (pageNum - 1) * pageSize;
-                end = pageNum * pageSize;
-                // 浅分页时，需要获取到当前页之前（包括）的所有数据
-                numHits = pageNum * pageSize;
-            }
-
-            final int cappedNumHits = Math.min(numHits, maxDoc);
-            // 执行查询
-            TopDocsCollector topCollector = null;
-            if(cappedNumHits > 0) {
-                if(sort == null) {
-                    topCollector = TopScoreDocCollector.create(cappedNumHits, after, TOTAL_HITS_THRESHOLD);
-                } else {
-                    final Sort rewrittenSort = sort.rewrite(searcher);
-                    searchContext.setSort(rewrittenSort);
-                    topCollector = TopFieldCollector.create(rewrittenSort, cappedNumHits, (FieldDoc) after, TOTAL_HITS_THRESHOLD);
+        }
+        return seqNo;
+    }
+
+    /**
+     * 原地更新当前索引代中文档的DocValues，不重新构造文档，调用方需持有读锁；reload、日志的处理与{@link #indexInternal(String, Document)}一致<br/>
+     * 开启noopDetection时同时清除文档的内容哈希，之后的全量更新不会被误判为未变化
+     *
+     * @param fields 只包含需要更新的NumericDocValuesField
+     */
+    private long updateDocValuesInternal(String id, Document fields) throws IOException {
+        String primaryName = indexConfig.getPrimaryField().getName();
+        LiveHashMap liveHashes = this.generation.getLiveHashes();
+        Field[] updates = fields.getFields().toArray(new Field[0]);
+        Queue<WriteOperation> capture = this.reloadCapture;
+        long seqNo;
+        if (translog == null && liveHashes == null && capture == null) {
+            seqNo = this.generation.getIndexWriter().updateDocValues(new Term(primaryName, id), updates);
+        } else {
+            synchronized (writeStripe(id)) {
+                seqNo = this.generation.getIndexWriter().updateDocValues(new Term(primaryName, id), updates);
+                if (translog != null) {
+                    translog.add(WriteOperation.updateDocValues(id, fields));
+                }
+                if (liveHashes != null) {
+                    liveHashes.put(id, LiveHashMap.NO_HASH);
+                    markReloadTouched(id);
+                }
+                if (capture != null) {
+                    capture.add(WriteOperation.updateDocValues(id, fields));
                 }
-                searchContext.setTopCollector(topCollector);
             }
+        }
+        return seqNo;
+    }
 
-            Collector collector;
-            List<Aggregator> aggregators = request.getAggregators();
-            if(CommonUtil.isNotEmpty(aggregators)) {
-                // 预处理分组收集器
-                preAggregator(aggregators, searchContext);
-                searchContext.setAggregators(aggregators);
+    /**
+     * 局部更新的字段是否全部只保存DocValues，可以原地更新<br/>
+     * 只原地更新索引中已经以NUMERIC DocValues存在的字段，还没有刷新可见的字段重新构造文档，由正常的写入路径按映射登记字段类型，
+     * 不依赖updateDocValues登记新字段（与已有字段类型不一致时抛出IllegalArgumentException）；
+     * 开启noopDetection时同时清除文档的内容哈希，_hash字段还没有刷新可见时同样重新构造文档，不会遗留过期的内容哈希
+     *
+     * @return 可以原地更新时返回需要更新的DocValues，否则返回null
+     */
+    private Document docValuesUpdate(Map<String, Object> partial) {
+        if (partial == null || partial.isEmpty()) {
+            return null;
+        }
+        DocumentPlan plan = indexConfig.getDocumentPlan();
+        IndexGeneration current = this.generation;
+        if (current.getLiveHashes() != null && !current.isNumericDocValues(Constants._HASH)) {
+            return null;
+        }
+        Document fields = new Document();
+        for (Map.Entry<String, Object> entry : partial.entrySet()) {
+            DocumentPlan.FieldPlan field = plan.getField(entry.getKey());
+            if (field == null || !field.getMapping().isDocValueOnly() || entry.getValue() == null
+                    || !current.isNumericDocValues(field.getName())) {
+                return null;
+            }
+            fields.add(new NumericDocValuesField(field.getName(), field.toDocValue(entry.getValue())));
+        }
+        if (current.getLiveHashes() != null) {
+            fields.add(new NumericDocValuesField(Constants._HASH, LiveHashMap.NO_HASH));
+        }
+        return fields;
+    }
 
-                List<Collector> subCollectors = new ArrayList<> ();
-                if(topCollector != null) {
-                    subCollectors.add(topCollector);
-                }
-                subCollectors.addAll(aggregators);
-                collector = MultiCollector.wrap(subCollectors);
+    /**
+     * 增量重新导入期间记录被写入的主键，调用方需持有主键的分段锁
+     */
+    private void markReloadTouched(String id) {
+        Set<String> touched = this.reloadTouched;
+        if (touched != null) {
+            touched.add(id);
+        }
+    }
+
+    private Object writeStripe(String id) {
+        return writeStripes[(id.hashCode() & 0x7fffffff) % writeStripes.length];
+    }
+
+    /**
+     * translogSyncInterval不大于0时，写操作返回前fsync日志，并发的写操作共用一次fsync
+     */
+    private void syncTranslog() throws IOException {
+        if (translog != null && indexConfig.getIndexSetting().getTranslogSyncInterval() <= 0) {
+            translog.ensureSynced(translog.lastLocation());
+        }
+    }
+
+    /**
+     * 阻塞刷新IndexSearcher，如果其他线程正在刷新，等待其完成后再刷新
+     */
+    private void refreshBlocking() throws IOException {
+        refreshCurrent(true);
+    }
+
+    /**
+     * 按刷新策略使已完成的写操作可以被检索，调用方不能持有读锁
+     */
+    private void applyRefreshPolicy(RefreshPolicyEnum refreshPolicy) throws LuceneException {
+        if (refreshPolicy == null || refreshPolicy == RefreshPolicyEnum.NONE) {
+            return;
+        }
+        try {
+            if (refreshPolicy == RefreshPolicyEnum.IMMEDIATE) {
+                refreshBlocking();
             } else {
-                collector = topCollector;
+                waitForRefresh();
             }
+        } catch (IOException ex) {
+            throw new LuceneException("MemoryIndex refresh error", ex);
+        }
+    }
 
-            // 执行搜索
-            searcher.search(query, collector);
+    /**
+     * 等待当前线程已完成的写操作可以被检索<br/>
+     * 以IndexWriter已完成的最大seqNo注册可见性监听，已经可见时直接返回；同时等待的多个调用中只有一个刷新IndexSearcher，
+     * 其他调用的写操作已经包含在这次刷新中，只等待刷新完成的通知
+     */
+    private void waitForRefresh() throws IOException {
+        IndexGeneration current = this.generation;
+        RefreshListeners refreshListeners = current.getRefreshListeners();
+        CompletableFuture<Long> visible = new CompletableFuture<>();
+        refreshListeners.addOrNotify(current.getIndexWriter().getMaxCompletedSequenceNumber(), visible);
+        if (visible.isDone()) {
+            return;
+        }
+        if (refreshListeners.requestRefresh()) {
+            refreshBlocking();
+        } else {
+            coalescedRefreshWaits.increment();
+        }
+        try {
+            visible.get(WAIT_FOR_REFRESH_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            throw new LuceneException("MemoryIndex wait for refresh timeout.", ex);
+        } catch (ExecutionException ex) {
+            throw new LuceneException("MemoryIndex wait for refresh error", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new LuceneException("MemoryIndex wait for refresh interrupted.", ex);
+        }
+    }
 
-            // 构造hits
-            SearchResponse response = new SearchResponse();
-            SearchHits hits;
-            if(topCollector != null) {
-                TopDocs topDocs = topCollector.topDocs();
-                // 构造top响应
-                hits = SearchHitsBuilder.build(request, topDocs, this.indexConfig, searcher, start, end);
-            } else {
-                hits = new SearchHits();
+    /**
+     * 刷新当前索引代的IndexSearcher，不加锁<br/>
+     * 刷新期间索引代被reload替换时旧的SearcherManager已关闭，新的索引代在替换前已经刷新，此时重新读取当前索引代
+     *
+     * @param blocking 是否等待其他线程的刷新完成后再刷新
+     */
+    private void refreshCurrent(boolean blocking) throws IOException {
+        while (true) {
+            IndexGeneration current = this.generation;
+            try {
+                if (blocking) {
+                    current.getSearcherManager().maybeRefreshBlocking();
+                } else {
+                    current.getSearcherManager().maybeRefresh();
+                }
+                return;
+            } catch (AlreadyClosedException ex) {
+                if (current == this.generation) {
+                    throw ex;
+                }
             }
-            response.setHits(hits);
+        }
+    }
 
-            // 构造分组aggs
-            if(CommonUtil.isNotEmpty(aggregators)) {
-                // 后置处理分组收集器
-                postAggregator(aggregators, searchContext);
-                // 收集aggs结果
-                response.setAggregations(buildAggergator(aggregators));
+    /**
+     * 无锁获取当前索引代的IndexSearcher，只对IndexReader的引用计数做一次CAS<br/>
+     * 获取期间索引代被reload替换时旧的SearcherManager已关闭，此时重新读取当前索引代
+     *
+     * @return 使用后必须关闭
+     * @throws IOException
+     */
+    IndexGeneration.SearcherHandle acquireSearcher() throws IOException {
+        while (true) {
+            IndexGeneration current = this.generation;
+            try {
+                return current.acquireSearcher();
+            } catch (AlreadyClosedException ex) {
+                if (current == this.generation) {
+                    throw ex;
+                }
             }
+        }
+    }
 
-            if(request.isExplain() && CommonUtil.isNotEmpty(hits.getDocuments())) {
-                List<Explanation> explanations = explain(query, hits);
-                response.setExplanations(explanations);
+    /**
+     * 获取索引运行状态统计
+     *
+     * @return
+     */
+    public IndexStats stats() {
+        IndexStats stats = new IndexStats();
+        stats.setNumDocs(count());
+        stats.setWriteQueueSize(writePipeline.queueSize());
+        stats.setWriteQueueCapacity(writePipeline.queueCapacity());
+        stats.setWriteSubmitted(writePipeline.submittedCount());
+        stats.setWriteApplied(writePipeline.appliedCount());
+        stats.setWriteFolded(writePipeline.foldedCount());
+        stats.setWriteRejected(writePipeline.rejectedCount());
+        stats.setWriteBatches(writePipeline.batchCount());
+        stats.setPendingRefreshListeners(this.generation.getRefreshListeners().pendingCount());
+        stats.setNoopUpdates(noopUpdates.sum());
+        stats.setCoalescedRefreshWaits(coalescedRefreshWaits.sum());
+        Directory directory = this.generation.getDirectory();
+        stats.setStoreType(directoryFactory.getStoreType().getName());
+        long storeSize = DirectoryFactory.sizeInBytes(directory);
+        long heapBytes = directoryFactory.heapBytes(directory, storeSize);
+        stats.setStoreSizeInBytes(storeSize);
+        stats.setStoreHeapBytes(heapBytes);
+        stats.setStoreOffHeapBytes(storeSize - heapBytes);
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                stats.setDirectMemoryUsed(pool.getMemoryUsed());
+            } else if ("mapped".equals(pool.getName())) {
+                stats.setMappedMemoryUsed(pool.getMemoryUsed());
             }
+        }
+        return stats;
+    }
 
-            return response;
+    /**
+     * 根据主键获取文档，读取最近一次刷新的数据，参照{@link #multiGet(List, boolean)}
+     *
+     * @param id 主键
+     * @return 不存在时返回null
+     */
+    public Map<String, Object> get(String id) throws LuceneException {
+        return get(id, false);
+    }
+
+    /**
+     * 根据主键获取文档，参照{@link #multiGet(List, boolean)}
+     *
+     * @param id       主键
+     * @param realtime 是否读取最新写入的数据
+     * @return 不存在时返回null
+     */
+    public Map<String, Object> get(String id, boolean realtime) throws LuceneException {
+        if (StringUtil.isEmpty(id)) {
+            throw new IllegalArgumentException("MemoryIndex get must has primary value.");
+        }
+        return multiGet(Collections.singletonList(id), realtime).get(0);
+    }
+
+    /**
+     * 根据主键批量获取文档，读取最近一次刷新的数据，参照{@link #multiGet(List, boolean)}
+     *
+     * @param ids 主键
+     * @return 与ids一一对应，不存在或已过期的主键为null
+     */
+    public List<Map<String, Object>> multiGet(List<String> ids) throws LuceneException {
+        return multiGet(ids, false);
+    }
+
+    /**
+     * 根据主键批量获取文档<br/>
+     * 直接在每个段的词典中查找主键，不经过Query、评分和Collector，所有主键在同一个IndexSearcher上读取
+     *
+     * @param ids      主键
+     * @param realtime 是否读取最新写入的数据，为true且有未刷新的写入时，先刷新IndexSearcher再读取；
+     *                 为false时读取最近一次刷新的数据
+     * @return 与ids一一对应，不存在或已过期的主键为null
+     * @throws LuceneException
+     */
+    public List<Map<String, Object>> multiGet(List<String> ids, boolean realtime) throws LuceneException {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        IndexGeneration.SearcherHandle handle = null;
+        try {
+            handle = acquireSearcher(realtime);
+            IndexReader reader = handle.getSearcher().getIndexReader();
+            PrimaryKeyLookup lookup = handle.getGeneration().getPrimaryKeyLookup();
+            List<Map<String, Object>> result = new ArrayList<>(ids.size());
+            BytesRefBuilder term = new BytesRefBuilder();
+            long now = System.currentTimeMillis();
+            for (String id : ids) {
+                PrimaryKeyLookup.Hit hit = null;
+                if (StringUtil.isNotEmpty(id)) {
+                    term.copyChars(id);
+                    hit = lookup.lookup(reader, term.get());
+                }
+                if (hit == null || isExpired(hit, now)) {
+                    result.add(null);
+                } else {
+                    Document document = DocumentLoader.load(hit.getContext().reader(), hit.getDoc(), indexConfig);
+                    result.add(SearchHitsBuilder.buildDocument(hit.getGlobalDoc(), document, indexConfig));
+                }
+            }
+            return result;
         } catch (IOException ex) {
-            throw new QueryException("MemoryIndex query error", ex);
-        } catch (InterruptedException e) {
-            throw new QueryException("MemoryIndex is reloading, cannot query.", e);
+            throw new LuceneException("MemoryIndex get error", ex);
         } finally {
-            if (lock) {
-                reloadLock.readLock().unlock();
+            if (handle != null) {
+                handle.close();
+            }
+        }
+    }
+
+    /**
+     * 查询时过滤已过期、还未被定时任务删除的文档<br/>
+     * 过期时间按{@link #EXPIRY_ROUNDING}取整之前的部分在取整时间内是同一个Query，可以被IndexSearcher的查询缓存复用；
+     * 取整之后到当前时间的范围很小，每次单独计算
+     */
+    private Query excludeExpired(Query query) {
+        IndexFieldMapping expiryField = indexConfig.getExpiryField();
+        if (expiryField == null) {
+            return query;
+        }
+        String name = expiryField.getName();
+        long now = System.currentTimeMillis();
+        long rounded = now - now % EXPIRY_ROUNDING;
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        builder.add(query == null ? new MatchAllDocsQuery() : query, BooleanClause.Occur.MUST);
+        builder.add(LongPoint.newRangeQuery(name, Long.MIN_VALUE, rounded), BooleanClause.Occur.MUST_NOT);
+        builder.add(LongPoint.newRangeQuery(name, rounded + 1, now), BooleanClause.Occur.MUST_NOT);
+        return builder.build();
+    }
+
+    /**
+     * 文档是否已过期
+     */
+    private boolean isExpired(PrimaryKeyLookup.Hit hit, long now) throws IOException {
+        IndexFieldMapping expiryField = indexConfig.getExpiryField();
+        if (expiryField == null) {
+            return false;
+        }
+        NumericDocValues values = hit.getContext().reader().getNumericDocValues(expiryField.getName());
+        return values != null && values.advanceExact(hit.getDoc()) && values.longValue() <= now;
+    }
+
+    /**
+     * 获取当前索引代的IndexSearcher
+     *
+     * @param realtime 为true且IndexWriter有未刷新的写入时，先阻塞刷新
+     * @return 使用后必须关闭
+     * @throws IOException
+     */
+    private IndexGeneration.SearcherHandle acquireSearcher(boolean realtime) throws IOException {
+        IndexGeneration.SearcherHandle handle = acquireSearcher();
+        if (realtime && !((DirectoryReader) handle.getSearcher().getIndexReader()).isCurrent()) {
+            handle.close();
+            refreshBlocking();
+            handle = acquireSearcher();
+        }
+        return handle;
+    }
+
+    /**
+     * 获取当前索引的文档总数
+     *
+     * @return
+     */
+    public int count() {
+        IndexGeneration.SearcherHandle handle = null;
+        try {
+            handle = acquireSearcher();
+            return handle.getSearcher().getIndexReader().numDocs();
+        } catch (IOException ex) {
+            throw new LuceneException("MemoryIndex count error", ex);
+        } finally {
+            if (handle != null) {
+                handle.close();
             }
-            if (searcher != null) {
+        }
+    }
+
+    /**
+     * 如果IndexWriter有变更，则更新IndexSearcher，如果没有，保持现状
+     *
+     * @throws IOException
+     */
+    public void maybeRefresh() throws LuceneException {
+        try {
+            refreshCurrent(false);
+        } catch (IOException ex) {
+            throw new LuceneException("MemoryIndex maybeRefresh error", ex);
+        }
+    }
+
+    /**
+     * 保存快照到snapshotPath，重启时直接恢复，不需要重新导入、分词<br/>
+     * 先提交当前索引，再通过SnapshotDeletionPolicy保留提交点并复制段文件，复制期间不阻塞写入和查询
+     *
+     * @return 快照目录
+     * @throws LuceneException
+     */
+    public synchronized Path snapshot() throws LuceneException {
+        if (snapshotStore == null) {
+            throw new LuceneException("MemoryIndex snapshotPath is not set.");
+        }
+        // 持有IndexSearcher，避免复制期间索引代被reload替换后关闭
+        IndexGeneration.SearcherHandle handle = null;
+        SnapshotDeletionPolicy policy = null;
+        IndexCommit commit = null;
+        try {
+            long start = System.currentTimeMillis();
+            long translogGeneration = -1;
+            if (translog == null) {
+                handle = acquireSearcher();
+            } else {
+                // 持有写锁滚动日志，旧的日志代中的写操作都已写入当前索引代，提交后包含在快照中
+                if (!reloadLock.writeLock().tryLock(10, TimeUnit.SECONDS)) {
+                    throw new LuceneException("MemoryIndex snapshot lock error");
+                }
                 try {
-                    this.searcherManager.release(searcher);
-                } catch (IOException e) {
-                    logger.error("MemoryIndex release IndexSearcher error:{}", e.getMessage(), e);
+                    handle = acquireSearcher();
+                    translogGeneration = translog.rollGeneration();
+                } finally {
+                    reloadLock.writeLock().unlock();
                 }
             }
+            IndexGeneration current = handle.getGeneration();
+            policy = current.getSnapshotPolicy();
+            current.getIndexWriter().setLiveCommitData(commitData(translogGeneration).entrySet());
+            current.getIndexWriter().commit();
+            commit = policy.snapshot();
+            Path path = snapshotStore.write(current.getDirectory(), commit);
+            if (translogGeneration >= 0) {
+                translog.trimBelow(translogGeneration);
+            }
+            logger.info("MemoryIndex snapshot {} in {}ms.", path, System.currentTimeMillis() - start);
+            return path;
+        } catch (IOException | AlreadyClosedException ex) {
+            throw new LuceneException("MemoryIndex snapshot error", ex);
+        } catch (InterruptedException ex) {
+            throw new LuceneException("MemoryIndex snapshot error, cannot lock", ex);
+        } finally {
+            if (commit != null) {
+                try {
+                    policy.release(commit);
+                    handle.getGeneration().getIndexWriter().deleteUnusedFiles();
+                } catch (IOException | AlreadyClosedException e) {
+                    logger.warn("MemoryIndex release snapshot error:{}", e.getMessage(), e);
+                }
+            }
+            if (handle != null) {
+                handle.close();
+            }
         }
     }
 
     /**
-     * 查看执行计划
-     * @param query
-     * @param hits
-     * @return
-     * @throws QueryException
+     * 重新加载数据<br/>
+     * 新的索引代在后台构建，不影响插入、更新、删除、查询；构建期间的写操作会被捕获，构建完成后重放到新的索引代，
+     * 最后只在重放剩余写操作、替换索引代的瞬间持有写锁
      */
-    public List<Explanation> explain(Query query, SearchHits hits) throws QueryException {
-
-        IndexSearcher searcher = null;
-        boolean lock = false;
+    public void reloadData() throws LuceneException {
+        if (!reloading.compareAndSet(false, true)) {
+            throw new LuceneException("MemoryIndex is reloading, cannot reload again.");
+        }
+        Queue<WriteOperation> capture = new ConcurrentLinkedQueue<>();
+        IndexGeneration newGeneration = null;
+        IndexGeneration oldGeneration = null;
+        long translogGeneration = -1;
         try {
-            lock = reloadLock.readLock().tryLock(5, TimeUnit.SECONDS);
+            // 先开启捕获，再读取数据；持有写锁开启捕获，写操作在整个执行期间看到的捕获不变，之后的写操作都会重放到新的索引代
+            if (!reloadLock.writeLock().tryLock(60, TimeUnit.SECONDS)) {
+                throw new LuceneException("MemoryIndex reload lock error");
+            }
+            try {
+                // 滚动日志，之后的写操作既写入新的日志代，也会重放到新的索引代
+                if (translog != null) {
+                    translogGeneration = translog.rollGeneration();
+                }
+                this.reloadCapture = capture;
+            } finally {
+                reloadLock.writeLock().unlock();
+            }
+            newGeneration = createGeneration();
+            // 持锁前先追赶构建期间的写操作，缩短持锁时间
+            replayCaptured(capture, newGeneration);
+
+            boolean lock = reloadLock.writeLock().tryLock(60, TimeUnit.SECONDS);
             if (!lock) {
-                throw new QueryException("MemoryIndex is reloading, cannot query.");
+                throw new LuceneException("MemoryIndex reload lock error");
             }
+            try {
+                replayCaptured(capture, newGeneration);
+                this.reloadCapture = null;
+                newGeneration.getSearcherManager().maybeRefreshBlocking();
+                oldGeneration = this.generation;
+                this.generation = newGeneration;
+            } finally {
+                reloadLock.writeLock().unlock();
+            }
+        } catch (IOException ex) {
+            throw new LuceneException("MemoryIndex reload error", ex);
+        } catch (InterruptedException ex) {
+            throw new LuceneException("MemoryIndex reload error, cannot lock", ex);
+        } finally {
+            this.reloadCapture = null;
+            reloading.set(false);
+            if (oldGeneration == null && newGeneration != null) {
+                closeGeneration(newGeneration);
+            }
+        }
+        closeGeneration(oldGeneration);
+        // 没有快照时重启从数据源导入，旧的日志代已经没有用；有快照时等下一次快照再删除
+        if (translogGeneration >= 0 && snapshotStore == null) {
+            try {
+                translog.trimBelow(translogGeneration);
+            } catch (IOException ex) {
+                logger.warn("MemoryIndex trim translog error:{}", ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * 增量重新导入数据<br/>
+     * 流式读取数据源，按内容哈希与当前索引比较，只写入新增、内容变化的文档，最后删除数据源中已经不存在的文档；
+     * 直接写入当前索引代，不重新构建索引、不持有写锁，期间的插入、更新、删除、查询不受影响<br/>
+     * 需要开启noopDetection；导入期间被其他写操作写入的主键以其他写操作为准，不会被覆盖或删除
+     *
+     * @return 增量导入的统计
+     * @throws LuceneException
+     */
+    public IncrementalReloadStats reloadDataIncremental() throws LuceneException {
+        if (indexDataLoader == null) {
+            throw new LuceneException("MemoryIndex has no data loader, cannot reload.");
+        }
+        if (this.generation.getLiveHashes() == null) {
+            throw new LuceneException("MemoryIndex incremental reload requires noopDetection.");
+        }
+        if (!reloading.compareAndSet(false, true)) {
+            throw new LuceneException("MemoryIndex is reloading, cannot reload again.");
+        }
+        long start = System.currentTimeMillis();
+        IncrementalReloadStats stats = new IncrementalReloadStats();
+        IndexGeneration.SearcherHandle handle = null;
+        try {
+            // 先开始记录写入的主键再刷新，之后的写操作要么在快照中可见，要么被记录
+            Set<String> touched = ConcurrentHashMap.newKeySet();
+            this.reloadTouched = touched;
+            refreshBlocking();
+            handle = acquireSearcher();
+            IncrementalLoader incrementalLoader = new IncrementalLoader(handle, touched, stats);
+            indexDataLoader.load(indexConfig, incrementalLoader);
+            incrementalLoader.deleteMissing();
+            syncTranslog();
+            refreshBlocking();
+        } catch (IOException ex) {
+            throw new LuceneException("MemoryIndex incremental reload error", ex);
+        } finally {
+            this.reloadTouched = null;
+            reloading.set(false);
+            if (handle != null) {
+                handle.close();
+            }
+        }
+        stats.setTook(System.currentTimeMillis() - start);
+        logger.info("MemoryIndex incremental reload, {}", stats);
+        return stats;
+    }
+
+    /**
+     * 增量重新导入时的数据接收，在加载线程中逐条与导入开始时的快照比较后写入当前索引代<br/>
+     * 每条数据单独持有读锁，不阻塞快照等需要写锁的操作
+     */
+    private final class IncrementalLoader implements IndexDataConsumer {
+
+        private final String primaryName = indexConfig.getPrimaryField().getName();
+        private final IndexGeneration.SearcherHandle snapshot;
+        private final Set<String> touched;
+        private final LiveHashMap liveHashes;
+        private final IncrementalReloadStats stats;
+        // 快照中在数据源里出现过的文档，其余的文档在导入结束后删除
+        private final FixedBitSet seen;
+        private final ReusableDocument reusable = new ReusableDocument(indexConfig.getDocumentPlan());
+
+        IncrementalLoader(IndexGeneration.SearcherHandle snapshot, Set<String> touched, IncrementalReloadStats stats) {
+            this.snapshot = snapshot;
+            this.touched = touched;
+            this.liveHashes = snapshot.getGeneration().getLiveHashes();
+            this.stats = stats;
+            this.seen = new FixedBitSet(snapshot.getSearcher().getIndexReader().maxDoc());
+        }
 
-            searcher = this.searcherManager.acquire();
+        @Override
+        public void accept(Document document) {
+            long hash = DocumentBuilder.ensureContentHash(document);
+            apply(document.get(primaryName), hash, () -> document);
+        }
+
+        @Override
+        public void accept(Map<String, Object> source) {
+            if (!source.containsKey(primaryName)) {
+                throw new IllegalArgumentException("MemoryIndex document must has primary field:" + primaryName);
+            }
+            Document document = DocumentBuilder.build(source, indexConfig);
+            apply(StringUtil.conver2String(source.get(primaryName)), DocumentBuilder.ensureContentHash(document), () -> document);
+        }
+
+        @Override
+        public ReusableDocument obtain() {
+            reusable.reset();
+            return reusable;
+        }
+
+        @Override
+        public void accept(ReusableDocument document) {
+            long hash = document.ensureContentHash();
+            apply(document.getDocument().get(primaryName), hash, document::getDocument);
+        }
 
-            List<Explanation> explanationList = new ArrayList<>();
-            for(Map<String, Object> document : hits.getDocuments()) {
-                int docId = Integer.parseInt(StringUtil.conver2String(document.get(Constants._ID)));
-                // 执行计划
-                Explanation explanation = searcher.explain(query, docId);
-                explanationList.add(explanation);
+        /**
+         * 内容变化时才构造、写入文档
+         */
+        private void apply(String id, long hash, Supplier<Document> document) {
+            if (StringUtil.isEmpty(id)) {
+                throw new IllegalArgumentException("MemoryIndex document must has primary field:" + primaryName);
+            }
+            stats.setLoaded(stats.getLoaded() + 1);
+            boolean lock = false;
+            try {
+                lock = reloadLock.readLock().tryLock(10, TimeUnit.SECONDS);
+                if (!lock) {
+                    throw new LuceneException("MemoryIndex lock error, cannot reload.");
+                }
+                synchronized (writeStripe(id)) {
+                    if (touched.contains(id)) {
+                        stats.setSkipped(stats.getSkipped() + 1);
+                        return;
+                    }
+                    PrimaryKeyLookup.Hit hit = loadHit(snapshot, id);
+                    if (hit != null) {
+                        seen.set(hit.getContext().docBase + hit.getDoc());
+                    }
+                    // 未被其他写操作写入的主键，只有数据源中重复的主键会在这里找到
+                    Long live = liveHashes.get(id);
+                    long current = live != null ? live : hit != null ? contentHash(hit) : LiveHashMap.NO_HASH;
+                    if (hash != LiveHashMap.NO_HASH && hash == current) {
+                        stats.setUnchanged(stats.getUnchanged() + 1);
+                        return;
+                    }
+                    indexInternal(id, document.get());
+                    // 导入自己的写入不算其他写操作
+                    touched.remove(id);
+                    if (hit == null && live == null) {
+                        stats.setInserted(stats.getInserted() + 1);
+                    } else {
+                        stats.setUpdated(stats.getUpdated() + 1);
+                    }
+                }
+            } catch (IOException ex) {
+                throw new LuceneException("MemoryIndex incremental reload error", ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new LuceneException("MemoryIndex lock error, cannot reload.", ex);
+            } finally {
+                if (lock) {
+                    reloadLock.readLock().unlock();
+                }
+            }
+        }
+
+        /**
+         * 删除快照中存在、数据源中没有出现的文档
+         */
+        void deleteMissing() throws IOException {
+            for (LeafReaderContext leaf : snapshot.getSearcher().getIndexReader().leaves()) {
+                Terms terms = leaf.reader().terms(primaryName);
+                if (terms == null) {
+                    continue;
+                }
+                Bits liveDocs = leaf.reader().getLiveDocs();
+                TermsEnum termsEnum = terms.iterator();
+                PostingsEnum postings = null;
+                BytesRef term;
+                while ((term = termsEnum.next()) != null) {
+                    postings = termsEnum.postings(postings, PostingsEnum.NONE);
+                    for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                        if ((liveDocs == null || liveDocs.get(doc)) && !seen.get(leaf.docBase + doc)) {
+                            delete(term.utf8ToString());
+                        }
+                    }
+                }
+            }
+        }
+
+        private void delete(String id) {
+            boolean lock = false;
+            try {
+                lock = reloadLock.readLock().tryLock(10, TimeUnit.SECONDS);
+                if (!lock) {
+                    throw new LuceneException("MemoryIndex lock error, cannot reload.");
+                }
+                synchronized (writeStripe(id)) {
+                    if (touched.contains(id)) {
+                        stats.setSkipped(stats.getSkipped() + 1);
+                        return;
+                    }
+                    deleteInternal(id);
+                    touched.remove(id);
+                    stats.setDeleted(stats.getDeleted() + 1);
+                }
+            } catch (IOException ex) {
+                throw new LuceneException("MemoryIndex incremental reload error", ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new LuceneException("MemoryIndex lock error, cannot reload.", ex);
+            } finally {
+                if (lock) {
+                    reloadLock.readLock().unlock();
+                }
             }
+        }
+    }
+
+    /**
+     * 将reload期间捕获的写操作重放到新的索引代
+     */
+    private void replayCaptured(Queue<WriteOperation> capture, IndexGeneration target) throws IOException {
+        String primaryName = indexConfig.getPrimaryField().getName();
+        WriteOperation operation;
+        while ((operation = capture.poll()) != null) {
+            applyOperation(target, primaryName, operation);
+        }
+    }
+
+    /**
+     * 重放单个写操作（操作日志、reload期间捕获的写操作），写入的DocValues字段登记到目标索引代
+     */
+    private static void applyOperation(IndexGeneration target, String primaryName, WriteOperation operation) throws IOException {
+        IndexWriter writer = target.getIndexWriter();
+        switch (operation.getOpType()) {
+            case DELETE:
+                writer.deleteDocuments(new Term(primaryName, operation.getId()));
+                break;
+            case DELETE_BY_QUERY:
+                writer.deleteDocuments(operation.getQuery());
+                break;
+            case UPDATE_DOC_VALUES:
+                List<IndexableField> fields = new ArrayList<>(operation.getDocument().getFields());
+                // 目标索引中没有_hash字段时没有需要清除的内容哈希
+                if (!target.isNumericDocValues(Constants._HASH)) {
+                    fields.removeIf(field -> Constants._HASH.equals(field.name()));
+                }
+                writer.updateDocValues(new Term(primaryName, operation.getId()), fields.toArray(new Field[0]));
+                break;
+            default:
+                writer.updateDocument(new Term(primaryName, operation.getId()), operation.getDocument());
+                target.registerNumericDocValues(operation.getDocument());
+        }
+    }
+
+    private void closeGeneration(IndexGeneration target) {
+        try {
+            target.close();
+        } catch (IOException e) {
+            logger.error("MemoryIndex close index generation error:{}", e.getMessage(), e);
+        }
+    }
+
 
+    /**
+     * 分组查询
+     * @param request
+     * @return
+     * @throws QueryException
+     */
+    public SearchResponse search(SearchRequest request) throws QueryException {
 
-            return explanationList;
+        IndexGeneration.SearcherHandle handle = null;
+        try {
+            handle = acquireSearcher();
+            return search(request, handle.getSearcher());
         } catch (IOException ex) {
-            throw new QueryException("MemoryIndex explain error", ex);
-        } catch (InterruptedException e) {
-            throw new QueryException("MemoryIndex is reloading, cannot query.", e);
+            throw new QueryException("MemoryIndex query error", ex);
         } finally {
-            if (lock) {
-                reloadLock.readLock().unlock();
+            if (handle != null) {
+                handle.close();
             }
-            if (searcher != null) {
-                try {
-                    this.searcherManager.release(searcher);
-                } catch (IOException e) {
-                    logger.error("MemoryIndex release IndexSearcher error:{}", e.getMessage(), e);
-                }
+        }
+    }
+
+    /**
+     * 在指定的IndexSearcher上查询，{@link PartitionedMemoryIndex}查询多个分区时传入多个分区组成的IndexSearcher
+     */
+    SearchResponse search(SearchRequest request, IndexSearcher searcher) throws IOException {
+        int maxDoc = Math.max(1, searcher.getIndexReader().maxDoc());
+        ScoreDoc after = request.getLastDoc();
+        if (after != null) {
+            if(CollectionUtils.isNotEmpty(request.getSorts()) && !(after instanceof FieldDoc)) {
+                throw new QueryException("When sorting query, after must be a FieldDoc; got " + after);
+            }
+            if (after.doc >= maxDoc) {
+                throw new QueryException("after.doc exceeds the number of documents in the reader: after.doc="
+                        + after.doc + " maxDoc=" + maxDoc);
             }
         }
+
+        // 初始化分页
+        Paging paging = new Paging(request);
+        List<AggregatorFactory> aggregations = request.aggregatorFactories();
+        if(paging.pageSize <= 0 && aggregations.isEmpty()) {
+            return new SearchResponse();
+        }
+
+        // 构建查询
+        Query query = buildQuery(request);
+        // 构造排序字段
+        Sort sort = SortBuilder.buildSort(request.getSorts(), indexConfig);
+
+        // 执行查询
+        QueryResult result = executeQuery(request, searcher, query, sort, after, Math.min(paging.numHits, maxDoc), aggregations, true);
+
+        // 构造hits
+        SearchResponse response = new SearchResponse();
+        SearchHits hits;
+        if(result.topDocs != null) {
+            // 构造top响应
+            hits = SearchHitsBuilder.build(request, result.topDocs, this.indexConfig, searcher, paging.start, paging.end);
+        } else {
+            hits = new SearchHits();
+        }
+        response.setHits(hits);
+        response.setAggregations(result.aggregations);
+
+        if(request.isExplain() && CommonUtil.isNotEmpty(hits.getDocuments())) {
+            List<Explanation> explanations = explain(searcher, query, hits);
+            response.setExplanations(explanations);
+        }
+
+        return response;
+    }
+
+    /**
+     * 构建查询条件，排除已过期的文档
+     */
+    Query buildQuery(SearchRequest request) {
+        return excludeExpired(QueryBuilder.createQuery(request.getCriteriaList(), indexConfig, null));
     }
 
     /**
-     * 查询前预处理分组收集器
+     * 查询阶段：收集topN和分组结果，不读取文档，{@link ShardedMemoryIndex}在各分片上执行后合并
+     *
+     * @param after       深度分页位置，docId为该IndexSearcher中的docId
+     * @param numHits     收集的topN数量，不大于0时只收集分组
+     * @param aggregations 分组定义，为空时不分组
+     * @param finalReduce  分组结果是否为最终结果，分片查询时为false，各分片返回部分结果后再合并
      */
-    private void preAggregator(List<Aggregator> aggregators, SearchContext searchContext) throws IOException {
-        for(Aggregator aggregator : aggregators) {
-            if(aggregator.isCollected()) {
-                throw new QueryException("Aggregator is collected, please create a new aggregator");
+    QueryResult executeQuery(SearchRequest request, IndexSearcher searcher, Query query, Sort sort, ScoreDoc after,
+                             int numHits, List<AggregatorFactory> aggregations, boolean finalReduce) throws IOException {
+        // 构建查询上下文
+        SearchContext searchContext = new SearchContext();
+        searchContext.setRequest(request);
+        searchContext.setQuery(query);
+        searchContext.setIndexConfig(indexConfig);
+        searchContext.setSearcher(searcher);
+
+        AggregatorCollectorManager aggsManager = null;
+        if(CommonUtil.isNotEmpty(aggregations)) {
+            aggsManager = new AggregatorCollectorManager(aggregations, searchContext, finalReduce);
+        }
+        if(searcher.getExecutor() != null) {
+            // 开启了并行检索
+            return executeConcurrentQuery(searchContext, searcher, query, sort, after, numHits, aggsManager);
+        }
+
+        TopDocsCollector<?> topCollector = null;
+        if(numHits > 0) {
+            if(sort == null) {
+                topCollector = TopScoreDocCollector.create(numHits, after, TOTAL_HITS_THRESHOLD);
+            } else {
+                final Sort rewrittenSort = sort.rewrite(searcher);
+                searchContext.setSort(rewrittenSort);
+                topCollector = TopFieldCollector.create(rewrittenSort, numHits, (FieldDoc) after, TOTAL_HITS_THRESHOLD);
             }
-            aggregator.preCollection(searchContext);
-            if(CommonUtil.isNotEmpty(aggregator.subAggregator())) {
-                preAggregator(aggregator.subAggregator(), searchContext);
+            searchContext.setTopCollector(topCollector);
+        }
+
+        Collector collector;
+        AggregatorCollectorManager.AggregatorsCollector aggsCollector = null;
+        if(aggsManager != null) {
+            // 创建分组收集器
+            aggsCollector = aggsManager.newCollector();
+            searchContext.setAggregators(aggsCollector.getAggregators());
+            collector = topCollector == null ? aggsCollector : MultiCollector.wrap(topCollector, aggsCollector);
+        } else {
+            collector = topCollector;
+        }
+
+        QueryResult result = new QueryResult();
+        if(collector == null) {
+            return result;
+        }
+        // 执行搜索
+        searcher.search(query, collector);
+
+        if(topCollector != null) {
+            result.topDocs = topCollector.topDocs();
+        }
+        // 构造分组aggs
+        if(aggsCollector != null) {
+            result.aggregations = aggsManager.reduce(Collections.singletonList(aggsCollector));
+        }
+        return result;
+    }
+
+    /**
+     * 并行检索：各切片分别收集topN和分组，再合并各切片的结果
+     */
+    private QueryResult executeConcurrentQuery(SearchContext searchContext, IndexSearcher searcher, Query query, Sort sort,
+                                               ScoreDoc after, int numHits, AggregatorCollectorManager aggsManager) throws IOException {
+        List<CollectorManager<?, ?>> managers = new ArrayList<>(2);
+        int topIndex = -1;
+        if(numHits > 0) {
+            CollectorManager<?, ? extends TopDocs> topManager;
+            if(sort == null) {
+                FieldDoc scoreAfter = after == null ? null : new FieldDoc(after.doc, after.score);
+                topManager = TopScoreDocCollector.createSharedManager(numHits, scoreAfter, TOTAL_HITS_THRESHOLD);
+            } else {
+                final Sort rewrittenSort = sort.rewrite(searcher);
+                searchContext.setSort(rewrittenSort);
+                topManager = TopFieldCollector.createSharedManager(rewrittenSort, numHits, (FieldDoc) after, TOTAL_HITS_THRESHOLD);
             }
+            topIndex = managers.size();
+            managers.add(topManager);
+        }
+        int aggsIndex = -1;
+        if(aggsManager != null) {
+            aggsIndex = managers.size();
+            managers.add(aggsManager);
         }
+
+        QueryResult result = new QueryResult();
+        if(managers.isEmpty()) {
+            return result;
+        }
+        // 执行搜索
+        Object[] reduced = searcher.search(query, new MultiCollectorManager(managers.toArray(new CollectorManager<?, ?>[0])));
+        if(topIndex >= 0) {
+            result.topDocs = (TopDocs) reduced[topIndex];
+        }
+        if(aggsIndex >= 0) {
+            result.aggregations = toAggregations(reduced[aggsIndex]);
+        }
+        return result;
+    }
+
+    /**
+     * MultiCollectorManager按Object返回各收集器的结果，逐个检查分组结果的类型
+     */
+    private static List<InternalAggregation> toAggregations(Object reduced) {
+        List<?> values = (List<?>) reduced;
+        List<InternalAggregation> aggregations = new ArrayList<>(values.size());
+        for (Object value : values) {
+            aggregations.add((InternalAggregation) value);
+        }
+        return aggregations;
+    }
+
+    /**
+     * 查询阶段的结果
+     */
+    static final class QueryResult {
+        // topN结果，没有收集topN时为null
+        TopDocs topDocs;
+        // 分组结果，没有分组时为null
+        List<InternalAggregation> aggregations;
     }
 
     /**
-     * 查询后、构造分组结果前处理分组收集器
+     * 分页参数，浅分页时需要获取到当前页之前（包括）的所有数据
      */
-    private void postAggregator(List<Aggregator> aggregators, SearchContext searchContext) throws IOException {
-        for(Aggregator aggregator : aggregators) {
-            if(aggregator.isCollected()) {
-                throw new QueryException("Aggregator is collected, please create a new aggregator");
+    static final class Paging {
+        final int pageSize;
+        final int start;
+        final int end;
+        final int numHits;
+
+        Paging(SearchRequest request) {
+            int pageNum = 1;
+            int size = 10;
+            PageArg pageArg = request.getPageArg();
+            if (pageArg != null) {
+                pageNum = pageArg.getPageNum() < 1 ? 1 : pageArg.getPageNum();
+                size = pageArg.getPageSize() < 0 ? 10 : pageArg.getPageSize();
             }
-            aggregator.postCollection(searchContext);
-            if(CommonUtil.isNotEmpty(aggregator.subAggregator())) {
-                postAggregator(aggregator.subAggregator(), searchContext);
+            if(pageNum > 1 && request.getFilter() != null) {
+                throw new QueryException("Paging query disabling result filtering");
+            }
+            this.pageSize = size;
+            if(request.getLastDoc() == null) {
+                this.start = (pageNum - 1) * size;
+                this.end = pageNum * size;
+                this.numHits = pageNum * size;
+            } else {
+                this.start = 0;
+                this.end = size;
+                this.numHits = size;
             }
         }
     }
 
     /**
-     * 构造分组结果
+     * 查看执行计划
+     * @param query
+     * @param hits
+     * @return
+     * @throws QueryException
      */
-    private List<InternalAggregation> buildAggergator(List<Aggregator> aggregators) throws IOException {
-        List<InternalAggregation> aggregations = new ArrayList<>(aggregators.size());
-        for(Aggregator aggregator : aggregators) {
-            if(aggregator.isCollected()) {
-                throw new QueryException("Aggregator is collected, please create a new aggregator");
+    public List<Explanation> explain(Query query, SearchHits hits) throws QueryException {
+
+        IndexGeneration.SearcherHandle handle = null;
+        try {
+            handle = acquireSearcher();
+            return explain(handle.getSearcher(), query, hits);
+        } catch (IOException ex) {
+            throw new QueryException("MemoryIndex explain error", ex);
+        } finally {
+            if (handle != null) {
+                handle.close();
             }
-            aggregations.add(aggregator.buildAggregation(0));
         }
-        return aggregations;
+    }
+
+    /**
+     * 使用查询时的IndexSearcher查看执行计划，保证docId与查询结果一致
+     */
+    List<Explanation> explain(IndexSearcher searcher, Query query, SearchHits hits) throws IOException {
+        List<Explanation> explanationList = new ArrayList<>();
+        for(Map<?, ?> document : hits.getDocuments()) {
+            int docId = Integer.parseInt(StringUtil.conver2String(document.get(Constants._ID)));
+            // 执行计划
+            Explanation explanation = searcher.explain(query, docId);
+            explanationList.add(explanation);
+        }
+        return explanationList;
     }
 
     public void close() throws LuceneException {
+        if (!this.closed.compareAndSet(false, true)) {
+            return;
+        }
+        // 已经关闭的索引不再需要在JVM退出时释放，避免被注册中心一直引用
+        this.registry.unregister(this);
+        for (IndexRegistry.PeriodicTask task : this.periodicTasks) {
+            task.cancel();
+        }
         try {
-            this.schedule.shutdownNow();
-            this.indexWriter.close();
-            this.searcherManager.close();
+            this.writePipeline.close();
+            this.generation.close();
+            if (this.translog != null) {
+                this.translog.close();
+            }
         } catch (IOException ex) {
             throw new LuceneException("MemoryIndex close error", ex);
         }
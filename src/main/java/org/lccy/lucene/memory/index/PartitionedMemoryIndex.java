@@ -0,0 +1,625 @@
+package org.lccy.lucene.memory.index;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.util.IOUtils;
+import org.lccy.lucene.memory.builder.DocumentPlan;
+import org.lccy.lucene.memory.constants.FieldTypeEnum;
+import org.lccy.lucene.memory.constants.PartitionIntervalEnum;
+import org.lccy.lucene.memory.constants.RefreshPolicyEnum;
+import org.lccy.lucene.memory.exception.LuceneException;
+import org.lccy.lucene.memory.exception.QueryException;
+import org.lccy.lucene.memory.index.config.IndexConfig;
+import org.lccy.lucene.memory.index.mapping.IndexFieldMapping;
+import org.lccy.lucene.memory.index.mapping.IndexSettingMapping;
+import org.lccy.lucene.memory.loader.IndexDataLoader;
+import org.lccy.lucene.memory.search.SearchCriteria;
+import org.lccy.lucene.memory.search.SearchHits;
+import org.lccy.lucene.memory.search.SearchOption;
+import org.lccy.lucene.memory.search.SearchRequest;
+import org.lccy.lucene.memory.search.SearchResponse;
+import org.lccy.lucene.memory.util.DateUtil;
+import org.lccy.lucene.memory.util.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 按时间分区的内存索引，每个分区是一个独立的{@link MemoryIndex}<br/>
+ * 写入时按{@link IndexSettingMapping#getPartitionField()}的时间路由到所在的分区，不存在时创建；
+ * 查询时根据查询条件中分区字段的范围只查询相交的分区，多个分区时组成MultiReader一起查询；
+ * 过期的分区整体关闭，不需要逐个删除文档<br/>
+ * 同一主键的分区字段不能变化，变化时需要先删除
+ *
+ * @Date: 2026/10/17 22:20 <br>
+ * @author: liuchen11
+ */
+public class PartitionedMemoryIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedMemoryIndex.class);
+
+    private static final String PARTITION_PREFIX = "partition-";
+
+    protected final IndexConfig indexConfig;
+    // 各分区索引所在的注册中心
+    protected final IndexRegistry registry;
+    protected final IndexFieldMapping partitionField;
+    protected final PartitionIntervalEnum interval;
+    protected final ZoneId zone = ZoneId.systemDefault();
+    // 分区开始时间 -> 分区索引
+    protected final ConcurrentSkipListMap<Long, MemoryIndex> partitions = new ConcurrentSkipListMap<>();
+    // 导入时按分区字段路由
+    private final RoutedDataLoad.Router<Long> router = new PartitionRouter();
+    // 创建、关闭分区的锁
+    private final Object partitionLock = new Object();
+    private volatile boolean closed;
+
+    /**
+     * 使用默认的索引注册中心
+     */
+    public PartitionedMemoryIndex(IndexConfig indexConfig, IndexDataLoader loader) throws LuceneException {
+        this(indexConfig, loader, IndexRegistry.getDefault());
+    }
+
+    /**
+     * @param indexConfig 索引配置
+     * @param loader      数据加载，读取一次后按分区字段写入各分区
+     * @param registry    索引注册中心，各分区共享定时调度和线程池
+     */
+    public PartitionedMemoryIndex(IndexConfig indexConfig, IndexDataLoader loader, IndexRegistry registry) throws LuceneException {
+        if (indexConfig == null) {
+            throw new IllegalArgumentException("MemoryIndex config must set.");
+        }
+        if (registry == null) {
+            throw new IllegalArgumentException("PartitionedMemoryIndex registry must set.");
+        }
+        IndexSettingMapping indexSetting = indexConfig.getIndexSetting();
+        String fieldName = indexSetting.getPartitionField();
+        if (StringUtil.isEmpty(fieldName) || !indexConfig.containsField(fieldName)) {
+            throw new IllegalArgumentException("PartitionedMemoryIndex must has partition field, field:" + fieldName);
+        }
+        IndexFieldMapping field = indexConfig.getFieldConfig(fieldName);
+        if (field.getType() != FieldTypeEnum.DATE || field.isDocValueOnly()) {
+            throw new IllegalArgumentException("The partition field must be date without docValueOnly, field:" + fieldName);
+        }
+        this.indexConfig = indexConfig;
+        this.registry = registry;
+        this.partitionField = field;
+        this.interval = indexSetting.getPartitionInterval() == null ? PartitionIntervalEnum.DAY : indexSetting.getPartitionInterval();
+
+        try {
+            openPartitions(loader);
+        } catch (RuntimeException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    /**
+     * 打开日志、快照目录中已有的分区，有数据加载时读取一次数据源写入各分区<br/>
+     * 与MemoryIndex一致，各分区优先从快照恢复，不能恢复的分区从数据源导入后重放日志；数据源中新出现的分区同样导入
+     */
+    private void openPartitions(IndexDataLoader loader) throws LuceneException {
+        IndexSettingMapping indexSetting = indexConfig.getIndexSetting();
+        TreeSet<LocalDate> existing = new TreeSet<>();
+        for (String root : new String[]{indexSetting.getTranslogPath(), indexSetting.getSnapshotPath()}) {
+            if (StringUtil.isEmpty(root) || !Files.isDirectory(Paths.get(root))) {
+                continue;
+            }
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(root), PARTITION_PREFIX + "*")) {
+                for (Path path : stream) {
+                    String name = path.getFileName().toString().substring(PARTITION_PREFIX.length());
+                    try {
+                        existing.add(LocalDate.parse(name, DateTimeFormatter.BASIC_ISO_DATE));
+                    } catch (DateTimeParseException ex) {
+                        logger.warn("PartitionedMemoryIndex unknown partition directory:{}", path);
+                    }
+                }
+            } catch (IOException ex) {
+                throw new LuceneException("PartitionedMemoryIndex list partitions error", ex);
+            }
+        }
+        if (loader == null) {
+            for (LocalDate start : existing) {
+                partitions.put(toMillis(start), new MemoryIndex(partitionConfig(start), null, registry));
+            }
+            trimPartitions();
+            return;
+        }
+        long begin = System.currentTimeMillis();
+        RoutedDataLoad<Long, MemoryIndex> load = new RoutedDataLoad<Long, MemoryIndex>(indexConfig, router) {
+            @Override
+            protected boolean missing(Long key) {
+                startPartition(this, loader, key);
+                return true;
+            }
+        };
+        for (LocalDate start : existing) {
+            startPartition(load, loader, toMillis(start));
+        }
+        // 没有已有分区时一定读取数据源；已有分区都从快照恢复时不再读取
+        load.run(loader, existing.isEmpty());
+        partitions.putAll(load.await(MemoryIndex::close));
+        // 数据源中的时间不一定有序，全部导入后再关闭超出maxPartitions的分区
+        trimPartitions();
+        logger.info("PartitionedMemoryIndex open {} partitions in {}ms.", partitions.size(), System.currentTimeMillis() - begin);
+    }
+
+    /**
+     * 在导入线程中构造分区，分区需要导入时加入本次读取
+     */
+    private void startPartition(RoutedDataLoad<Long, MemoryIndex> load, IndexDataLoader loader, long key) {
+        LocalDate start = interval.floor(key, zone);
+        IndexConfig config = partitionConfig(start);
+        RoutedDataLoad.TargetLoader<Long> partitionLoader = new RoutedDataLoad.TargetLoader<>(loader, router, key);
+        load.start(key, partitionName(start), () -> new MemoryIndex(config, partitionLoader, registry));
+    }
+
+    /**
+     * 插入单个文档，按分区字段写入所在的分区，参照{@link MemoryIndex#insertUpdate(Map)}
+     *
+     * @param document 必须包含主键字段和分区字段
+     * @return
+     * @throws LuceneException
+     */
+    public int insertUpdate(Map<String, Object> document) throws LuceneException {
+        return insertUpdate(document, RefreshPolicyEnum.NONE);
+    }
+
+    /**
+     * 插入单个文档，只刷新或等待文档所在的分区，参照{@link MemoryIndex#insertUpdate(Map, RefreshPolicyEnum)}
+     *
+     * @param document      必须包含主键字段和分区字段
+     * @param refreshPolicy 刷新策略
+     * @return
+     * @throws LuceneException
+     */
+    public int insertUpdate(Map<String, Object> document, RefreshPolicyEnum refreshPolicy) throws LuceneException {
+        if (document == null || document.isEmpty()) {
+            return 0;
+        }
+        return partition(partitionTime(document)).insertUpdate(document, refreshPolicy);
+    }
+
+    /**
+     * 插入单个已经构造好的文档，参照{@link MemoryIndex#insertUpdate(String, Document)}
+     *
+     * @param id
+     * @param document 必须包含分区字段
+     * @return
+     * @throws LuceneException
+     */
+    public int insertUpdate(String id, Document document) throws LuceneException {
+        return insertUpdate(id, document, RefreshPolicyEnum.NONE);
+    }
+
+    /**
+     * 插入单个已经构造好的文档，参照{@link MemoryIndex#insertUpdate(String, Document, RefreshPolicyEnum)}
+     *
+     * @param id
+     * @param document      必须包含分区字段
+     * @param refreshPolicy 刷新策略
+     * @return
+     * @throws LuceneException
+     */
+    public int insertUpdate(String id, Document document, RefreshPolicyEnum refreshPolicy) throws LuceneException {
+        if (StringUtil.isEmpty(id) || document == null) {
+            return 0;
+        }
+        return partition(partitionTime(document)).insertUpdate(id, document, refreshPolicy);
+    }
+
+    /**
+     * 批量插入文档，按分区分组后分别写入，参照{@link MemoryIndex#batchInsertUpdate(List)}
+     *
+     * @param documents
+     * @return
+     * @throws LuceneException
+     */
+    public int batchInsertUpdate(List<Map<String, Object>> documents) throws LuceneException {
+        return batchInsertUpdate(documents, RefreshPolicyEnum.NONE);
+    }
+
+    /**
+     * 批量插入文档，每个写入的分区只刷新或等待一次，参照{@link MemoryIndex#batchInsertUpdate(List, RefreshPolicyEnum)}
+     *
+     * @param documents
+     * @param refreshPolicy 刷新策略
+     * @return
+     * @throws LuceneException
+     */
+    public int batchInsertUpdate(List<Map<String, Object>> documents, RefreshPolicyEnum refreshPolicy) throws LuceneException {
+        if (documents == null || documents.isEmpty()) {
+            return 0;
+        }
+        Map<MemoryIndex, List<Map<String, Object>>> grouped = new LinkedHashMap<>();
+        for (Map<String, Object> document : documents) {
+            grouped.computeIfAbsent(partition(partitionTime(document)), key -> new ArrayList<>()).add(document);
+        }
+        int successCount = 0;
+        for (Map.Entry<MemoryIndex, List<Map<String, Object>>> entry : grouped.entrySet()) {
+            successCount += entry.getKey().batchInsertUpdate(entry.getValue(), refreshPolicy);
+        }
+        return successCount;
+    }
+
+    /**
+     * 根据主键删除，不知道文档所在的分区，在全部分区中删除
+     *
+     * @param id
+     * @throws LuceneException
+     */
+    public void delete(String id) throws LuceneException {
+        delete(id, RefreshPolicyEnum.NONE);
+    }
+
+    /**
+     * 根据主键删除，在全部分区中删除
+     *
+     * @param id
+     * @param refreshPolicy 刷新策略
+     * @throws LuceneException
+     */
+    public void delete(String id, RefreshPolicyEnum refreshPolicy) throws LuceneException {
+        if (StringUtil.isEmpty(id)) {
+            throw new IllegalArgumentException("MemoryIndex delete must has primary value.");
+        }
+        for (MemoryIndex partition : partitions.values()) {
+            partition.delete(id, refreshPolicy);
+        }
+    }
+
+    /**
+     * 根据主键获取文档，从最新的分区开始查找，参照{@link MemoryIndex#get(String, boolean)}
+     *
+     * @param id
+     * @param realtime
+     * @return 不存在时返回null
+     * @throws LuceneException
+     */
+    public Map<String, Object> get(String id, boolean realtime) throws LuceneException {
+        for (MemoryIndex partition : partitions.descendingMap().values()) {
+            try {
+                Map<String, Object> document = partition.get(id, realtime);
+                if (document != null) {
+                    return document;
+                }
+            } catch (AlreadyClosedException ex) {
+                // 分区已经被关闭
+            }
+        }
+        return null;
+    }
+
+    public Map<String, Object> get(String id) throws LuceneException {
+        return get(id, false);
+    }
+
+    /**
+     * 查询，只查询与查询条件中分区字段范围相交的分区<br/>
+     * 只有一个分区时直接在该分区中查询；多个分区时组成MultiReader查询，结果中的_id是在MultiReader中的docId
+     *
+     * @param request
+     * @return
+     * @throws QueryException
+     */
+    public SearchResponse search(SearchRequest request) throws QueryException {
+        Collection<MemoryIndex> targets = route(request);
+        if (targets.isEmpty()) {
+            SearchResponse response = new SearchResponse();
+            SearchHits hits = new SearchHits();
+            hits.setDocuments(Collections.emptyList());
+            response.setHits(hits);
+            return response;
+        }
+        if (targets.size() == 1) {
+            return targets.iterator().next().search(request);
+        }
+        List<IndexGeneration.SearcherHandle> handles = new ArrayList<>(targets.size());
+        try {
+            for (MemoryIndex partition : targets) {
+                try {
+                    handles.add(partition.acquireSearcher());
+                } catch (AlreadyClosedException ex) {
+                    // 查询期间分区被关闭
+                }
+            }
+            IndexReader[] readers = new IndexReader[handles.size()];
+            for (int i = 0; i < readers.length; i++) {
+                readers[i] = handles.get(i).getSearcher().getIndexReader();
+            }
+            try (MultiReader reader = new MultiReader(readers, false)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                searcher.setSimilarity(new BM25Similarity());
+                return targets.iterator().next().search(request, searcher);
+            }
+        } catch (IOException ex) {
+            throw new QueryException("PartitionedMemoryIndex query error", ex);
+        } finally {
+            for (IndexGeneration.SearcherHandle handle : handles) {
+                handle.close();
+            }
+        }
+    }
+
+    /**
+     * 根据查询条件中分区字段的范围选择分区<br/>
+     * 只使用顶层的range条件：只有一个条件时（查询中不区分逻辑）或逻辑为must、filter的条件
+     */
+    private Collection<MemoryIndex> route(SearchRequest request) {
+        long lower = Long.MIN_VALUE;
+        long upper = Long.MAX_VALUE;
+        List<SearchCriteria> criteriaList = request.getCriteriaList();
+        if (criteriaList != null) {
+            for (SearchCriteria criteria : criteriaList) {
+                SearchOption option = criteria.getOption();
+                if (option == null || option.getSearchType() != SearchOption.SearchType.range
+                        || !partitionField.getName().equals(criteria.getField()) || criteria.hasSubCriterias()
+                        || criteria.getValues() == null || criteria.getValues().size() < 2) {
+                    continue;
+                }
+                if (criteriaList.size() > 1 && option.getSearchLogic() != SearchOption.SearchLogic.must
+                        && option.getSearchLogic() != SearchOption.SearchLogic.filter) {
+                    continue;
+                }
+                Long from = parseTime(criteria.getValues().get(0));
+                Long to = parseTime(criteria.getValues().get(1));
+                if (from != null) {
+                    lower = Math.max(lower, from);
+                }
+                if (to != null) {
+                    upper = Math.min(upper, to);
+                }
+            }
+        }
+        if (lower > upper || partitions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Long fromKey = lower == Long.MIN_VALUE ? partitions.firstKey() : Long.valueOf(toMillis(interval.floor(lower, zone)));
+        Long toKey = upper == Long.MAX_VALUE ? partitions.lastKey() : Long.valueOf(toMillis(interval.floor(upper, zone)));
+        if (fromKey > toKey) {
+            return Collections.emptyList();
+        }
+        return partitions.subMap(fromKey, true, toKey, true).values();
+    }
+
+    /**
+     * 解析查询条件中的时间，与range查询使用相同的格式
+     *
+     * @return 为空或无法解析时返回null
+     */
+    private Long parseTime(Object value) {
+        if (value == null) {
+            return null;
+        }
+        return DateUtil.convertTime(StringUtil.conver2String(value), partitionField.getFormat().split("\\|\\|"));
+    }
+
+    /**
+     * 获取时间所在的分区，不存在时创建
+     */
+    private MemoryIndex partition(long time) throws LuceneException {
+        LocalDate start = interval.floor(time, zone);
+        long key = toMillis(start);
+        MemoryIndex partition = partitions.get(key);
+        if (partition != null) {
+            return partition;
+        }
+        synchronized (partitionLock) {
+            if (closed) {
+                throw new LuceneException("PartitionedMemoryIndex is closed.");
+            }
+            partition = partitions.get(key);
+            if (partition != null) {
+                return partition;
+            }
+            int maxPartitions = indexConfig.getIndexSetting().getMaxPartitions();
+            if (maxPartitions > 0 && partitions.size() >= maxPartitions && key < partitions.firstKey()) {
+                throw new IllegalArgumentException("PartitionedMemoryIndex partition is expired:" + start);
+            }
+            partition = new MemoryIndex(partitionConfig(start), null, registry);
+            partitions.put(key, partition);
+            logger.info("PartitionedMemoryIndex create partition:{}", start);
+            trimPartitions();
+            return partition;
+        }
+    }
+
+    private long partitionTime(Map<String, Object> document) {
+        Object value = document.get(partitionField.getName());
+        if (value == null) {
+            throw new IllegalArgumentException("PartitionedMemoryIndex document must has partition field:" + partitionField.getName());
+        }
+        DocumentPlan.FieldPlan field = indexConfig.getDocumentPlan().getField(partitionField.getName());
+        return field.toDocValue(value);
+    }
+
+    private long partitionTime(Document document) {
+        for (IndexableField field : document.getFields(partitionField.getName())) {
+            if (field.fieldType().docValuesType() != DocValuesType.NONE && field.numericValue() != null) {
+                return field.numericValue().longValue();
+            }
+        }
+        throw new IllegalArgumentException("PartitionedMemoryIndex document must has partition field:" + partitionField.getName());
+    }
+
+    /**
+     * 分区使用相同的字段映射，日志、快照、存储目录为各自的子目录<br/>
+     * 导入时分区的数据在共享的索引线程中写入，分区自身的indexThreads为1
+     */
+    private IndexConfig partitionConfig(LocalDate start) {
+        IndexSettingMapping setting = indexConfig.getIndexSetting().copy();
+        String name = partitionName(start);
+        setting.setTranslogPath(child(setting.getTranslogPath(), name));
+        setting.setSnapshotPath(child(setting.getSnapshotPath(), name));
+        setting.setStorePath(child(setting.getStorePath(), name));
+        setting.setIndexThreads(1);
+        return indexConfig.copy(setting);
+    }
+
+    private static String child(String root, String name) {
+        return StringUtil.isEmpty(root) ? root : Paths.get(root, name).toString();
+    }
+
+    private static String partitionName(LocalDate start) {
+        return PARTITION_PREFIX + start.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+
+    private long toMillis(LocalDate start) {
+        return start.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 关闭结束时间不晚于指定时间的分区，分区的日志、快照、存储目录一起删除
+     *
+     * @param time 毫秒时间戳
+     * @return 关闭的分区数
+     * @throws LuceneException
+     */
+    public int dropPartitionsBefore(long time) throws LuceneException {
+        int dropped = 0;
+        synchronized (partitionLock) {
+            for (Long key : new ArrayList<>(partitions.headMap(time).keySet())) {
+                LocalDate start = interval.floor(key, zone);
+                if (toMillis(interval.next(start)) <= time) {
+                    drop(key);
+                    dropped++;
+                }
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * 分区数超过maxPartitions时关闭最早的分区，调用方需持有partitionLock或在初始化中
+     */
+    private void trimPartitions() {
+        int maxPartitions = indexConfig.getIndexSetting().getMaxPartitions();
+        while (maxPartitions > 0 && partitions.size() > maxPartitions) {
+            drop(partitions.firstKey());
+        }
+    }
+
+    private void drop(Long key) {
+        MemoryIndex partition = partitions.remove(key);
+        if (partition == null) {
+            return;
+        }
+        LocalDate start = interval.floor(key, zone);
+        partition.close();
+        IndexSettingMapping setting = partition.indexConfig.getIndexSetting();
+        for (String path : new String[]{setting.getTranslogPath(), setting.getSnapshotPath(), setting.getStorePath()}) {
+            if (StringUtil.isNotEmpty(path)) {
+                try {
+                    IOUtils.rm(Paths.get(path));
+                } catch (IOException ex) {
+                    logger.warn("PartitionedMemoryIndex delete partition directory error:{}", ex.getMessage(), ex);
+                }
+            }
+        }
+        logger.info("PartitionedMemoryIndex drop partition:{}", start);
+    }
+
+    /**
+     * 分区开始日期，按时间排序
+     *
+     * @return
+     */
+    public List<LocalDate> getPartitions() {
+        List<LocalDate> result = new ArrayList<>(partitions.size());
+        for (Long key : partitions.keySet()) {
+            result.add(interval.floor(key, zone));
+        }
+        return result;
+    }
+
+    /**
+     * 时间所在的分区
+     *
+     * @param time 毫秒时间戳
+     * @return 不存在时返回null
+     */
+    public MemoryIndex getPartition(long time) {
+        return partitions.get(toMillis(interval.floor(time, zone)));
+    }
+
+    /**
+     * 全部分区的文档数
+     */
+    public int count() {
+        int count = 0;
+        for (MemoryIndex partition : partitions.values()) {
+            count += partition.count();
+        }
+        return count;
+    }
+
+    /**
+     * 刷新全部分区
+     */
+    public void maybeRefresh() throws LuceneException {
+        for (MemoryIndex partition : partitions.values()) {
+            partition.maybeRefresh();
+        }
+    }
+
+    /**
+     * 关闭全部分区，不删除分区的日志和快照
+     */
+    public void close() throws LuceneException {
+        synchronized (partitionLock) {
+            closed = true;
+            LuceneException failure = null;
+            for (MemoryIndex partition : partitions.values()) {
+                try {
+                    partition.close();
+                } catch (LuceneException ex) {
+                    failure = ex;
+                }
+            }
+            partitions.clear();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * 导入时按分区字段的时间路由到所在的分区
+     */
+    private final class PartitionRouter implements RoutedDataLoad.Router<Long> {
+
+        @Override
+        public Long route(Document document) {
+            return toMillis(interval.floor(partitionTime(document), zone));
+        }
+
+        @Override
+        public Long route(Map<String, Object> source) {
+            return toMillis(interval.floor(partitionTime(source), zone));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.lccy.lucene.memory.index;
+
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CloseableThreadLocal;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 主键到文档的查找，按段直接在词典中seek主键，不经过Query、评分和Collector<br/>
+ * 主键字段使用{@link org.lccy.lucene.memory.index.codec.PrimaryKeyPostingsFormat}时，不包含该主键的段由布隆过滤器直接跳过<br/>
+ * 每个线程、每个段缓存一个TermsEnum，段关闭时释放；线程安全
+ *
+ * @Date: 2026/10/17 19:25 <br>
+ * @author: liuchen11
+ */
+public final class PrimaryKeyLookup {
+
+    private final String field;
+    private final Map<IndexReader.CacheKey, CloseableThreadLocal<LeafLookup>> cache = new ConcurrentHashMap<>();
+
+    public PrimaryKeyLookup(String field) {
+        this.field = field;
+    }
+
+    /**
+     * 在IndexReader中查找主键对应的有效文档
+     *
+     * @param reader
+     * @param id     主键
+     * @return 不存在或已删除时返回null
+     * @throws IOException
+     */
+    public Hit lookup(IndexReader reader, BytesRef id) throws IOException {
+        List<LeafReaderContext> leaves = reader.leaves();
+        // 新的段在后面，频繁更新的主键更可能在新的段中
+        for (int i = leaves.size() - 1; i >= 0; i--) {
+            LeafReaderContext leaf = leaves.get(i);
+            int doc = leafLookup(leaf).lookup(id, leaf.reader().getLiveDocs());
+            if (doc != DocIdSetIterator.NO_MORE_DOCS) {
+                return new Hit(leaf, doc);
+            }
+        }
+        return null;
+    }
+
+    private LeafLookup leafLookup(LeafReaderContext leaf) throws IOException {
+        IndexReader.CacheHelper cacheHelper = leaf.reader().getCoreCacheHelper();
+        if (cacheHelper == null) {
+            return new LeafLookup(leaf.reader(), field);
+        }
+        IndexReader.CacheKey key = cacheHelper.getKey();
+        CloseableThreadLocal<LeafLookup> local = cache.get(key);
+        if (local == null) {
+            local = new CloseableThreadLocal<>();
+            CloseableThreadLocal<LeafLookup> previous = cache.putIfAbsent(key, local);
+            if (previous != null) {
+                local = previous;
+            } else {
+                cacheHelper.addClosedListener(closedKey -> {
+                    CloseableThreadLocal<LeafLookup> removed = cache.remove(closedKey);
+                    if (removed != null) {
+                        removed.close();
+                    }
+                });
+            }
+        }
+        LeafLookup lookup = local.get();
+        if (lookup == null) {
+            lookup = new LeafLookup(leaf.reader(), field);
+            local.set(lookup);
+        }
+        return lookup;
+    }
+
+    /**
+     * 查找结果
+     */
+    public static final class Hit {
+
+        private final LeafReaderContext context;
+        private final int doc;
+
+        Hit(LeafReaderContext context, int doc) {
+            this.context = context;
+            this.doc = doc;
+        }
+
+        /**
+         * 文档所在的段
+         */
+        public LeafReaderContext getContext() {
+            return context;
+        }
+
+        /**
+         * 段内的文档号
+         */
+        public int getDoc() {
+            return doc;
+        }
+
+        /**
+         * IndexReader中的文档号
+         */
+        public int getGlobalDoc() {
+            return context.docBase + doc;
+        }
+    }
+
+    /**
+     * 单个段的查找，同一个段的不同IndexReader（删除不同）共用词典
+     */
+    private static final class LeafLookup {
+
+        private final TermsEnum termsEnum;
+        private PostingsEnum postings;
+
+        LeafLookup(LeafReader reader, String field) throws IOException {
+            Terms terms = reader.terms(field);
+            this.termsEnum = terms == null ? null : terms.iterator();
+        }
+
+        int lookup(BytesRef id, Bits liveDocs) throws IOException {
+            if (termsEnum == null || !termsEnum.seekExact(id)) {
+                return DocIdSetIterator.NO_MORE_DOCS;
+            }
+            postings = termsEnum.postings(postings, PostingsEnum.NONE);
+            for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                if (liveDocs == null || liveDocs.get(doc)) {
+                    return doc;
+                }
+            }
+            return DocIdSetIterator.NO_MORE_DOCS;
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package org.lccy.lucene.memory.index;
+
+import org.apache.lucene.document.Document;
+import org.lccy.lucene.memory.builder.ReusableDocument;
+import org.lccy.lucene.memory.exception.LuceneException;
+import org.lccy.lucene.memory.index.config.IndexConfig;
+import org.lccy.lucene.memory.index.write.BulkIndexer;
+import org.lccy.lucene.memory.loader.IndexDataConsumer;
+import org.lccy.lucene.memory.loader.IndexDataLoader;
+import org.lccy.lucene.memory.loader.StreamingIndexDataLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * 一次读取数据源，按路由把数据写入多个索引（分片、分区）<br/>
+ * 各目标索引的导入（构造、{@link MemoryIndex#reloadData()}）在各自的线程中执行，执行到数据加载时通过{@link TargetLoader}登记写入用的consumer后等待，
+ * 从快照恢复等不需要导入的目标不登记；{@link #run}读取一次数据源，按路由分发，文档在共享的{@link BulkIndexer}索引线程中构造并写入目标的consumer，
+ * 读取结束后各目标继续提交、重放日志<br/>
+ * 目标的consumer必须在调用线程中同步写入（目标索引的indexThreads为1），写入返回后可复用文档即可回收
+ *
+ * @param <K> 路由的键，分片号或分区开始时间
+ * @param <V> 目标导入的结果
+ * @Date: 2026/10/17 23:40 <br>
+ * @author: liuchen11
+ */
+class RoutedDataLoad<K, V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoutedDataLoad.class);
+
+    /**
+     * 数据的路由
+     */
+    interface Router<K> {
+        /**
+         * @return 文档所在的目标
+         */
+        K route(Document document);
+
+        /**
+         * @return 原始数据所在的目标
+         */
+        K route(Map<String, Object> source);
+    }
+
+    // 导入线程正在执行的目标
+    private static final ThreadLocal<Target<?>> CURRENT = new ThreadLocal<>();
+
+    private final IndexConfig indexConfig;
+    private final Router<K> router;
+    // 按启动顺序保存的目标，只在调用线程中修改
+    private final Map<K, Target<V>> targets = new LinkedHashMap<>();
+    private volatile Throwable failure;
+
+    /**
+     * @param indexConfig 数据源的索引配置，共享索引线程数使用其中的indexThreads
+     * @param router      数据的路由
+     */
+    RoutedDataLoad(IndexConfig indexConfig, Router<K> router) {
+        this.indexConfig = indexConfig;
+        this.router = router;
+    }
+
+    /**
+     * 在新线程中执行目标的导入，导入中调用loader加载数据时加入本次读取
+     *
+     * @param key    路由的键
+     * @param name   目标名称，用于线程名
+     * @param task   目标的导入，构造或重新导入使用{@link TargetLoader}的索引
+     */
+    void start(K key, String name, Callable<V> task) {
+        Target<V> target = new Target<>();
+        targets.put(key, target);
+        Thread thread = new Thread(() -> {
+            CURRENT.set(target);
+            try {
+                target.done.complete(task.call());
+            } catch (Throwable ex) {
+                target.done.completeExceptionally(ex);
+            } finally {
+                CURRENT.remove();
+                // 没有调用数据加载时（从快照恢复等）不再等待
+                target.joined.complete(null);
+            }
+        }, "memory-index-load-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 数据源中出现没有启动的目标时调用，可以在其中{@link #start}新的目标
+     *
+     * @return 新的目标是否已经启动，返回false时丢弃该目标的数据
+     */
+    protected boolean missing(K key) {
+        return false;
+    }
+
+    /**
+     * 等待已启动的目标登记后读取一次数据源，出现异常时各目标的导入同样失败，由{@link #await}抛出
+     *
+     * @param loader 数据源
+     * @param always 没有目标登记时也读取（可能出现新的目标）
+     */
+    void run(IndexDataLoader loader, boolean always) {
+        BulkIndexer bulkIndexer = null;
+        try {
+            boolean active = always;
+            for (Target<V> target : new ArrayList<>(targets.values())) {
+                active |= target.consumer() != null;
+                // 目标在加载数据前失败时不再读取，已登记的目标同样失败，不能以空数据完成
+                if (target.done.isCompletedExceptionally()) {
+                    try {
+                        target.done.get();
+                    } catch (ExecutionException ex) {
+                        failure = ex.getCause();
+                    }
+                    return;
+                }
+            }
+            if (!active) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            int threads = indexConfig.getIndexSetting().getIndexThreads();
+            BulkIndexer shared = new BulkIndexer(indexConfig, threads, threads * 1024);
+            bulkIndexer = shared;
+            loader.load(indexConfig, new IndexDataConsumer() {
+                @Override
+                public void accept(Document document) {
+                    IndexDataConsumer target = target(router.route(document));
+                    if (target != null) {
+                        shared.accept(document, target);
+                    }
+                }
+
+                @Override
+                public void accept(Map<String, Object> source) {
+                    IndexDataConsumer target = target(router.route(source));
+                    if (target != null) {
+                        shared.accept(source, target);
+                    }
+                }
+
+                @Override
+                public ReusableDocument obtain() {
+                    return shared.obtain();
+                }
+
+                @Override
+                public void accept(ReusableDocument document) {
+                    IndexDataConsumer target = target(router.route(document.getDocument()));
+                    if (target != null) {
+                        shared.accept(document, target);
+                    } else {
+                        shared.recycle(document);
+                    }
+                }
+            });
+            bulkIndexer = null;
+            long total = shared.finish();
+            logger.info("MemoryIndex routed load {} documents to {} targets with {} threads in {}ms.", total, targets.size(),
+                    threads, System.currentTimeMillis() - start);
+        } catch (Throwable ex) {
+            failure = ex;
+        } finally {
+            if (bulkIndexer != null) {
+                // 读取失败时同样停止索引线程，索引线程的异常附加到读取的异常上
+                try {
+                    bulkIndexer.finish();
+                } catch (RuntimeException ex) {
+                    failure.addSuppressed(ex);
+                }
+            }
+            for (Target<V> target : targets.values()) {
+                if (failure == null) {
+                    target.loaded.complete(null);
+                } else {
+                    target.loaded.completeExceptionally(failure);
+                }
+            }
+        }
+    }
+
+    private IndexDataConsumer target(K key) {
+        Target<V> target = targets.get(key);
+        if (target == null && missing(key)) {
+            target = targets.get(key);
+        }
+        return target == null ? null : target.consumer();
+    }
+
+    /**
+     * 等待全部目标的导入结束
+     *
+     * @param rollback 有目标失败时处理已经成功的结果，如关闭已经构造的索引
+     * @return 路由的键 -> 导入的结果，按启动顺序
+     * @throws LuceneException 读取数据源或任一目标的导入失败
+     */
+    Map<K, V> await(Consumer<V> rollback) throws LuceneException {
+        Map<K, V> results = new LinkedHashMap<>();
+        Throwable first = failure;
+        for (Map.Entry<K, Target<V>> entry : targets.entrySet()) {
+            try {
+                results.put(entry.getKey(), entry.getValue().done.get());
+            } catch (ExecutionException ex) {
+                if (first == null) {
+                    first = ex.getCause();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                if (first == null) {
+                    first = ex;
+                }
+            }
+        }
+        if (first == null) {
+            return results;
+        }
+        for (V result : results.values()) {
+            try {
+                rollback.accept(result);
+            } catch (RuntimeException ex) {
+                logger.warn("MemoryIndex routed load rollback error:{}", ex.getMessage(), ex);
+            }
+        }
+        if (first instanceof RuntimeException) {
+            throw (RuntimeException) first;
+        }
+        if (first instanceof Error) {
+            throw (Error) first;
+        }
+        throw new LuceneException("MemoryIndex routed load error", first);
+    }
+
+    /**
+     * 一个目标的导入
+     */
+    private static final class Target<V> {
+
+        // 登记的consumer，没有登记时为null
+        private final CompletableFuture<IndexDataConsumer> joined = new CompletableFuture<>();
+        // 数据源读取结束
+        private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+        private final CompletableFuture<V> done = new CompletableFuture<>();
+
+        /**
+         * 等待目标登记或结束
+         */
+        private IndexDataConsumer consumer() {
+            try {
+                return joined.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new LuceneException("MemoryIndex routed load interrupted.", ex);
+            } catch (ExecutionException ex) {
+                throw new LuceneException("MemoryIndex routed load error", ex.getCause());
+            }
+        }
+
+        /**
+         * 在目标的导入线程中登记consumer并等待数据源读取结束
+         *
+         * @return 已经登记过时返回false
+         */
+        private boolean join(IndexDataConsumer consumer) {
+            if (!joined.complete(consumer)) {
+                return false;
+            }
+            try {
+                loaded.get();
+                return true;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new LuceneException("MemoryIndex routed load interrupted.", ex);
+            } catch (ExecutionException ex) {
+                throw new LuceneException("MemoryIndex routed load error", ex.getCause());
+            }
+        }
+    }
+
+    /**
+     * 目标索引使用的数据加载：在{@link RoutedDataLoad}的导入线程中加入本次读取；
+     * 单独导入（直接调用分片、分区的重新导入）时读取整个数据源，只导入路由到该目标的数据
+     */
+    static final class TargetLoader<K> implements StreamingIndexDataLoader {
+
+        private final IndexDataLoader loader;
+        private final Router<K> router;
+        private final K key;
+
+        TargetLoader(IndexDataLoader loader, Router<K> router, K key) {
+            this.loader = loader;
+            this.router = router;
+            this.key = key;
+        }
+
+        @Override
+        public void load(IndexConfig indexConfig, IndexDataConsumer consumer) {
+            Target<?> target = CURRENT.get();
+            if (target != null && target.join(consumer)) {
+                return;
+            }
+            // 不属于该目标的可复用文档不提交，留给下次obtain使用
+            ConcurrentLinkedQueue<ReusableDocument> spare = new ConcurrentLinkedQueue<>();
+            loader.load(indexConfig, new IndexDataConsumer() {
+                @Override
+                public void accept(Document document) {
+                    if (key.equals(router.route(document))) {
+                        consumer.accept(document);
+                    }
+                }
+
+                @Override
+                public void accept(Map<String, Object> source) {
+                    if (key.equals(router.route(source))) {
+                        consumer.accept(source);
+                    }
+                }
+
+                @Override
+                public ReusableDocument obtain() {
+                    ReusableDocument document = spare.poll();
+                    if (document != null) {
+                        document.reset();
+                        return document;
+                    }
+                    return consumer.obtain();
+                }
+
+                @Override
+                public void accept(ReusableDocument document) {
+                    if (key.equals(router.route(document.getDocument()))) {
+                        consumer.accept(document);
+                    } else {
+                        spare.offer(document);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,579 @@
+package org.lccy.lucene.memory.index;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+import org.lccy.lucene.memory.aggs.collector.AggregatorFactory;
+import org.lccy.lucene.memory.aggs.collector.aggregation.InternalAggregation;
+import org.lccy.lucene.memory.builder.SearchHitsBuilder;
+import org.lccy.lucene.memory.builder.SortBuilder;
+import org.lccy.lucene.memory.constants.RefreshPolicyEnum;
+import org.lccy.lucene.memory.exception.LuceneException;
+import org.lccy.lucene.memory.exception.QueryException;
+import org.lccy.lucene.memory.index.config.IndexConfig;
+import org.lccy.lucene.memory.index.mapping.IndexSettingMapping;
+import org.lccy.lucene.memory.loader.IndexDataLoader;
+import org.lccy.lucene.memory.search.SearchCriteria;
+import org.lccy.lucene.memory.search.SearchHits;
+import org.lccy.lucene.memory.search.SearchRequest;
+import org.lccy.lucene.memory.search.SearchResponse;
+import org.lccy.lucene.memory.util.CollectionUtils;
+import org.lccy.lucene.memory.util.CommonUtil;
+import org.lccy.lucene.memory.util.StringUtil;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 分片的内存索引，按主键哈希把文档写入{@link IndexSettingMapping#getNumberOfShards()}个分片，每个分片是一个独立的{@link MemoryIndex}<br/>
+ * 查询时在共享的线程池中并行查询各分片，topN通过TopDocs.merge合并，分组结果通过{@link InternalAggregation#reduce(List, boolean)}合并；
+ * 结果中的_id是各分片组成的MultiReader中的docId，lastDoc记录所在的分片，用于深度分页
+ *
+ * @Date: 2026/10/17 23:00 <br>
+ * @author: liuchen11
+ */
+public class ShardedMemoryIndex {
+
+    private static final String SHARD_PREFIX = "shard-";
+
+    protected final IndexConfig indexConfig;
+    protected final MemoryIndex[] shards;
+    // 查询各分片的线程池，调用线程查询第一个分片
+    protected final ExecutorService searchExecutor;
+    // 各分片索引所在的注册中心
+    protected final IndexRegistry registry;
+    // 数据加载，导入、重新导入时读取一次，按主键路由到各分片
+    private final IndexDataLoader loader;
+    private final RoutedDataLoad.Router<Integer> router;
+
+    /**
+     * 使用默认的索引注册中心，查询各分片使用注册中心共享的查询线程池
+     */
+    public ShardedMemoryIndex(IndexConfig indexConfig, IndexDataLoader loader) throws LuceneException {
+        this(indexConfig, loader, IndexRegistry.getDefault());
+    }
+
+    /**
+     * @param indexConfig 索引配置
+     * @param loader      数据加载，读取一次后按主键写入各分片
+     * @param registry    索引注册中心，查询各分片使用注册中心共享的查询线程池
+     */
+    public ShardedMemoryIndex(IndexConfig indexConfig, IndexDataLoader loader, IndexRegistry registry) throws LuceneException {
+        this(indexConfig, loader, registry, registry == null ? null : registry.getSearchExecutor());
+    }
+
+    /**
+     * @param indexConfig    索引配置
+     * @param loader         数据加载，读取一次后按主键写入各分片
+     * @param searchExecutor 查询各分片的线程池，由调用方关闭
+     */
+    public ShardedMemoryIndex(IndexConfig indexConfig, IndexDataLoader loader, ExecutorService searchExecutor) throws LuceneException {
+        this(indexConfig, loader, IndexRegistry.getDefault(), searchExecutor);
+    }
+
+    private ShardedMemoryIndex(IndexConfig indexConfig, IndexDataLoader loader, IndexRegistry registry,
+                               ExecutorService searchExecutor) throws LuceneException {
+        if (indexConfig == null) {
+            throw new IllegalArgumentException("MemoryIndex config must set.");
+        }
+        int numberOfShards = indexConfig.getIndexSetting().getNumberOfShards();
+        if (numberOfShards < 1) {
+            throw new IllegalArgumentException("ShardedMemoryIndex numberOfShards must be greater than 0, numberOfShards:" + numberOfShards);
+        }
+        if (registry == null || searchExecutor == null) {
+            throw new IllegalArgumentException("ShardedMemoryIndex registry and search executor must set.");
+        }
+        this.indexConfig = indexConfig;
+        this.registry = registry;
+        this.searchExecutor = searchExecutor;
+        this.loader = loader;
+        this.shards = new MemoryIndex[numberOfShards];
+        this.router = new ShardRouter();
+        if (loader == null) {
+            try {
+                for (int i = 0; i < numberOfShards; i++) {
+                    shards[i] = new MemoryIndex(shardConfig(i), null, registry);
+                }
+            } catch (RuntimeException ex) {
+                close();
+                throw ex;
+            }
+            return;
+        }
+        // 各分片并行构造，需要导入的分片加入同一次读取，从快照恢复的分片不导入
+        RoutedDataLoad<Integer, MemoryIndex> load = new RoutedDataLoad<>(indexConfig, router);
+        for (int i = 0; i < numberOfShards; i++) {
+            IndexConfig shardConfig = shardConfig(i);
+            RoutedDataLoad.TargetLoader<Integer> shardLoader = new RoutedDataLoad.TargetLoader<>(loader, router, i);
+            load.start(i, SHARD_PREFIX + i, () -> new MemoryIndex(shardConfig, shardLoader, registry));
+        }
+        load.run(loader, false);
+        for (Map.Entry<Integer, MemoryIndex> entry : load.await(MemoryIndex::close).entrySet()) {
+            shards[entry.getKey()] = entry.getValue();
+        }
+    }
+
+    /**
+     * 分片使用相同的字段映射，日志、快照、存储目录为各自的子目录<br/>
+     * 导入时分片的数据在共享的索引线程中写入，分片自身的indexThreads为1
+     */
+    private IndexConfig shardConfig(int shard) {
+        IndexSettingMapping setting = indexConfig.getIndexSetting().copy();
+        String name = SHARD_PREFIX + shard;
+        setting.setTranslogPath(child(setting.getTranslogPath(), name));
+        setting.setSnapshotPath(child(setting.getSnapshotPath(), name));
+        setting.setStorePath(child(setting.getStorePath(), name));
+        setting.setIndexThreads(1);
+        return indexConfig.copy(setting);
+    }
+
+    private static String child(String root, String name) {
+        return StringUtil.isEmpty(root) ? root : Paths.get(root, name).toString();
+    }
+
+    /**
+     * 主键所在的分片
+     */
+    static int shardId(String id, int numberOfShards) {
+        return Math.floorMod(StringHelper.murmurhash3_x86_32(new BytesRef(id), 0), numberOfShards);
+    }
+
+    private MemoryIndex shard(String id) {
+        if (StringUtil.isEmpty(id)) {
+            throw new IllegalArgumentException("MemoryIndex insert/update must has primary field:" + indexConfig.getPrimaryField().getName());
+        }
+        return shards[shardId(id, shards.length)];
+    }
+
+    private String primaryValue(Map<String, Object> document) {
+        return StringUtil.conver2String(document.get(indexConfig.getPrimaryField().getName()));
+    }
+
+    /**
+     * 插入单个文档，参照{@link MemoryIndex#insertUpdate(Map)}
+     */
+    public int insertUpdate(Map<String, Object> document) throws LuceneException {
+        return insertUpdate(document, RefreshPolicyEnum.NONE);
+    }
+
+    /**
+     * 插入单个文档，只刷新或等待文档所在的分片，参照{@link MemoryIndex#insertUpdate(Map, RefreshPolicyEnum)}
+     */
+    public int insertUpdate(Map<String, Object> document, RefreshPolicyEnum refreshPolicy) throws LuceneException {
+        if (document == null || document.isEmpty()) {
+            return 0;
+        }
+        return shard(primaryValue(document)).insertUpdate(document, refreshPolicy);
+    }
+
+    /**
+     * 插入单个已经构造好的文档，参照{@link MemoryIndex#insertUpdate(String, Document)}
+     */
+    public int insertUpdate(String id, Document document) throws LuceneException {
+        return insertUpdate(id, document, RefreshPolicyEnum.NONE);
+    }
+
+    /**
+     * 插入单个已经构造好的文档，参照{@link MemoryIndex#insertUpdate(String, Document, RefreshPolicyEnum)}
+     */
+    public int insertUpdate(String id, Document document, RefreshPolicyEnum refreshPolicy) throws LuceneException {
+        if (StringUtil.isEmpty(id) || document == null) {
+            return 0;
+        }
+        return shard(id).insertUpdate(id, document, refreshPolicy);
+    }
+
+    /**
+     * 批量插入文档，按分片分组后分别写入，参照{@link MemoryIndex#batchInsertUpdate(List)}
+     */
+    public int batchInsertUpdate(List<Map<String, Object>> documents) throws LuceneException {
+        return batchInsertUpdate(documents, RefreshPolicyEnum.NONE);
+    }
+
+    /**
+     * 批量插入文档，每个写入的分片只刷新或等待一次，参照{@link MemoryIndex#batchInsertUpdate(List, RefreshPolicyEnum)}
+     */
+    public int batchInsertUpdate(List<Map<String, Object>> documents, RefreshPolicyEnum refreshPolicy) throws LuceneException {
+        if (documents == null || documents.isEmpty()) {
+            return 0;
+        }
+        List<List<Map<String, Object>>> grouped = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            grouped.add(new ArrayList<>());
+        }
+        for (Map<String, Object> document : documents) {
+            String id = primaryValue(document);
+            if (StringUtil.isEmpty(id)) {
+                throw new IllegalArgumentException("MemoryIndex insert/update must has primary field:" + indexConfig.getPrimaryField().getName());
+            }
+            grouped.get(shardId(id, shards.length)).add(document);
+        }
+        int successCount = 0;
+        for (int i = 0; i < shards.length; i++) {
+            if (!grouped.get(i).isEmpty()) {
+                successCount += shards[i].batchInsertUpdate(grouped.get(i), refreshPolicy);
+            }
+        }
+        return successCount;
+    }
+
+    /**
+     * 根据主键局部更新文档，参照{@link MemoryIndex#update(String, Map)}
+     */
+    public int update(String id, Map<String, Object> fields) throws LuceneException {
+        return update(id, fields, RefreshPolicyEnum.NONE);
+    }
+
+    /**
+     * 根据主键局部更新文档，参照{@link MemoryIndex#update(String, Map, RefreshPolicyEnum)}
+     */
+    public int update(String id, Map<String, Object> fields, RefreshPolicyEnum refreshPolicy) throws LuceneException {
+        if (StringUtil.isEmpty(id)) {
+            throw new IllegalArgumentException("MemoryIndex update must has primary value.");
+        }
+        return shards[shardId(id, shards.length)].update(id, fields, refreshPolicy);
+    }
+
+    /**
+     * 根据主键删除，参照{@link MemoryIndex#delete(String)}
+     */
+    public void delete(String id) throws LuceneException {
+        delete(id, RefreshPolicyEnum.NONE);
+    }
+
+    /**
+     * 根据主键删除，参照{@link MemoryIndex#delete(String, RefreshPolicyEnum)}
+     */
+    public void delete(String id, RefreshPolicyEnum refreshPolicy) throws LuceneException {
+        if (StringUtil.isEmpty(id)) {
+            throw new IllegalArgumentException("MemoryIndex delete must has primary value.");
+        }
+        shards[shardId(id, shards.length)].delete(id, refreshPolicy);
+    }
+
+    /**
+     * 在全部分片中删除满足条件的文档，参照{@link MemoryIndex#deleteByQuery(List)}
+     *
+     * @return 删除前满足条件的文档数
+     */
+    public long deleteByQuery(List<SearchCriteria> criteriaList) throws LuceneException, QueryException {
+        long deleted = 0;
+        for (MemoryIndex shard : shards) {
+            deleted += shard.deleteByQuery(criteriaList);
+        }
+        return deleted;
+    }
+
+    public Map<String, Object> get(String id) throws LuceneException {
+        return get(id, false);
+    }
+
+    /**
+     * 根据主键获取文档，只读取主键所在的分片，参照{@link MemoryIndex#get(String, boolean)}<br/>
+     * 返回的_id是分片中的docId
+     */
+    public Map<String, Object> get(String id, boolean realtime) throws LuceneException {
+        if (StringUtil.isEmpty(id)) {
+            throw new IllegalArgumentException("MemoryIndex get must has primary value.");
+        }
+        return shards[shardId(id, shards.length)].get(id, realtime);
+    }
+
+    /**
+     * 全部分片的文档数
+     */
+    public int count() {
+        int count = 0;
+        for (MemoryIndex shard : shards) {
+            count += shard.count();
+        }
+        return count;
+    }
+
+    /**
+     * 刷新全部分片
+     */
+    public void maybeRefresh() throws LuceneException {
+        for (MemoryIndex shard : shards) {
+            shard.maybeRefresh();
+        }
+    }
+
+    /**
+     * 重新加载各分片，参照{@link MemoryIndex#reloadData()}<br/>
+     * 各分片并行重新导入，数据源只读取一次；任一分片失败时抛出异常，其他分片可能已经完成重新导入
+     */
+    public void reloadData() throws LuceneException {
+        if (loader == null) {
+            for (MemoryIndex shard : shards) {
+                shard.reloadData();
+            }
+            return;
+        }
+        RoutedDataLoad<Integer, Boolean> load = new RoutedDataLoad<>(indexConfig, router);
+        for (int i = 0; i < shards.length; i++) {
+            MemoryIndex shard = shards[i];
+            load.start(i, SHARD_PREFIX + i, () -> {
+                shard.reloadData();
+                return Boolean.TRUE;
+            });
+        }
+        load.run(loader, false);
+        load.await(reloaded -> {
+        });
+    }
+
+    /**
+     * 查询，各分片并行执行查询阶段，合并后在各分片组成的MultiReader上读取当前页的文档<br/>
+     * 各分片分别计算评分，评分与不分片时可能略有差异
+     *
+     * @param request
+     * @return
+     * @throws QueryException
+     */
+    public SearchResponse search(SearchRequest request) throws QueryException {
+        if (shards.length == 1) {
+            return shards[0].search(request);
+        }
+        ScoreDoc after = request.getLastDoc();
+        if (after != null) {
+            if (CollectionUtils.isNotEmpty(request.getSorts()) && !(after instanceof FieldDoc)) {
+                throw new QueryException("When sorting query, after must be a FieldDoc; got " + after);
+            }
+            if (after.shardIndex < 0 || after.shardIndex >= shards.length) {
+                throw new QueryException("When searching sharded index, after must be the lastDoc of previous page; got " + after);
+            }
+        }
+        MemoryIndex.Paging paging = new MemoryIndex.Paging(request);
+        List<AggregatorFactory> aggregations = request.aggregatorFactories();
+        if (paging.pageSize <= 0 && aggregations.isEmpty()) {
+            return new SearchResponse();
+        }
+        Query query = shards[0].buildQuery(request);
+        Sort sort = SortBuilder.buildSort(request.getSorts(), indexConfig);
+
+        IndexSearcher[] searchers = new IndexSearcher[shards.length];
+        List<IndexGeneration.SearcherHandle> handles = new ArrayList<>(shards.length);
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                IndexGeneration.SearcherHandle handle = shards[i].acquireSearcher();
+                handles.add(handle);
+                searchers[i] = handle.getSearcher();
+            }
+
+            MemoryIndex.QueryResult[] results = queryShards(request, searchers, query, sort, after, paging.numHits, aggregations);
+
+            SearchResponse response = new SearchResponse();
+            IndexReader[] readers = new IndexReader[searchers.length];
+            int[] docStarts = new int[searchers.length];
+            int maxDoc = 0;
+            for (int i = 0; i < searchers.length; i++) {
+                readers[i] = searchers[i].getIndexReader();
+                docStarts[i] = maxDoc;
+                maxDoc += readers[i].maxDoc();
+            }
+            try (MultiReader reader = new MultiReader(readers, false)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                searcher.setSimilarity(new BM25Similarity());
+
+                SearchHits hits;
+                if (results[0].topDocs != null) {
+                    TopDocs merged = mergeTopDocs(results, sort, paging.numHits);
+                    hits = SearchHitsBuilder.build(request, rebase(merged, docStarts), indexConfig, searcher, paging.start, paging.end);
+                    if (hits.getLastDoc() != null) {
+                        // 记录分片和分片中的docId，下一页在各分片上分别定位
+                        hits.setLastDoc(merged.scoreDocs[merged.scoreDocs.length - 1]);
+                    }
+                } else {
+                    hits = new SearchHits();
+                }
+                response.setHits(hits);
+
+                if (CommonUtil.isNotEmpty(aggregations)) {
+                    List<List<InternalAggregation>> shardAggregations = new ArrayList<>(results.length);
+                    for (MemoryIndex.QueryResult result : results) {
+                        shardAggregations.add(result.aggregations);
+                    }
+                    response.setAggregations(InternalAggregation.reduceAll(shardAggregations, true));
+                }
+
+                if (request.isExplain() && CommonUtil.isNotEmpty(hits.getDocuments())) {
+                    response.setExplanations(shards[0].explain(searcher, query, hits));
+                }
+            }
+            return response;
+        } catch (IOException ex) {
+            throw new QueryException("ShardedMemoryIndex query error", ex);
+        } finally {
+            for (IndexGeneration.SearcherHandle handle : handles) {
+                handle.close();
+            }
+        }
+    }
+
+    /**
+     * 并行执行各分片的查询阶段，调用线程执行第一个分片，等待全部分片完成后返回
+     */
+    private MemoryIndex.QueryResult[] queryShards(SearchRequest request, IndexSearcher[] searchers, Query query, Sort sort,
+                                                  ScoreDoc after, int numHits, List<AggregatorFactory> aggregations) throws IOException {
+        MemoryIndex.QueryResult[] results = new MemoryIndex.QueryResult[shards.length];
+        List<Future<MemoryIndex.QueryResult>> futures = new ArrayList<>(shards.length - 1);
+        for (int i = 1; i < shards.length; i++) {
+            final int shard = i;
+            futures.add(searchExecutor.submit(() -> queryShard(shard, request, searchers[shard], query, sort, after, numHits, aggregations)));
+        }
+        Throwable failure = null;
+        try {
+            results[0] = queryShard(0, request, searchers[0], query, sort, after, numHits, aggregations);
+        } catch (IOException | RuntimeException ex) {
+            failure = ex;
+        }
+        // 等待全部分片完成，避免查询中的分片IndexSearcher被释放
+        for (int i = 1; i < shards.length; i++) {
+            try {
+                results[i] = futures.get(i - 1).get();
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    failure = ex.getCause();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+        if (failure instanceof QueryException) {
+            throw (QueryException) failure;
+        } else if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure != null) {
+            throw new QueryException("ShardedMemoryIndex query shard error", failure);
+        }
+        return results;
+    }
+
+    private MemoryIndex.QueryResult queryShard(int shard, SearchRequest request, IndexSearcher searcher, Query query, Sort sort,
+                                               ScoreDoc after, int numHits, List<AggregatorFactory> aggregations) throws IOException {
+        int shardNumHits = Math.min(numHits, Math.max(1, searcher.getIndexReader().maxDoc()));
+        return shards[shard].executeQuery(request, searcher, query, sort, shardAfter(after, shard), shardNumHits, aggregations, false);
+    }
+
+    /**
+     * 换算各分片的深度分页位置：合并时排序相同的文档按分片、分片内docId排序，
+     * 之前的分片跳过全部相同排序的文档，之后的分片保留全部相同排序的文档
+     */
+    private static ScoreDoc shardAfter(ScoreDoc after, int shard) {
+        if (after == null) {
+            return null;
+        }
+        int doc = shard < after.shardIndex ? Integer.MAX_VALUE : shard == after.shardIndex ? after.doc : -1;
+        if (after instanceof FieldDoc) {
+            return new FieldDoc(doc, after.score, ((FieldDoc) after).fields);
+        }
+        return new ScoreDoc(doc, after.score);
+    }
+
+    /**
+     * 合并各分片的topN，合并结果中记录文档所在的分片
+     */
+    private static TopDocs mergeTopDocs(MemoryIndex.QueryResult[] results, Sort sort, int numHits) {
+        if (sort == null) {
+            TopDocs[] shardDocs = new TopDocs[results.length];
+            for (int i = 0; i < results.length; i++) {
+                shardDocs[i] = results[i].topDocs;
+            }
+            return TopDocs.merge(0, numHits, shardDocs, true);
+        }
+        TopFieldDocs[] shardDocs = new TopFieldDocs[results.length];
+        for (int i = 0; i < results.length; i++) {
+            shardDocs[i] = (TopFieldDocs) results[i].topDocs;
+        }
+        return TopDocs.merge(sort, 0, numHits, shardDocs, true);
+    }
+
+    /**
+     * 把分片中的docId换算为MultiReader中的docId，用于读取文档
+     */
+    private static TopDocs rebase(TopDocs merged, int[] docStarts) {
+        ScoreDoc[] scoreDocs = new ScoreDoc[merged.scoreDocs.length];
+        for (int i = 0; i < scoreDocs.length; i++) {
+            ScoreDoc scoreDoc = merged.scoreDocs[i];
+            int doc = docStarts[scoreDoc.shardIndex] + scoreDoc.doc;
+            if (scoreDoc instanceof FieldDoc) {
+                scoreDocs[i] = new FieldDoc(doc, scoreDoc.score, ((FieldDoc) scoreDoc).fields, scoreDoc.shardIndex);
+            } else {
+                scoreDocs[i] = new ScoreDoc(doc, scoreDoc.score, scoreDoc.shardIndex);
+            }
+        }
+        if (merged instanceof TopFieldDocs) {
+            return new TopFieldDocs(merged.totalHits, scoreDocs, ((TopFieldDocs) merged).fields);
+        }
+        return new TopDocs(merged.totalHits, scoreDocs);
+    }
+
+    public int getNumberOfShards() {
+        return shards.length;
+    }
+
+    /**
+     * 关闭全部分片，不关闭查询线程池
+     */
+    public void close() throws LuceneException {
+        LuceneException failure = null;
+        for (MemoryIndex shard : shards) {
+            if (shard == null) {
+                continue;
+            }
+            try {
+                shard.close();
+            } catch (LuceneException ex) {
+                failure = ex;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * 按主键哈希路由到分片
+     */
+    private final class ShardRouter implements RoutedDataLoad.Router<Integer> {
+
+        private final String primaryName = indexConfig.getPrimaryField().getName();
+
+        @Override
+        public Integer route(Document document) {
+            return shardId(document.get(primaryName));
+        }
+
+        @Override
+        public Integer route(Map<String, Object> source) {
+            return shardId(StringUtil.conver2String(source.get(primaryName)));
+        }
+
+        private Integer shardId(String id) {
+            if (StringUtil.isEmpty(id)) {
+                throw new IllegalArgumentException("MemoryIndex insert/update must has primary field:" + primaryName);
+            }
+            return ShardedMemoryIndex.shardId(id, shards.length);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package org.lccy.lucene.memory.index.codec;
+
+import org.apache.lucene.codecs.*;
+import org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.StringHelper;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 主键字段的倒排格式，在默认倒排格式的基础上为每个段保存主键的布隆过滤器<br/>
+ * 更新、删除时IndexWriter需要在每个段的词典中查找主键，段越多开销越大；主键唯一，绝大多数段中都不存在，
+ * 布隆过滤器判断不存在时直接返回，不再读取词典<br/>
+ * 通过SPI注册（META-INF/services），读取已有的段时按名称加载
+ *
+ * @Date: 2026/10/17 19:10 <br>
+ * @author: liuchen11
+ */
+public final class PrimaryKeyPostingsFormat extends PostingsFormat {
+
+    public static final String NAME = "MemoryIndexPk";
+
+    private static final String BLOOM_CODEC = "MemoryIndexPkBloom";
+    private static final String BLOOM_EXTENSION = "pkb";
+    private static final int VERSION = 0;
+    // 每个主键10位、3个哈希函数，误判率约1%
+    private static final int BITS_PER_TERM = 10;
+    private static final int HASH_COUNT = 3;
+    private static final int SEED1 = 0x5f3759df;
+    private static final int SEED2 = 0x2545f491;
+
+    private final PostingsFormat delegate = new Lucene50PostingsFormat();
+
+    public PrimaryKeyPostingsFormat() {
+        super(NAME);
+    }
+
+    @Override
+    public FieldsConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+        return new BloomFieldsConsumer(delegate.fieldsConsumer(state), state);
+    }
+
+    @Override
+    public FieldsProducer fieldsProducer(SegmentReadState state) throws IOException {
+        FieldsProducer producer = delegate.fieldsProducer(state);
+        try {
+            return new BloomFieldsProducer(producer, state);
+        } catch (IOException | RuntimeException ex) {
+            IOUtils.closeWhileHandlingException(producer);
+            throw ex;
+        }
+    }
+
+    /**
+     * 单个字段的布隆过滤器
+     */
+    static final class BloomFilter {
+
+        private final long[] bits;
+        private final long mask;
+
+        BloomFilter(int maxTerms) {
+            long numBits = Math.max(64, Long.highestOneBit(Math.max(1L, (long) maxTerms * BITS_PER_TERM) - 1) << 1);
+            this.bits = new long[(int) (numBits >>> 6)];
+            this.mask = numBits - 1;
+        }
+
+        BloomFilter(long[] bits) {
+            this.bits = bits;
+            this.mask = ((long) bits.length << 6) - 1;
+        }
+
+        void add(BytesRef term) {
+            int h1 = StringHelper.murmurhash3_x86_32(term, SEED1);
+            int h2 = StringHelper.murmurhash3_x86_32(term, SEED2);
+            for (int i = 0; i < HASH_COUNT; i++) {
+                long bit = (h1 + (long) i * h2) & mask;
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        boolean mayContain(BytesRef term) {
+            int h1 = StringHelper.murmurhash3_x86_32(term, SEED1);
+            int h2 = StringHelper.murmurhash3_x86_32(term, SEED2);
+            for (int i = 0; i < HASH_COUNT; i++) {
+                long bit = (h1 + (long) i * h2) & mask;
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long ramBytesUsed() {
+            return RamUsageEstimator.sizeOf(bits);
+        }
+    }
+
+    private static final class BloomFieldsConsumer extends FieldsConsumer {
+
+        private final FieldsConsumer delegate;
+        private final SegmentWriteState state;
+
+        BloomFieldsConsumer(FieldsConsumer delegate, SegmentWriteState state) {
+            this.delegate = delegate;
+            this.state = state;
+        }
+
+        @Override
+        public void write(Fields fields, NormsProducer norms) throws IOException {
+            delegate.write(fields, norms);
+            Map<FieldInfo, BloomFilter> filters = new HashMap<>();
+            for (String field : fields) {
+                Terms terms = fields.terms(field);
+                if (terms == null) {
+                    continue;
+                }
+                // 主键唯一，段内的主键数不超过文档数
+                BloomFilter filter = new BloomFilter(state.segmentInfo.maxDoc());
+                TermsEnum termsEnum = terms.iterator();
+                PostingsEnum postings = null;
+                BytesRef term;
+                while ((term = termsEnum.next()) != null) {
+                    postings = termsEnum.postings(postings, PostingsEnum.NONE);
+                    if (postings.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                        filter.add(term);
+                    }
+                }
+                filters.put(state.fieldInfos.fieldInfo(field), filter);
+            }
+            String fileName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, BLOOM_EXTENSION);
+            try (IndexOutput out = state.directory.createOutput(fileName, state.context)) {
+                CodecUtil.writeIndexHeader(out, BLOOM_CODEC, VERSION, state.segmentInfo.getId(), state.segmentSuffix);
+                out.writeVInt(filters.size());
+                for (Map.Entry<FieldInfo, BloomFilter> entry : filters.entrySet()) {
+                    out.writeVInt(entry.getKey().number);
+                    long[] bits = entry.getValue().bits;
+                    out.writeVInt(bits.length);
+                    for (long word : bits) {
+                        out.writeLong(word);
+                    }
+                }
+                CodecUtil.writeFooter(out);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private static final class BloomFieldsProducer extends FieldsProducer {
+
+        private final FieldsProducer delegate;
+        private final Map<String, BloomFilter> filters = new HashMap<>();
+
+        BloomFieldsProducer(FieldsProducer delegate, SegmentReadState state) throws IOException {
+            this.delegate = delegate;
+            String fileName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, BLOOM_EXTENSION);
+            try (ChecksumIndexInput in = state.directory.openChecksumInput(fileName, IOContext.READONCE)) {
+                CodecUtil.checkIndexHeader(in, BLOOM_CODEC, VERSION, VERSION, state.segmentInfo.getId(), state.segmentSuffix);
+                int size = in.readVInt();
+                for (int i = 0; i < size; i++) {
+                    FieldInfo fieldInfo = state.fieldInfos.fieldInfo(in.readVInt());
+                    long[] bits = new long[in.readVInt()];
+                    for (int j = 0; j < bits.length; j++) {
+                        bits[j] = in.readLong();
+                    }
+                    filters.put(fieldInfo.name, new BloomFilter(bits));
+                }
+                CodecUtil.checkFooter(in);
+            }
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return delegate.iterator();
+        }
+
+        @Override
+        public Terms terms(String field) throws IOException {
+            Terms terms = delegate.terms(field);
+            BloomFilter filter = filters.get(field);
+            if (terms == null || filter == null) {
+                return terms;
+            }
+            return new FilterLeafReader.FilterTerms(terms) {
+                @Override
+                public TermsEnum iterator() throws IOException {
+                    return new BloomTermsEnum(in.iterator(), filter);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return delegate.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public void checkIntegrity() throws IOException {
+            delegate.checkIntegrity();
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            long size = delegate.ramBytesUsed();
+            for (BloomFilter filter : filters.values()) {
+                size += filter.ramBytesUsed();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * seekExact前先检查布隆过滤器
+     */
+    private static final class BloomTermsEnum extends FilterLeafReader.FilterTermsEnum {
+
+        private final BloomFilter filter;
+
+        BloomTermsEnum(TermsEnum in, BloomFilter filter) {
+            super(in);
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean seekExact(BytesRef text) throws IOException {
+            return filter.mayContain(text) && in.seekExact(text);
+        }
+    }
+}
@@ -1,24 +1,104 @@
 package org.lccy.lucene.memory.index.config;
 
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.similarities.BM25Similarity;
+import org.lccy.lucene.memory.index.mapping.IndexSettingMapping;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * SearcherManager调用，用于生成IndexSearcher
+ * 开启并行检索时，IndexSearcher使用注册中心的切片线程池，按segment切片后并行检索
  *
  * @Date: 2023/11/23 10:19 <br>
  * @author: liuchen11
  */
 public class CustomSearcherFactory extends SearcherFactory {
 
+    // 是否开启并行检索
+    private final boolean concurrentSearch;
+    // 每个切片的最大文档数
+    private final int sliceMaxDocs;
+    // 每个切片的最大segment数
+    private final int sliceMaxSegments;
+    // 切片线程池
+    private final ExecutorService sliceExecutor;
+
+    public CustomSearcherFactory() {
+        this.concurrentSearch = false;
+        this.sliceMaxDocs = 0;
+        this.sliceMaxSegments = 0;
+        this.sliceExecutor = null;
+    }
+
+    /**
+     * @param setting       索引配置
+     * @param sliceExecutor 切片线程池，开启并行检索时必须设置，由调用方关闭
+     */
+    public CustomSearcherFactory(IndexSettingMapping setting, ExecutorService sliceExecutor) {
+        if (setting.isConcurrentSearch() && (setting.getSearchSliceMaxDocs() <= 0 || setting.getSearchSliceMaxSegments() <= 0)) {
+            throw new IllegalArgumentException("searchSliceMaxDocs and searchSliceMaxSegments must be greater than 0");
+        }
+        if (setting.isConcurrentSearch() && sliceExecutor == null) {
+            throw new IllegalArgumentException("concurrentSearch must set slice executor");
+        }
+        this.concurrentSearch = setting.isConcurrentSearch();
+        this.sliceMaxDocs = setting.getSearchSliceMaxDocs();
+        this.sliceMaxSegments = setting.getSearchSliceMaxSegments();
+        this.sliceExecutor = sliceExecutor;
+    }
+
     @Override
     public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
-        IndexSearcher searcher = super.newSearcher(reader, previousReader);
+        IndexSearcher searcher;
+        if (concurrentSearch) {
+            // IndexSearcher在构造方法中切片，匿名类引用的局部变量在父类构造方法之前赋值
+            final int maxDocs = sliceMaxDocs;
+            final int maxSegments = sliceMaxSegments;
+            searcher = new IndexSearcher(reader, sliceExecutor) {
+                @Override
+                protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+                    return contiguousSlices(leaves, maxDocs, maxSegments);
+                }
+            };
+        } else {
+            searcher = super.newSearcher(reader, previousReader);
+        }
         searcher.setSimilarity(new BM25Similarity());
         return searcher;
     }
+
+    /**
+     * 按docId顺序把相邻的segment划分到同一个切片，文档数或segment数达到上限时开始新的切片。
+     * 切片之间保持docId的顺序，合并各切片的topN时，分值/排序值相同的文档仍然按docId排序，与串行检索以及深度分页一致
+     *
+     * @param leaves      所有segment，按docBase升序
+     * @param maxDocs     每个切片的最大文档数
+     * @param maxSegments 每个切片的最大segment数
+     * @return
+     */
+    public static IndexSearcher.LeafSlice[] contiguousSlices(List<LeafReaderContext> leaves, int maxDocs, int maxSegments) {
+        List<IndexSearcher.LeafSlice> slices = new ArrayList<>();
+        List<LeafReaderContext> group = new ArrayList<>();
+        long docCount = 0;
+        for (LeafReaderContext leaf : leaves) {
+            group.add(leaf);
+            docCount += leaf.reader().maxDoc();
+            if (docCount >= maxDocs || group.size() >= maxSegments) {
+                slices.add(new IndexSearcher.LeafSlice(group.toArray(new LeafReaderContext[0])));
+                group.clear();
+                docCount = 0;
+            }
+        }
+        if (!group.isEmpty()) {
+            slices.add(new IndexSearcher.LeafSlice(group.toArray(new LeafReaderContext[0])));
+        }
+        return slices.toArray(new IndexSearcher.LeafSlice[0]);
+    }
 }
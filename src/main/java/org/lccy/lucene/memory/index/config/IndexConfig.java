@@ -1,17 +1,25 @@
 package org.lccy.lucene.memory.index.config;
 
+import com.alibaba.fastjson.JSON;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.lucene80.Lucene80Codec;
+import org.lccy.lucene.memory.builder.DocumentPlan;
 import org.lccy.lucene.memory.constants.Constants;
 import org.lccy.lucene.memory.constants.FieldTypeEnum;
+import org.lccy.lucene.memory.index.codec.PrimaryKeyPostingsFormat;
 import org.lccy.lucene.memory.index.mapping.IndexFieldMapping;
 import org.lccy.lucene.memory.index.mapping.IndexSettingMapping;
 import org.lccy.lucene.memory.util.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -28,9 +36,17 @@ public class IndexConfig {
     protected IndexSettingMapping indexSetting;
     protected IndexFieldMapping primaryField;
     protected IndexFieldMapping defaultField;
+    protected DocumentPlan documentPlan;
+    protected Codec codec;
+    // 未保存的字段，局部更新时无法从已有文档中还原
+    protected List<String> unstoredFields;
+    // 过期时间字段，没有时为null
+    protected IndexFieldMapping expiryField;
+    // 初始化时的字段映射
+    protected List<IndexFieldMapping> fieldMappings;
 
     public IndexConfig() {
-        this.defaultField = new IndexFieldMapping(null, false, FieldTypeEnum.STORE, null, null, null, false, true, true);
+        this.defaultField = new IndexFieldMapping(null, false, FieldTypeEnum.STORE, null, null, null, false, true, true, false, false, false);
     }
 
     /**
@@ -40,12 +56,30 @@ public class IndexConfig {
      */
     public void init(IndexSettingMapping indexSetting, List<IndexFieldMapping> fieldMappings) {
         this.indexSetting = indexSetting;
+        this.fieldMappings = fieldMappings;
         this.fieldConfigMap = new ConcurrentHashMap<>();
+        this.unstoredFields = new ArrayList<>();
+        this.expiryField = null;
         for (IndexFieldMapping field : fieldMappings) {
             if(FieldTypeEnum.KEYWORD == field.getType()) {
                 field.setDocValue(true);
             }
+            if (field.isDocValueOnly() && !field.canDocValueOnly()) {
+                throw new IllegalArgumentException("Only long | float | double | date field support docValueOnly, field:" + field.getName());
+            }
+            if (field.isExpiry()) {
+                if (!field.canExpiry()) {
+                    throw new IllegalArgumentException("Only long | date field without docValueOnly support expiry, field:" + field.getName());
+                }
+                if (this.expiryField != null) {
+                    throw new IllegalArgumentException("MemoryIndex can only has one expiry field, field:" + field.getName());
+                }
+                this.expiryField = field;
+            }
             fieldConfigMap.put(field.getName(), field);
+            if (!field.isStore() && !field.isDocValueOnly()) {
+                unstoredFields.add(field.getName());
+            }
             if (field.isPrimary()) {
                 this.primaryField = field;
             }
@@ -56,6 +90,64 @@ public class IndexConfig {
         if (FieldTypeEnum.KEYWORD != this.primaryField.getType()) {
             throw new IllegalArgumentException("The type of primary key must be keyword");
         }
+        this.documentPlan = new DocumentPlan(this, fieldMappings);
+        this.codec = createCodec();
+    }
+
+    /**
+     * 主键开启布隆过滤时，主键字段使用{@link PrimaryKeyPostingsFormat}，其他字段使用默认格式
+     */
+    private Codec createCodec() {
+        if (!this.primaryField.isBloomFilter()) {
+            return Codec.getDefault();
+        }
+        String primaryName = this.primaryField.getName();
+        PostingsFormat primaryFormat = new PrimaryKeyPostingsFormat();
+        return new Lucene80Codec() {
+            @Override
+            public PostingsFormat getPostingsFormatForField(String field) {
+                return primaryName.equals(field) ? primaryFormat : super.getPostingsFormatForField(field);
+            }
+        };
+    }
+
+    /**
+     * 未保存的字段，局部更新时必须给出这些字段
+     *
+     * @return
+     */
+    public List<String> getUnstoredFields() {
+        return unstoredFields;
+    }
+
+    /**
+     * 使用相同的字段映射、不同的索引设置创建新的配置
+     *
+     * @param indexSetting 索引设置
+     * @return
+     */
+    public IndexConfig copy(IndexSettingMapping indexSetting) {
+        IndexConfig copy = new IndexConfig();
+        copy.init(indexSetting, new ArrayList<>(fieldMappings));
+        return copy;
+    }
+
+    /**
+     * 过期时间字段
+     *
+     * @return 没有配置时返回null
+     */
+    public IndexFieldMapping getExpiryField() {
+        return expiryField;
+    }
+
+    /**
+     * IndexWriter使用的编码
+     *
+     * @return
+     */
+    public Codec getCodec() {
+        return codec;
     }
 
     /**
@@ -91,6 +183,24 @@ public class IndexConfig {
         return this.fieldConfigMap.containsKey(fieldName);
     }
 
+    /**
+     * 未配置字段使用的缺省字段配置
+     *
+     * @return
+     */
+    public IndexFieldMapping getDefaultField() {
+        return defaultField;
+    }
+
+    /**
+     * 获取初始化时编译的文档构造计划
+     *
+     * @return
+     */
+    public DocumentPlan getDocumentPlan() {
+        return documentPlan;
+    }
+
     /**
      * 获取主键配置
      *
@@ -109,12 +219,21 @@ public class IndexConfig {
         return indexSetting;
     }
 
+    /**
+     * 字段映射签名，映射相同时签名相同，用于判断快照等已构建的索引是否可以继续使用
+     *
+     * @return
+     */
+    public String mappingSignature() {
+        return Integer.toHexString(JSON.toJSONString(new TreeMap<>(fieldConfigMap)).hashCode());
+    }
+
     /**
      * 是否是系统预留字段
      * @param fieldName
      * @return
      */
     public boolean isSystemKeyword(String fieldName) {
-        return Constants._ID.equals(fieldName) || Constants._SCORE.equals(fieldName);
+        return Constants._ID.equals(fieldName) || Constants._SCORE.equals(fieldName) || Constants._HASH.equals(fieldName);
     }
 }
@@ -47,6 +47,13 @@ public class IndexFieldMapping {
     private boolean defaultFd = false;
     // 是否保存字段（默认保存）
     private boolean store = true;
+    // 主键是否使用带布隆过滤器的倒排格式（默认开启，只对主键生效），更新、删除、按主键查询时跳过不包含该主键的段
+    private boolean bloomFilter = true;
+    // 是否只保存DocValues（默认关闭，只对long、float、double、date生效），开启后不建立点索引、不保存字段，
+    // 范围查询和返回结果读取DocValues，局部更新时直接更新DocValues，不重新构造文档
+    private boolean docValueOnly = false;
+    // 是否是过期时间字段（默认关闭，只对long(毫秒时间戳)、date生效，最多一个），过期的文档查询时被过滤，并由后台任务定期删除
+    private boolean expiry = false;
 
     /**
      * 获取字段存储分词器
@@ -111,6 +118,30 @@ public class IndexFieldMapping {
         return result;
     }
 
+    /**
+     * 字段类型是否可以作为过期时间
+     * @return
+     */
+    public boolean canExpiry() {
+        return (type == FieldTypeEnum.DATE || type == FieldTypeEnum.LONG) && !docValueOnly;
+    }
+
+    /**
+     * 字段类型是否支持只保存DocValues
+     * @return
+     */
+    public boolean canDocValueOnly() {
+        switch (type) {
+            case DATE:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     /**
      * 字段是否支持排序
      * @return
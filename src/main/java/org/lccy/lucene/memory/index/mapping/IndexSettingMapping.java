@@ -2,6 +2,9 @@ package org.lccy.lucene.memory.index.mapping;
 
 import lombok.Getter;
 import lombok.Setter;
+import com.alibaba.fastjson.JSON;
+import org.lccy.lucene.memory.constants.PartitionIntervalEnum;
+import org.lccy.lucene.memory.constants.StoreTypeEnum;
 
 /**
  * 类名称： <br>
@@ -18,4 +21,66 @@ public class IndexSettingMapping {
     private long refreshInterval = 30000l;
 
     private boolean dynamicsMapping = true;
+
+    // 索引文件存储方式：heap（默认）、direct（堆外直接内存）、mmap（内存映射文件）
+    private StoreTypeEnum storeType = StoreTypeEnum.HEAP;
+    // storeType=mmap/hybrid时索引文件的本地路径，mmap建议使用tmpfs，只能由一个索引使用
+    private String storePath;
+    // storeType=hybrid时缓存在内存中的段的最大大小(MB)，更大的flush、合并直接写入磁盘
+    private double nrtCacheMaxMergeSizeMB = 5.0;
+    // storeType=hybrid时内存缓存的最大总大小(MB)
+    private double nrtCacheMaxCachedMB = 60.0;
+
+    // 是否计算文档的内容哈希，内容未变化的插入/更新直接跳过，不重新构造、写入文档
+    private boolean noopDetection = false;
+    // 定时删除过期文档的间隔(ms)，不大于0时不定时删除，过期的文档只在查询时被过滤
+    private long expiryInterval = 60000l;
+    // 异步写入队列容量
+    private int writeQueueSize = 10000;
+    // 异步写入单批次最大操作数
+    private int writeBatchSize = 500;
+    // 异步写入队列已满时的最大等待时间(ms)，超时拒绝
+    private long writeQueueTimeout = 1000l;
+
+    // 导入、重新导入时的索引线程数，默认单线程
+    private int indexThreads = 1;
+    // 导入、重新导入时IndexWriter的内存缓冲区大小(MB)
+    private double bulkRamBufferSizeMB = 256.0;
+    // 导入、重新导入完成后合并到的最大段数，不大于0时不合并
+    private int bulkMaxMergeSegments = 0;
+
+    // 快照保存的本地路径，为空时不使用快照
+    private String snapshotPath;
+    // 定时快照间隔(ms)，不大于0时只能手动快照
+    private long snapshotInterval = 0l;
+    // 启动时是否从快照恢复
+    private boolean snapshotRestore = true;
+
+    // 分区字段（date类型），只对PartitionedMemoryIndex生效，按该字段的时间把文档写入不同的分区
+    private String partitionField;
+    // 分区的时间间隔：day（默认）、week、month
+    private PartitionIntervalEnum partitionInterval = PartitionIntervalEnum.DAY;
+    // 最多保留的分区数，超过时关闭最早的分区，不大于0时不限制
+    private int maxPartitions = 0;
+    // 分片数，只对ShardedMemoryIndex生效，按主键哈希把文档写入不同的分片，查询时并行查询各分片
+    private int numberOfShards = 1;
+    // 是否开启单个查询的并行检索：按segment切片后在注册中心的切片线程池中并行收集topN和分组，默认关闭
+    private boolean concurrentSearch = false;
+    // 并行检索时每个切片的最大文档数
+    private int searchSliceMaxDocs = 250000;
+    // 并行检索时每个切片的最大segment数
+    private int searchSliceMaxSegments = 5;
+    // 写操作日志的本地路径，为空时不记录日志
+    private String translogPath;
+    // 日志fsync间隔(ms)，不大于0时写操作返回前fsync
+    private long translogSyncInterval = 0l;
+
+    /**
+     * 复制索引设置
+     *
+     * @return
+     */
+    public IndexSettingMapping copy() {
+        return JSON.parseObject(JSON.toJSONString(this), IndexSettingMapping.class);
+    }
 }
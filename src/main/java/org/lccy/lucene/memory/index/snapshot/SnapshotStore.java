@@ -0,0 +1,164 @@
+package org.lccy.lucene.memory.index.snapshot;
+
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexNotFoundException;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 索引快照的本地存储<br/>
+ * 每次快照把提交点引用的段文件复制到新的快照目录，fsync后再原子地切换latest指针文件，并删除旧的快照目录，
+ * 写入过程中宕机时latest仍然指向上一次完整的快照<br/>
+ * 恢复时直接把段文件复制到内存目录，不需要重新分词
+ *
+ * @Date: 2026/10/17 17:30 <br>
+ * @author: liuchen11
+ */
+public class SnapshotStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+
+    // 提交数据中记录的字段映射签名，映射变更后快照不能再使用
+    public static final String MAPPING_SIGNATURE = "memory_index.mapping";
+
+    private static final String LATEST = "latest";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private final Path root;
+
+    public SnapshotStore(Path root) {
+        this.root = root;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * 把提交点的文件复制为新的快照
+     *
+     * @param source 索引目录
+     * @param commit 已通过SnapshotDeletionPolicy保留的提交点
+     * @return 快照目录
+     * @throws IOException
+     */
+    public Path write(Directory source, IndexCommit commit) throws IOException {
+        Files.createDirectories(root);
+        String name = SNAPSHOT_PREFIX + commit.getGeneration() + "-" + System.currentTimeMillis();
+        Path target = root.resolve(name);
+        try {
+            try (FSDirectory snapshotDir = FSDirectory.open(target)) {
+                Collection<String> files = commit.getFileNames();
+                for (String file : files) {
+                    snapshotDir.copyFrom(source, file, file, IOContext.DEFAULT);
+                }
+                snapshotDir.sync(files);
+                snapshotDir.syncMetaData();
+            }
+            switchLatest(name);
+        } catch (IOException | RuntimeException ex) {
+            IOUtils.rm(target);
+            throw ex;
+        }
+        deleteExcept(name);
+        return target;
+    }
+
+    /**
+     * 最近一次完整的快照目录
+     *
+     * @return 不存在时返回null
+     */
+    public Path latest() throws IOException {
+        Path latest = root.resolve(LATEST);
+        if (!Files.exists(latest)) {
+            return null;
+        }
+        String name = new String(Files.readAllBytes(latest), StandardCharsets.UTF_8).trim();
+        Path snapshot = root.resolve(name);
+        return Files.isDirectory(snapshot) ? snapshot : null;
+    }
+
+    /**
+     * 读取最近一次快照的提交数据
+     *
+     * @return 没有快照时返回null
+     */
+    public Map<String, String> readUserData() throws IOException {
+        Path snapshot = latest();
+        if (snapshot == null) {
+            return null;
+        }
+        try (FSDirectory snapshotDir = FSDirectory.open(snapshot)) {
+            return SegmentInfos.readLatestCommit(snapshotDir).getUserData();
+        } catch (IndexNotFoundException ex) {
+            logger.warn("MemoryIndex snapshot is broken, path:{}", snapshot);
+            return null;
+        }
+    }
+
+    /**
+     * 把最近一次快照的文件复制到目标目录
+     *
+     * @param target 空的索引目录
+     * @return 复制的字节数
+     * @throws IOException
+     */
+    public long restore(Directory target) throws IOException {
+        Path snapshot = latest();
+        if (snapshot == null) {
+            throw new NoSuchFileException(root.resolve(LATEST).toString());
+        }
+        long bytes = 0;
+        try (FSDirectory snapshotDir = FSDirectory.open(snapshot)) {
+            for (String file : snapshotDir.listAll()) {
+                target.copyFrom(snapshotDir, file, file, IOContext.READONCE);
+                bytes += snapshotDir.fileLength(file);
+            }
+        }
+        return bytes;
+    }
+
+    private void switchLatest(String name) throws IOException {
+        Path tmp = root.resolve(LATEST + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(name.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, root.resolve(LATEST), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        IOUtils.fsync(root, true);
+    }
+
+    private void deleteExcept(String name) {
+        List<Path> expired = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, SNAPSHOT_PREFIX + "*")) {
+            for (Path path : stream) {
+                if (!path.getFileName().toString().equals(name)) {
+                    expired.add(path);
+                }
+            }
+            IOUtils.rm(expired.toArray(new Path[0]));
+        } catch (IOException ex) {
+            logger.warn("MemoryIndex delete expired snapshot error:{}", ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.lccy.lucene.memory.index.store;
+
+import org.apache.lucene.store.*;
+import org.apache.lucene.util.IOUtils;
+import org.lccy.lucene.memory.constants.StoreTypeEnum;
+import org.lccy.lucene.memory.index.mapping.IndexSettingMapping;
+import org.lccy.lucene.memory.util.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 根据索引配置的storeType创建索引代的Directory<br/>
+ * heap：堆内存ByteBuffersDirectory；direct：使用直接内存分配块的ByteBuffersDirectory；
+ * mmap：storePath下每个索引代一个子目录的MMapDirectory，索引代关闭时删除；
+ * hybrid：在mmap的基础上使用NRTCachingDirectory把新flush的小段缓存在堆内存，合并后的大段写入磁盘
+ *
+ * @Date: 2026/10/17 18:45 <br>
+ * @author: liuchen11
+ */
+public class DirectoryFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryFactory.class);
+
+    private static final String GENERATION_PREFIX = "index-";
+
+    private final StoreTypeEnum storeType;
+    private final Path storePath;
+    private final double maxMergeSizeMB;
+    private final double maxCachedMB;
+    private final AtomicLong counter = new AtomicLong();
+
+    public DirectoryFactory(IndexSettingMapping indexSetting) {
+        this.storeType = indexSetting.getStoreType() == null ? StoreTypeEnum.HEAP : indexSetting.getStoreType();
+        this.maxMergeSizeMB = indexSetting.getNrtCacheMaxMergeSizeMB();
+        this.maxCachedMB = indexSetting.getNrtCacheMaxCachedMB();
+        if (storeType == StoreTypeEnum.MMAP || storeType == StoreTypeEnum.HYBRID) {
+            if (StringUtil.isEmpty(indexSetting.getStorePath())) {
+                throw new IllegalArgumentException("MemoryIndex storePath must set when storeType is " + storeType.getName());
+            }
+            this.storePath = Paths.get(indexSetting.getStorePath());
+            deleteStale();
+        } else {
+            this.storePath = null;
+        }
+    }
+
+    public StoreTypeEnum getStoreType() {
+        return storeType;
+    }
+
+    /**
+     * 创建新的索引代使用的Directory
+     *
+     * @return
+     * @throws IOException
+     */
+    public Directory newDirectory() throws IOException {
+        switch (storeType) {
+            case DIRECT:
+                return new ByteBuffersDirectory(new SingleInstanceLockFactory(),
+                        () -> new ByteBuffersDataOutput(ByteBuffersDataOutput.DEFAULT_MIN_BITS_PER_BLOCK,
+                                ByteBuffersDataOutput.DEFAULT_MAX_BITS_PER_BLOCK, ByteBuffer::allocateDirect, ByteBuffersDataOutput.NO_REUSE),
+                        ByteBuffersDirectory.OUTPUT_AS_MANY_BUFFERS);
+            case MMAP:
+                Path path = newGenerationPath();
+                return new DeleteOnCloseDirectory(new MMapDirectory(path), path);
+            case HYBRID:
+                Path hybridPath = newGenerationPath();
+                return new DeleteOnCloseDirectory(new NRTCachingDirectory(new MMapDirectory(hybridPath), maxMergeSizeMB, maxCachedMB), hybridPath);
+            default:
+                return new ByteBuffersDirectory();
+        }
+    }
+
+    /**
+     * 索引文件占用的堆内存，其余部分在堆外（直接内存、内存映射文件）
+     *
+     * @param directory 索引代的Directory
+     * @param sizeInBytes 索引文件总大小
+     * @return
+     */
+    public long heapBytes(Directory directory, long sizeInBytes) {
+        if (storeType == StoreTypeEnum.HEAP) {
+            return sizeInBytes;
+        }
+        while (directory instanceof FilterDirectory) {
+            if (directory instanceof NRTCachingDirectory) {
+                NRTCachingDirectory cache = (NRTCachingDirectory) directory;
+                long cached = 0;
+                for (String file : cache.listCachedFiles()) {
+                    try {
+                        cached += cache.fileLength(file);
+                    } catch (IOException e) {
+                    }
+                }
+                return Math.min(cached, sizeInBytes);
+            }
+            directory = ((FilterDirectory) directory).getDelegate();
+        }
+        return 0;
+    }
+
+    /**
+     * 索引文件总大小，统计期间被合并删除的文件忽略
+     */
+    public static long sizeInBytes(Directory directory) {
+        long size = 0;
+        try {
+            for (String file : directory.listAll()) {
+                try {
+                    size += directory.fileLength(file);
+                } catch (NoSuchFileException | java.io.FileNotFoundException e) {
+                }
+            }
+        } catch (IOException | AlreadyClosedException e) {
+            logger.warn("MemoryIndex directory size error:{}", e.getMessage());
+        }
+        return size;
+    }
+
+    private Path newGenerationPath() throws IOException {
+        Path path = storePath.resolve(GENERATION_PREFIX + System.currentTimeMillis() + "-" + counter.incrementAndGet());
+        Files.createDirectories(path);
+        return path;
+    }
+
+    /**
+     * 删除上次运行遗留的索引代目录，storePath只能由一个MemoryIndex使用
+     */
+    private void deleteStale() {
+        if (!Files.isDirectory(storePath)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(storePath, GENERATION_PREFIX + "*")) {
+            for (Path path : stream) {
+                IOUtils.rm(path);
+            }
+        } catch (IOException e) {
+            logger.warn("MemoryIndex delete stale store error:{}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 关闭时删除索引代目录
+     */
+    private static final class DeleteOnCloseDirectory extends FilterDirectory {
+
+        private final Path path;
+
+        DeleteOnCloseDirectory(Directory in, Path path) {
+            super(in);
+            this.path = path;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                IOUtils.rm(path);
+            }
+        }
+    }
+}
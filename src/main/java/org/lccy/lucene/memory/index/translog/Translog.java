@@ -0,0 +1,414 @@
+package org.lccy.lucene.memory.index.translog;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.apache.lucene.util.IOUtils;
+import org.lccy.lucene.memory.exception.LuceneException;
+import org.lccy.lucene.memory.index.write.WriteOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.zip.CRC32;
+
+/**
+ * 写操作的追加日志（translog），用于重启后恢复增量写入，避免从数据源全量重新导入<br/>
+ * 写操作先写入内存缓冲，{@link #sync()}时写入FileChannel并fsync，多个写操作共用一次fsync；
+ * 每条记录为[长度][内容][CRC32]，重放时遇到不完整或校验失败的记录即停止读取该文件<br/>
+ * 日志按代（generation）分文件，快照、重新导入后滚动到新的代，检查点之前的代可以删除
+ *
+ * @Date: 2026/10/17 18:20 <br>
+ * @author: liuchen11
+ */
+public class Translog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Translog.class);
+
+    // 提交数据中记录的日志代，重放时从该代开始
+    public static final String TRANSLOG_GENERATION = "memory_index.translog_generation";
+
+    private static final String FILE_PREFIX = "translog-";
+    private static final String FILE_SUFFIX = ".tlog";
+    private static final String CHECKPOINT = "translog.ckp";
+    private static final int MAGIC = 0x4d49544c;
+    // 缓冲超过该大小时写入FileChannel（不fsync）
+    private static final int FLUSH_BYTES = 64 * 1024;
+
+    /**
+     * 重放写操作
+     */
+    public interface OperationHandler {
+        void apply(WriteOperation operation) throws IOException;
+    }
+
+    private final Path root;
+    // 锁顺序：syncLock -> this
+    private final Object syncLock = new Object();
+    private final ByteBuffersDataOutput scratch = ByteBuffersDataOutput.newResettableInstance();
+    private final ByteBuffersDataOutput pending = ByteBuffersDataOutput.newResettableInstance();
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private long generation;
+    private long minGeneration;
+    // 已追加的总字节数，作为写操作的位置
+    private long location;
+    // 当前代开始时的位置
+    private long generationStart;
+    private volatile long syncedLocation;
+    private boolean closed;
+
+    private Translog(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * 打开日志目录，删除检查点之前的代，并创建新的代用于写入，已有的代只用于重放
+     *
+     * @param root 日志目录
+     * @return
+     * @throws IOException
+     */
+    public static Translog open(Path root) throws IOException {
+        Files.createDirectories(root);
+        Translog translog = new Translog(root);
+        long minGeneration = translog.readCheckpoint();
+        long maxGeneration = minGeneration - 1;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path path : stream) {
+                long generation = parseGeneration(path);
+                if (generation < minGeneration) {
+                    IOUtils.rm(path);
+                } else {
+                    maxGeneration = Math.max(maxGeneration, generation);
+                }
+            }
+        }
+        translog.minGeneration = minGeneration;
+        translog.generation = maxGeneration + 1;
+        translog.channel = translog.create(translog.generation);
+        return translog;
+    }
+
+    /**
+     * 追加写操作，只写入缓冲
+     *
+     * @param operation
+     * @return 写操作的位置，用于{@link #ensureSynced(long)}
+     * @throws IOException
+     */
+    public synchronized long add(WriteOperation operation) throws IOException {
+        ensureOpen();
+        scratch.reset();
+        scratch.writeByte((byte) operation.getOpType().ordinal());
+        scratch.writeString(operation.getId());
+        if (operation.getOpType() != WriteOperation.OpType.DELETE) {
+            TranslogDocumentCodec.write(scratch, operation.getDocument());
+        }
+        byte[] bytes = scratch.toArrayCopy();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        pending.writeInt(bytes.length);
+        pending.writeBytes(bytes, 0, bytes.length);
+        pending.writeInt((int) crc.getValue());
+        location += bytes.length + 8;
+        if (pending.size() >= FLUSH_BYTES) {
+            flushPending();
+        }
+        return location;
+    }
+
+    /**
+     * 确保指定位置之前的写操作已经fsync，已被其他线程fsync时直接返回
+     *
+     * @param target {@link #add(WriteOperation)}返回的位置
+     * @throws IOException
+     */
+    public void ensureSynced(long target) throws IOException {
+        if (target > syncedLocation) {
+            sync();
+        }
+    }
+
+    /**
+     * 写入缓冲并fsync，等待中的写操作共用一次fsync
+     *
+     * @throws IOException
+     */
+    public void sync() throws IOException {
+        synchronized (syncLock) {
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                flushPending();
+                target = location;
+                current = channel;
+            }
+            if (target > syncedLocation) {
+                current.force(false);
+                syncedLocation = target;
+            }
+        }
+    }
+
+    /**
+     * 滚动到新的代，之后的写操作写入新的代
+     *
+     * @return 新的代
+     * @throws IOException
+     */
+    public long rollGeneration() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                ensureOpen();
+                flushPending();
+                channel.force(false);
+                channel.close();
+                syncedLocation = location;
+                generation++;
+                channel = create(generation);
+                generationStart = location;
+                return generation;
+            }
+        }
+    }
+
+    /**
+     * 保存检查点并删除指定代之前的日志
+     *
+     * @param checkpoint 之前的写操作已经保存到快照或数据源
+     * @throws IOException
+     */
+    public void trimBelow(long checkpoint) throws IOException {
+        long trimmed;
+        synchronized (this) {
+            ensureOpen();
+            checkpoint = Math.min(checkpoint, generation);
+            if (checkpoint <= minGeneration) {
+                return;
+            }
+            writeCheckpoint(checkpoint);
+            trimmed = minGeneration;
+            minGeneration = checkpoint;
+        }
+        for (long gen = trimmed; gen < checkpoint; gen++) {
+            IOUtils.deleteFilesIgnoringExceptions(path(gen));
+        }
+    }
+
+    /**
+     * 按顺序重放打开日志之前写入的写操作
+     *
+     * @param fromGeneration 从该代开始重放
+     * @param handler
+     * @return 重放的写操作数
+     * @throws IOException
+     */
+    public long replay(long fromGeneration, OperationHandler handler) throws IOException {
+        long count = 0;
+        long current;
+        synchronized (this) {
+            fromGeneration = Math.max(fromGeneration, minGeneration);
+            current = generation;
+        }
+        for (long gen = fromGeneration; gen < current; gen++) {
+            Path path = path(gen);
+            if (Files.exists(path)) {
+                count += replay(path, gen, handler);
+            }
+        }
+        return count;
+    }
+
+    private long replay(Path path, long gen, OperationHandler handler) throws IOException {
+        long count = 0;
+        // 文件头之后剩余的字节数，记录长度不能超过剩余的内容
+        long remaining = Files.size(path) - 12;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            try {
+                if (in.readInt() != MAGIC || in.readLong() != gen) {
+                    logger.warn("MemoryIndex translog header is broken, skip:{}", path);
+                    return 0;
+                }
+            } catch (EOFException e) {
+                return 0;
+            }
+            ByteArrayDataInput input = new ByteArrayDataInput();
+            CRC32 checksumCrc = new CRC32();
+            byte[] bytes = new byte[256];
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    if (length < 0) {
+                        logger.warn("MemoryIndex translog record is broken, path:{}, operations:{}", path, count);
+                        break;
+                    }
+                    if (length > remaining - 8) {
+                        // 最后一条记录未写完整，或长度已经损坏，不按该长度分配缓冲
+                        logger.warn("MemoryIndex translog record is incomplete, path:{}, operations:{}, length:{}",
+                                path, count, length);
+                        break;
+                    }
+                    remaining -= length + 8L;
+                    if (length > bytes.length) {
+                        bytes = new byte[length];
+                    }
+                    in.readFully(bytes, 0, length);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    // 最后一条记录未写完整
+                    break;
+                }
+                checksumCrc.reset();
+                checksumCrc.update(bytes, 0, length);
+                if ((int) checksumCrc.getValue() != checksum) {
+                    logger.warn("MemoryIndex translog checksum error, path:{}, operations:{}", path, count);
+                    break;
+                }
+                input.reset(bytes, 0, length);
+                handler.apply(read(input));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static WriteOperation read(ByteArrayDataInput input) throws IOException {
+        WriteOperation.OpType opType = WriteOperation.OpType.values()[input.readByte()];
+        String id = input.readString();
+        if (opType == WriteOperation.OpType.DELETE) {
+            return WriteOperation.delete(id);
+        }
+        Document document = TranslogDocumentCodec.read(input);
+        if (opType == WriteOperation.OpType.UPDATE_DOC_VALUES) {
+            return WriteOperation.updateDocValues(id, document);
+        }
+        return WriteOperation.index(id, document);
+    }
+
+    /**
+     * 最后一个写操作的位置
+     */
+    public synchronized long lastLocation() {
+        return location;
+    }
+
+    public synchronized long currentGeneration() {
+        return generation;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    private void flushPending() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        for (ByteBuffer buffer : pending.toBufferList()) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        pending.reset();
+    }
+
+    private FileChannel create(long gen) throws IOException {
+        FileChannel created = FileChannel.open(path(gen), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(12);
+            header.putInt(MAGIC).putLong(gen).flip();
+            while (header.hasRemaining()) {
+                created.write(header);
+            }
+            created.force(true);
+            IOUtils.fsync(root, true);
+            return created;
+        } catch (IOException | RuntimeException ex) {
+            IOUtils.closeWhileHandlingException(created);
+            throw ex;
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path checkpoint = root.resolve(CHECKPOINT);
+        if (!Files.exists(checkpoint)) {
+            return 1;
+        }
+        return Long.parseLong(new String(Files.readAllBytes(checkpoint), StandardCharsets.UTF_8).trim());
+    }
+
+    private void writeCheckpoint(long checkpoint) throws IOException {
+        Path tmp = root.resolve(CHECKPOINT + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Long.toString(checkpoint).getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(tmp, root.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        IOUtils.fsync(root, true);
+    }
+
+    private Path path(long gen) {
+        return root.resolve(FILE_PREFIX + gen + FILE_SUFFIX);
+    }
+
+    private static long parseGeneration(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new LuceneException("MemoryIndex translog is closed.");
+        }
+    }
+
+    /**
+     * 关闭日志，当前代还没有写入任何写操作时同时删除该代的文件<br/>
+     * 用于打开后没有使用的日志（如索引构造失败），不会每次失败都留下一个空的日志代
+     *
+     * @throws IOException
+     */
+    public void closeAndDeleteUnused() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                boolean unused = !closed && location == generationStart;
+                close();
+                if (unused) {
+                    IOUtils.deleteFilesIgnoringExceptions(path(generation));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    flushPending();
+                    channel.force(false);
+                } finally {
+                    channel.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package org.lccy.lucene.memory.index.translog;
+
+import org.apache.lucene.document.*;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.IndexableFieldType;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.lccy.lucene.memory.exception.LuceneException;
+
+import java.io.IOException;
+
+/**
+ * 操作日志中Lucene文档的序列化<br/>
+ * 按Field的FieldType保存（点、DocValues、倒排/存储），重放时还原为等价的Field，不依赖文档的构造方式
+ *
+ * @Date: 2026/10/17 18:10 <br>
+ * @author: liuchen11
+ */
+final class TranslogDocumentCodec {
+
+    private static final byte POINT = 1;
+    private static final byte DOC_VALUES = 2;
+    private static final byte FIELD = 3;
+
+    private static final byte STRING = 1;
+    private static final byte BINARY = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte FLOAT = 5;
+    private static final byte DOUBLE = 6;
+
+    private static final DocValuesType[] DOC_VALUES_TYPES = DocValuesType.values();
+    private static final IndexOptions[] INDEX_OPTIONS = IndexOptions.values();
+
+    private TranslogDocumentCodec() {
+    }
+
+    static void write(DataOutput out, Document document) throws IOException {
+        out.writeVInt(document.getFields().size());
+        for (IndexableField field : document) {
+            IndexableFieldType type = field.fieldType();
+            out.writeString(field.name());
+            if (type.pointDataDimensionCount() > 0) {
+                out.writeByte(POINT);
+                out.writeVInt(type.pointDataDimensionCount());
+                out.writeVInt(type.pointIndexDimensionCount());
+                out.writeVInt(type.pointNumBytes());
+                writeBytes(out, field.binaryValue());
+            } else if (type.docValuesType() != DocValuesType.NONE) {
+                if (type.stored() || type.indexOptions() != IndexOptions.NONE) {
+                    throw unsupported(field);
+                }
+                out.writeByte(DOC_VALUES);
+                out.writeByte((byte) type.docValuesType().ordinal());
+                if (type.docValuesType() == DocValuesType.NUMERIC || type.docValuesType() == DocValuesType.SORTED_NUMERIC) {
+                    out.writeZLong(field.numericValue().longValue());
+                } else {
+                    writeBytes(out, field.binaryValue());
+                }
+            } else {
+                out.writeByte(FIELD);
+                out.writeByte((byte) type.indexOptions().ordinal());
+                out.writeByte((byte) ((type.stored() ? 1 : 0)
+                        | (type.tokenized() ? 1 << 1 : 0)
+                        | (type.omitNorms() ? 1 << 2 : 0)
+                        | (type.storeTermVectors() ? 1 << 3 : 0)
+                        | (type.storeTermVectorPositions() ? 1 << 4 : 0)
+                        | (type.storeTermVectorOffsets() ? 1 << 5 : 0)
+                        | (type.storeTermVectorPayloads() ? 1 << 6 : 0)));
+                writeValue(out, field);
+            }
+        }
+    }
+
+    private static void writeValue(DataOutput out, IndexableField field) throws IOException {
+        if (field.stringValue() != null) {
+            out.writeByte(STRING);
+            out.writeString(field.stringValue());
+        } else if (field.binaryValue() != null) {
+            out.writeByte(BINARY);
+            writeBytes(out, field.binaryValue());
+        } else if (field.numericValue() != null && field.fieldType().indexOptions() == IndexOptions.NONE) {
+            Number value = field.numericValue();
+            if (value instanceof Integer) {
+                out.writeByte(INT);
+                out.writeZInt(value.intValue());
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeZLong(value.longValue());
+            } else if (value instanceof Float) {
+                out.writeByte(FLOAT);
+                out.writeInt(Float.floatToIntBits(value.floatValue()));
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeLong(Double.doubleToLongBits(value.doubleValue()));
+            } else {
+                throw unsupported(field);
+            }
+        } else {
+            // Reader、TokenStream的值不能重放
+            throw unsupported(field);
+        }
+    }
+
+    static Document read(DataInput in) throws IOException {
+        Document document = new Document();
+        int size = in.readVInt();
+        for (int i = 0; i < size; i++) {
+            String name = in.readString();
+            byte kind = in.readByte();
+            switch (kind) {
+                case POINT:
+                    FieldType pointType = new FieldType();
+                    pointType.setDimensions(in.readVInt(), in.readVInt(), in.readVInt());
+                    pointType.freeze();
+                    document.add(new Field(name, readBytes(in), pointType));
+                    break;
+                case DOC_VALUES:
+                    document.add(readDocValues(in, name));
+                    break;
+                case FIELD:
+                    document.add(readField(in, name));
+                    break;
+                default:
+                    throw new IOException("MemoryIndex translog unknown field kind:" + kind);
+            }
+        }
+        return document;
+    }
+
+    private static Field readDocValues(DataInput in, String name) throws IOException {
+        DocValuesType type = DOC_VALUES_TYPES[in.readByte()];
+        switch (type) {
+            case NUMERIC:
+                return new NumericDocValuesField(name, in.readZLong());
+            case SORTED_NUMERIC:
+                return new SortedNumericDocValuesField(name, in.readZLong());
+            case SORTED:
+                return new SortedDocValuesField(name, readBytes(in));
+            case SORTED_SET:
+                return new SortedSetDocValuesField(name, readBytes(in));
+            case BINARY:
+                return new BinaryDocValuesField(name, readBytes(in));
+            default:
+                throw new IOException("MemoryIndex translog unknown doc values type:" + type);
+        }
+    }
+
+    private static Field readField(DataInput in, String name) throws IOException {
+        FieldType type = new FieldType();
+        type.setIndexOptions(INDEX_OPTIONS[in.readByte()]);
+        byte flags = in.readByte();
+        type.setStored((flags & 1) != 0);
+        type.setTokenized((flags & 1 << 1) != 0);
+        type.setOmitNorms((flags & 1 << 2) != 0);
+        type.setStoreTermVectors((flags & 1 << 3) != 0);
+        type.setStoreTermVectorPositions((flags & 1 << 4) != 0);
+        type.setStoreTermVectorOffsets((flags & 1 << 5) != 0);
+        type.setStoreTermVectorPayloads((flags & 1 << 6) != 0);
+        type.freeze();
+        byte valueType = in.readByte();
+        switch (valueType) {
+            case STRING:
+                return new Field(name, in.readString(), type);
+            case BINARY:
+                return new Field(name, readBytes(in), type);
+            case INT:
+                return new StoredField(name, in.readZInt());
+            case LONG:
+                return new StoredField(name, in.readZLong());
+            case FLOAT:
+                return new StoredField(name, Float.intBitsToFloat(in.readInt()));
+            case DOUBLE:
+                return new StoredField(name, Double.longBitsToDouble(in.readLong()));
+            default:
+                throw new IOException("MemoryIndex translog unknown value type:" + valueType);
+        }
+    }
+
+    private static void writeBytes(DataOutput out, BytesRef bytes) throws IOException {
+        out.writeVInt(bytes.length);
+        out.writeBytes(bytes.bytes, bytes.offset, bytes.length);
+    }
+
+    private static BytesRef readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readVInt()];
+        in.readBytes(bytes, 0, bytes.length);
+        return new BytesRef(bytes);
+    }
+
+    private static LuceneException unsupported(IndexableField field) {
+        return new LuceneException("MemoryIndex translog does not support field:" + field.name() + ", type:" + field.fieldType());
+    }
+}
@@ -0,0 +1,313 @@
+package org.lccy.lucene.memory.index.write;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.lccy.lucene.memory.builder.DocumentBuilder;
+import org.lccy.lucene.memory.builder.ReusableDocument;
+import org.lccy.lucene.memory.exception.LuceneException;
+import org.lccy.lucene.memory.index.config.IndexConfig;
+import org.lccy.lucene.memory.loader.IndexDataConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 导入、重新导入时的并行批量索引<br/>
+ * 多个索引线程共享同一个IndexWriter（IndexWriter内部每个线程使用独立的DocumentsWriterPerThread），
+ * 文档构造和分词都在索引线程中执行；数据加载线程通过有界队列向索引线程传递数据，队列满时阻塞（背压）<br/>
+ * 线程数不大于1时在提交线程中直接写入<br/>
+ * 通过{@link #obtain()}获取的可复用文档写入后回收，导入期间每个字段基本不再创建新的Field对象<br/>
+ * 分片、分区索引一次读取数据源时，多个索引共享索引线程和可复用文档，按路由写入各自的consumer，参照{@link #accept(Document, IndexDataConsumer)}
+ *
+ * @Date: 2026/10/17 15:20 <br>
+ * @author: liuchen11
+ */
+public class BulkIndexer implements IndexDataConsumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkIndexer.class);
+
+    /**
+     * 索引任务
+     */
+    private interface IndexTask {
+        void index() throws IOException;
+    }
+
+    /**
+     * 文档的写入目标
+     */
+    private interface Sink {
+        void add(Document document) throws IOException;
+    }
+
+    // 索引线程结束标记
+    private static final IndexTask END = () -> {};
+
+    // 默认的写入目标，多个索引共享时为null
+    private final Sink sink;
+    private final IndexConfig indexConfig;
+    // 直接构造的文档没有内容哈希时补充计算，之后的全量更新、增量重新导入可以判断内容是否变化
+    private final boolean noopDetection;
+    private final BlockingQueue<IndexTask> queue;
+    private final Thread[] workers;
+    // 空闲的可复用文档，数量上限为队列容量加线程数
+    private final BlockingQueue<ReusableDocument> documentPool;
+    private final int documentLimit;
+    private final AtomicInteger documentCreated = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final LongAdder indexed = new LongAdder();
+
+    /**
+     * @param indexWriter 索引写入器
+     * @param indexConfig 索引配置
+     * @param threads     索引线程数
+     * @param queueSize   待索引文档队列容量
+     */
+    public BulkIndexer(IndexWriter indexWriter, IndexConfig indexConfig, int threads, int queueSize) {
+        this(indexWriter::addDocument, indexConfig, threads, queueSize);
+    }
+
+    /**
+     * 多个索引共享索引线程，只能通过指定写入目标的accept写入
+     *
+     * @param indexConfig 索引配置，各索引的字段映射相同
+     * @param threads     索引线程数
+     * @param queueSize   待索引文档队列容量
+     */
+    public BulkIndexer(IndexConfig indexConfig, int threads, int queueSize) {
+        this((Sink) null, indexConfig, threads, queueSize);
+    }
+
+    private BulkIndexer(Sink sink, IndexConfig indexConfig, int threads, int queueSize) {
+        this.sink = sink;
+        this.indexConfig = indexConfig;
+        this.noopDetection = indexConfig.getDocumentPlan().isNoopDetection();
+        if (threads <= 1) {
+            this.queue = null;
+            this.workers = new Thread[0];
+            this.documentLimit = 1;
+            this.documentPool = new ArrayBlockingQueue<>(documentLimit);
+            return;
+        }
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueSize, threads));
+        this.documentLimit = queue.remainingCapacity() + threads;
+        this.documentPool = new ArrayBlockingQueue<>(documentLimit);
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::run, "memory-index-bulk-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * 索引已经构造好的文档
+     */
+    @Override
+    public void accept(Document document) throws LuceneException {
+        submit(document, defaultSink());
+    }
+
+    /**
+     * 索引原始数据，文档在索引线程中构造
+     */
+    @Override
+    public void accept(Map<String, Object> source) throws LuceneException {
+        submit(source, defaultSink());
+    }
+
+    /**
+     * 获取空闲的可复用文档，全部在使用中时阻塞等待索引线程回收
+     */
+    @Override
+    public ReusableDocument obtain() throws LuceneException {
+        checkFailure();
+        ReusableDocument document = documentPool.poll();
+        if (document != null) {
+            return document;
+        }
+        if (documentCreated.incrementAndGet() <= documentLimit) {
+            return new ReusableDocument(indexConfig.getDocumentPlan());
+        }
+        documentCreated.decrementAndGet();
+        try {
+            while ((document = documentPool.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                checkFailure();
+            }
+            return document;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new LuceneException("MemoryIndex bulk index interrupted.", ex);
+        }
+    }
+
+    /**
+     * 索引填充好的可复用文档，写入后回收
+     */
+    @Override
+    public void accept(ReusableDocument document) throws LuceneException {
+        submit(document, defaultSink());
+    }
+
+    /**
+     * 在索引线程中把文档写入指定的consumer，consumer需要在调用线程中同步写入
+     *
+     * @param document
+     * @param target   写入目标
+     * @throws LuceneException
+     */
+    public void accept(Document document, IndexDataConsumer target) throws LuceneException {
+        submit(document, target::accept);
+    }
+
+    /**
+     * 在索引线程中构造文档并写入指定的consumer，参照{@link #accept(Document, IndexDataConsumer)}
+     */
+    public void accept(Map<String, Object> source, IndexDataConsumer target) throws LuceneException {
+        submit(source, target::accept);
+    }
+
+    /**
+     * 在索引线程中把可复用文档写入指定的consumer，写入后回收，参照{@link #accept(Document, IndexDataConsumer)}
+     */
+    public void accept(ReusableDocument document, IndexDataConsumer target) throws LuceneException {
+        submit(document, target::accept);
+    }
+
+    /**
+     * 回收不需要写入的可复用文档
+     */
+    public void recycle(ReusableDocument document) {
+        release(document);
+    }
+
+    private Sink defaultSink() {
+        if (sink == null) {
+            throw new IllegalStateException("BulkIndexer is shared, target must set.");
+        }
+        return sink;
+    }
+
+    private void submit(Document document, Sink target) throws LuceneException {
+        submit(() -> {
+            if (noopDetection) {
+                DocumentBuilder.ensureContentHash(document);
+            }
+            target.add(document);
+        });
+    }
+
+    private void submit(Map<String, Object> source, Sink target) throws LuceneException {
+        ReusableDocument document = obtain();
+        submit(() -> {
+            try {
+                DocumentBuilder.build(source, document);
+                target.add(document.getDocument());
+            } finally {
+                release(document);
+            }
+        });
+    }
+
+    private void submit(ReusableDocument document, Sink target) throws LuceneException {
+        submit(() -> {
+            try {
+                if (noopDetection) {
+                    document.ensureContentHash();
+                }
+                target.add(document.getDocument());
+            } finally {
+                release(document);
+            }
+        });
+    }
+
+    private void release(ReusableDocument document) {
+        document.reset();
+        documentPool.offer(document);
+    }
+
+    private void submit(IndexTask task) throws LuceneException {
+        checkFailure();
+        if (queue == null) {
+            index(task);
+            return;
+        }
+        try {
+            // 全部索引线程异常退出时不会再消费队列，定期检查避免一直阻塞
+            while (!queue.offer(task, 100, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new LuceneException("MemoryIndex bulk index interrupted.", ex);
+        }
+    }
+
+    private void run() {
+        try {
+            IndexTask task;
+            while ((task = queue.take()) != END) {
+                // 出现异常后继续消费队列但不再写入，避免提交线程阻塞
+                if (failure.get() != null) {
+                    continue;
+                }
+                try {
+                    index(task);
+                } catch (Throwable ex) {
+                    logger.error("MemoryIndex bulk index error:{}", ex.getMessage(), ex);
+                    failure.compareAndSet(null, ex);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, ex);
+        }
+    }
+
+    private void index(IndexTask task) {
+        try {
+            task.index();
+            indexed.increment();
+        } catch (IOException ex) {
+            throw new LuceneException("MemoryIndex bulk index error", ex);
+        }
+    }
+
+    private void checkFailure() throws LuceneException {
+        Throwable ex = failure.get();
+        if (ex != null) {
+            throw new LuceneException("MemoryIndex bulk index error", ex);
+        }
+    }
+
+    /**
+     * 等待已提交的文档全部写入，并停止索引线程
+     *
+     * @return 写入的文档数
+     * @throws LuceneException 任一文档写入失败
+     */
+    public long finish() throws LuceneException {
+        try {
+            for (int i = 0; i < workers.length; i++) {
+                queue.put(END);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new LuceneException("MemoryIndex bulk index interrupted.", ex);
+        }
+        checkFailure();
+        return indexed.sum();
+    }
+}
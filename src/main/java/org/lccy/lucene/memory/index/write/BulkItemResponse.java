@@ -0,0 +1,61 @@
+package org.lccy.lucene.memory.index.write;
+
+import lombok.Getter;
+
+/**
+ * 批量写入中单个操作的结果
+ *
+ * @Date: 2026/10/17 19:45 <br>
+ * @author: liuchen11
+ */
+@Getter
+public class BulkItemResponse {
+
+    public enum Status {
+        SUCCESS,
+        // 内容未变化，跳过写入
+        NOOP,
+        // 局部更新的文档不存在
+        NOT_FOUND,
+        FAILED
+    }
+
+    // 在请求中的位置
+    private final int index;
+    private final BulkRequest.OpType opType;
+    private final String id;
+    private final Status status;
+    // IndexWriter返回的seqNo，失败、跳过时为-1
+    private final long seqNo;
+    // 失败原因
+    private final String failure;
+
+    private BulkItemResponse(int index, BulkRequest.OpType opType, String id, Status status, long seqNo, String failure) {
+        this.index = index;
+        this.opType = opType;
+        this.id = id;
+        this.status = status;
+        this.seqNo = seqNo;
+        this.failure = failure;
+    }
+
+    public static BulkItemResponse success(int index, BulkRequest.OpType opType, String id, long seqNo) {
+        return new BulkItemResponse(index, opType, id, Status.SUCCESS, seqNo, null);
+    }
+
+    public static BulkItemResponse noop(int index, BulkRequest.OpType opType, String id) {
+        return new BulkItemResponse(index, opType, id, Status.NOOP, -1, null);
+    }
+
+    public static BulkItemResponse notFound(int index, BulkRequest.OpType opType, String id) {
+        return new BulkItemResponse(index, opType, id, Status.NOT_FOUND, -1, "document not found");
+    }
+
+    public static BulkItemResponse failed(int index, BulkRequest.OpType opType, String id, String failure) {
+        return new BulkItemResponse(index, opType, id, Status.FAILED, -1, failure);
+    }
+
+    public boolean isFailed() {
+        return status == Status.NOT_FOUND || status == Status.FAILED;
+    }
+}
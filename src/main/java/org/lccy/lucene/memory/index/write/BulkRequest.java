@@ -0,0 +1,127 @@
+package org.lccy.lucene.memory.index.write;
+
+import org.apache.lucene.document.Document;
+import org.lccy.lucene.memory.constants.RefreshPolicyEnum;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量写入请求，可以混合插入/更新、局部更新、删除操作，按添加顺序执行<br/>
+ * 全部操作在一次加锁中写入，共用一次日志fsync和一次刷新
+ *
+ * @Date: 2026/10/17 19:40 <br>
+ * @author: liuchen11
+ */
+public class BulkRequest {
+
+    public enum OpType {
+        // 插入/更新（整体覆盖）
+        INDEX,
+        // 局部更新，只覆盖给出的字段，文档不存在时失败
+        UPDATE,
+        DELETE
+    }
+
+    /**
+     * 单个写操作
+     */
+    public static class Item {
+        private final OpType opType;
+        private final String id;
+        // 原始数据，插入/更新、局部更新时使用
+        private final Map<String, Object> source;
+        // 已构造的文档，插入/更新时使用
+        private final Document document;
+
+        private Item(OpType opType, String id, Map<String, Object> source, Document document) {
+            this.opType = opType;
+            this.id = id;
+            this.source = source;
+            this.document = document;
+        }
+
+        public OpType getOpType() {
+            return opType;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Map<String, Object> getSource() {
+            return source;
+        }
+
+        public Document getDocument() {
+            return document;
+        }
+    }
+
+    private final List<Item> items = new ArrayList<>();
+    // 写入后的刷新策略，默认立即刷新，使写操作可以被检索
+    private RefreshPolicyEnum refreshPolicy = RefreshPolicyEnum.IMMEDIATE;
+
+    /**
+     * 插入/更新，主键从原始数据的主键字段中获取
+     */
+    public BulkRequest index(Map<String, Object> source) {
+        items.add(new Item(OpType.INDEX, null, source, null));
+        return this;
+    }
+
+    /**
+     * 插入/更新已构造的文档
+     */
+    public BulkRequest index(String id, Document document) {
+        items.add(new Item(OpType.INDEX, id, null, document));
+        return this;
+    }
+
+    /**
+     * 局部更新，给出的字段覆盖已有文档的同名字段，其他字段保持不变
+     *
+     * @param id     主键
+     * @param source 需要更新的字段
+     */
+    public BulkRequest update(String id, Map<String, Object> source) {
+        items.add(new Item(OpType.UPDATE, id, source, null));
+        return this;
+    }
+
+    public BulkRequest delete(String id) {
+        items.add(new Item(OpType.DELETE, id, null, null));
+        return this;
+    }
+
+    public List<Item> items() {
+        return Collections.unmodifiableList(items);
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public boolean isRefresh() {
+        return refreshPolicy == RefreshPolicyEnum.IMMEDIATE;
+    }
+
+    /**
+     * true时立即刷新，false时不刷新
+     */
+    public BulkRequest setRefresh(boolean refresh) {
+        this.refreshPolicy = refresh ? RefreshPolicyEnum.IMMEDIATE : RefreshPolicyEnum.NONE;
+        return this;
+    }
+
+    public RefreshPolicyEnum getRefreshPolicy() {
+        return refreshPolicy;
+    }
+
+    public BulkRequest setRefreshPolicy(RefreshPolicyEnum refreshPolicy) {
+        this.refreshPolicy = refreshPolicy == null ? RefreshPolicyEnum.NONE : refreshPolicy;
+        return this;
+    }
+}
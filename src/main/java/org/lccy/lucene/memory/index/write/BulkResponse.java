@@ -0,0 +1,49 @@
+package org.lccy.lucene.memory.index.write;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 批量写入结果，与请求中的操作一一对应
+ *
+ * @Date: 2026/10/17 19:48 <br>
+ * @author: liuchen11
+ */
+@Getter
+public class BulkResponse {
+
+    private final List<BulkItemResponse> items;
+    // 耗时（毫秒）
+    private final long took;
+
+    public BulkResponse(List<BulkItemResponse> items, long took) {
+        this.items = items;
+        this.took = took;
+    }
+
+    /**
+     * 是否有失败的操作（包括局部更新的文档不存在）
+     */
+    public boolean hasFailures() {
+        for (BulkItemResponse item : items) {
+            if (item.isFailed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 成功的操作数
+     */
+    public int successCount() {
+        int count = 0;
+        for (BulkItemResponse item : items) {
+            if (!item.isFailed()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
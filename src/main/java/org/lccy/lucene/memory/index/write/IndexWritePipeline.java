@@ -0,0 +1,286 @@
+package org.lccy.lucene.memory.index.write;
+
+import org.lccy.lucene.memory.exception.LuceneException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异步批量写入管道（group commit）<br/>
+ * 多个线程提交的写操作进入有界队列，由单个写线程批量取出，同一主键的多次操作合并为最后一次（last write wins），
+ * 一批操作写入IndexWriter后只做一次NRT刷新，刷新后对应的回调完成，代表写操作已经可以被检索<br/>
+ * 队列满时提交线程最多等待writeQueueTimeout毫秒，超时拒绝并计数<br/>
+ * 传入共享的写线程池时不再创建独立的写线程，有待写入的操作时才向线程池提交批量写入任务，每个任务最多处理几批后让出线程
+ *
+ * @Date: 2026/10/17 10:31 <br>
+ * @author: liuchen11
+ */
+public class IndexWritePipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexWritePipeline.class);
+    // 共享写线程池中的一个任务最多处理的批次数，避免一个索引长时间占用线程
+    private static final int DRAIN_BATCHES = 4;
+
+    /**
+     * 批量写入处理，由MemoryIndex实现
+     */
+    public interface BatchHandler {
+
+        /**
+         * 将一批合并后的写操作写入索引，并为每个操作设置seqNo、注册可见性监听
+         */
+        void apply(List<WriteOperation> batch) throws IOException;
+
+        /**
+         * 一批写入完成后刷新IndexSearcher，使写操作可以被检索
+         */
+        void refresh() throws IOException;
+    }
+
+    private final BlockingQueue<WriteOperation> queue;
+    private final int batchSize;
+    private final long offerTimeout;
+    private final BatchHandler handler;
+    // 独立的写线程，使用共享写线程池时为null
+    private final Thread writerThread;
+    // 共享的写线程池，为null时使用独立的写线程
+    private final Executor executor;
+    // 是否已经向共享写线程池提交了批量写入任务
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder folded = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * @param queueSize    队列容量
+     * @param batchSize    单批次最大操作数
+     * @param offerTimeout 队列满时的最大等待时间（毫秒）
+     * @param handler      批量写入处理
+     */
+    public IndexWritePipeline(int queueSize, int batchSize, long offerTimeout, BatchHandler handler) {
+        this(queueSize, batchSize, offerTimeout, handler, null);
+    }
+
+    /**
+     * @param queueSize    队列容量
+     * @param batchSize    单批次最大操作数
+     * @param offerTimeout 队列满时的最大等待时间（毫秒）
+     * @param handler      批量写入处理
+     * @param executor     共享的写线程池，为null时使用独立的写线程
+     */
+    public IndexWritePipeline(int queueSize, int batchSize, long offerTimeout, BatchHandler handler, Executor executor) {
+        if (queueSize <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("MemoryIndex write queue size and batch size must be positive.");
+        }
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.offerTimeout = offerTimeout;
+        this.handler = handler;
+        this.executor = executor;
+        if (executor == null) {
+            this.writerThread = new Thread(this::run, "memory-index-writer");
+            this.writerThread.setDaemon(true);
+        } else {
+            this.writerThread = null;
+        }
+    }
+
+    public void start() {
+        if (writerThread != null) {
+            writerThread.start();
+        }
+    }
+
+    /**
+     * 提交写操作，队列满时阻塞等待，超时拒绝
+     *
+     * @param operation 写操作
+     * @return 写操作可以被检索时完成，结果为seqNo
+     * @throws LuceneException 队列已满或管道已关闭
+     */
+    public CompletableFuture<Long> submit(WriteOperation operation) throws LuceneException {
+        if (closed) {
+            throw new LuceneException("MemoryIndex write pipeline is closed.");
+        }
+        boolean offered;
+        try {
+            offered = queue.offer(operation, offerTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new LuceneException("MemoryIndex write pipeline offer interrupted.", ex);
+        }
+        if (!offered) {
+            rejected.increment();
+            throw new LuceneException("MemoryIndex write queue is full, rejected.");
+        }
+        submitted.increment();
+        if (executor != null) {
+            scheduleDrain();
+        }
+        return operation.getFuture();
+    }
+
+    /**
+     * 没有正在执行的批量写入任务时向共享写线程池提交一个，线程池已关闭时由当前线程写入
+     */
+    private void scheduleDrain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException ex) {
+            drain();
+        }
+    }
+
+    /**
+     * 共享写线程池中执行的批量写入任务，最多处理DRAIN_BATCHES批，队列中还有操作时重新提交
+     */
+    private void drain() {
+        List<WriteOperation> drained = new ArrayList<>(batchSize);
+        try {
+            for (int i = 0; i < DRAIN_BATCHES; i++) {
+                queue.drainTo(drained, batchSize);
+                if (drained.isEmpty()) {
+                    break;
+                }
+                try {
+                    process(drained);
+                } finally {
+                    drained.clear();
+                }
+            }
+        } finally {
+            draining.set(false);
+        }
+        // 释放标记后才提交的操作，或者处理满DRAIN_BATCHES批后剩余的操作
+        if (!queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private void run() {
+        List<WriteOperation> drained = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                WriteOperation first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                drained.add(first);
+                queue.drainTo(drained, batchSize - 1);
+                process(drained);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                drained.clear();
+            }
+        }
+    }
+
+    private void process(List<WriteOperation> drained) {
+        // 同一主键合并，后提交的覆盖先提交的
+        Map<String, WriteOperation> merged = new LinkedHashMap<>(drained.size() * 2);
+        for (WriteOperation operation : drained) {
+            WriteOperation older = merged.remove(operation.getId());
+            if (older != null) {
+                operation.fold(older);
+                folded.increment();
+            }
+            merged.put(operation.getId(), operation);
+        }
+        List<WriteOperation> batch = new ArrayList<>(merged.values());
+        try {
+            handler.apply(batch);
+            applied.add(batch.size());
+            batches.increment();
+        } catch (Throwable ex) {
+            logger.error("MemoryIndex write pipeline apply error:{}", ex.getMessage(), ex);
+            // 不论是否已经分配seqNo，没有完成的操作都失败，避免调用方一直等待
+            for (WriteOperation operation : batch) {
+                if (!operation.getFuture().isDone()) {
+                    operation.fail(ex);
+                }
+            }
+        }
+        try {
+            handler.refresh();
+        } catch (Throwable ex) {
+            logger.warn("MemoryIndex write pipeline refresh error:{}", ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * 关闭管道，已提交的操作会全部写入后再退出
+     */
+    public void close() {
+        closed = true;
+        try {
+            if (writerThread != null) {
+                writerThread.join(TimeUnit.SECONDS.toMillis(30));
+            } else {
+                // 等待共享写线程池写完已提交的操作
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+                while ((draining.get() || !queue.isEmpty()) && System.nanoTime() < deadline) {
+                    if (!queue.isEmpty()) {
+                        scheduleDrain();
+                    }
+                    Thread.sleep(10);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        WriteOperation remain;
+        while ((remain = queue.poll()) != null) {
+            remain.fail(new LuceneException("MemoryIndex write pipeline is closed."));
+        }
+    }
+
+    public int queueSize() {
+        return queue.size();
+    }
+
+    public int queueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public long submittedCount() {
+        return submitted.sum();
+    }
+
+    public long appliedCount() {
+        return applied.sum();
+    }
+
+    public long foldedCount() {
+        return folded.sum();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    public long batchCount() {
+        return batches.sum();
+    }
+}
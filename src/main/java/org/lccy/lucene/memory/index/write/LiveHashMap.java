@@ -0,0 +1,75 @@
+package org.lccy.lucene.memory.index.write;
+
+import org.apache.lucene.search.ReferenceManager;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 最近一次刷新之后写入的文档内容哈希，参照Elasticsearch的LiveVersionMap<br/>
+ * 未刷新的写操作在IndexSearcher中不可见，判断内容是否变化时先查这里，找不到再查IndexSearcher中的DocValues<br/>
+ * 刷新前把当前表切换为旧表，刷新完成后丢弃旧表，旧表中的写操作此时已经可以被检索<br/>
+ * 同一主键的写入和查询需要由调用方加锁，并且先写入IndexWriter再记录哈希
+ *
+ * @Date: 2026/10/17 21:10 <br>
+ * @author: liuchen11
+ */
+public final class LiveHashMap implements ReferenceManager.RefreshListener {
+
+    // 没有内容哈希（删除、原地更新、未计算哈希的文档）
+    public static final long NO_HASH = 0L;
+
+    private static final class Maps {
+        private final Map<String, Long> current;
+        private final Map<String, Long> old;
+
+        Maps(Map<String, Long> current, Map<String, Long> old) {
+            this.current = current;
+            this.old = old;
+        }
+    }
+
+    private volatile Maps maps = new Maps(new ConcurrentHashMap<>(), Collections.emptyMap());
+
+    /**
+     * 记录写入后的内容哈希
+     *
+     * @param id   主键
+     * @param hash 删除或没有哈希时为{@link #NO_HASH}
+     */
+    public void put(String id, long hash) {
+        maps.current.put(id, hash);
+    }
+
+    /**
+     * 最近一次刷新之后写入的内容哈希
+     *
+     * @return 刷新之后没有写入时返回null
+     */
+    public Long get(String id) {
+        Maps snapshot = this.maps;
+        Long hash = snapshot.current.get(id);
+        return hash != null ? hash : snapshot.old.get(id);
+    }
+
+    /**
+     * 未刷新的主键数
+     */
+    public int size() {
+        Maps snapshot = this.maps;
+        return snapshot.current.size() + snapshot.old.size();
+    }
+
+    @Override
+    public void beforeRefresh() throws IOException {
+        Maps snapshot = this.maps;
+        this.maps = new Maps(new ConcurrentHashMap<>(), snapshot.current);
+    }
+
+    @Override
+    public void afterRefresh(boolean didRefresh) throws IOException {
+        this.maps = new Maps(this.maps.current, Collections.emptyMap());
+    }
+}
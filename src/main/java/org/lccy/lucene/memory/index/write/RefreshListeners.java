@@ -0,0 +1,135 @@
+package org.lccy.lucene.memory.index.write;
+
+import org.apache.lucene.search.ReferenceManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * 基于SearcherManager刷新的可见性监听器，参照Elasticsearch的RefreshListeners<br/>
+ * 刷新前记录IndexWriter已完成的最大seqNo，刷新后该seqNo之前的全部写操作均可被检索，此时通知等待中的写操作<br/>
+ * 同时等待的多个写操作通过{@link #requestRefresh()}合并为一次刷新：刷新开始前已经请求的刷新都由这次刷新完成
+ *
+ * @Date: 2026/10/17 10:12 <br>
+ * @author: liuchen11
+ */
+public final class RefreshListeners implements ReferenceManager.RefreshListener {
+
+    private final LongSupplier maxCompletedSeqNo;
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+    // 刷新前记录的seqNo
+    private volatile long refreshingSeqNo = -1;
+    // 已可检索的最大seqNo
+    private volatile long visibleSeqNo = -1;
+    // 是否已有等待者请求了刷新且该次刷新尚未开始
+    private final AtomicBoolean refreshRequested = new AtomicBoolean(false);
+    private boolean closed = false;
+
+    /**
+     * @param maxCompletedSeqNo 当前IndexWriter已完成的最大seqNo
+     */
+    public RefreshListeners(LongSupplier maxCompletedSeqNo) {
+        this.maxCompletedSeqNo = maxCompletedSeqNo;
+    }
+
+    /**
+     * 注册等待seqNo可见的监听，如果已经可见则直接完成
+     *
+     * @param seqNo    写操作返回的seqNo
+     * @param listener 可见时完成
+     */
+    public void addOrNotify(long seqNo, CompletableFuture<Long> listener) {
+        if (seqNo <= visibleSeqNo) {
+            listener.complete(seqNo);
+            return;
+        }
+        synchronized (this) {
+            if (!closed && seqNo > visibleSeqNo) {
+                waiters.add(new Waiter(seqNo, listener));
+                return;
+            }
+        }
+        listener.complete(seqNo);
+    }
+
+    /**
+     * 请求一次刷新，在注册等待之后调用<br/>
+     * 返回true时由调用方执行刷新；返回false时已经有尚未开始的刷新，该次刷新开始时一定包含调用方已完成的写操作，不需要再刷新
+     */
+    public boolean requestRefresh() {
+        return refreshRequested.compareAndSet(false, true);
+    }
+
+    /**
+     * 已可检索的最大seqNo
+     */
+    public long getVisibleSeqNo() {
+        return visibleSeqNo;
+    }
+
+    /**
+     * 等待中的监听个数
+     */
+    public synchronized int pendingCount() {
+        return waiters.size();
+    }
+
+    @Override
+    public void beforeRefresh() throws IOException {
+        // 先清除刷新请求再记录seqNo，清除前请求刷新的等待者的写操作都已完成，一定被本次刷新包含
+        refreshRequested.set(false);
+        refreshingSeqNo = maxCompletedSeqNo.getAsLong();
+    }
+
+    @Override
+    public void afterRefresh(boolean didRefresh) throws IOException {
+        // 没有变更时，当前reader已经包含刷新前完成的全部写操作，同样推进可见seqNo
+        List<Waiter> ready = new ArrayList<>();
+        synchronized (this) {
+            if (refreshingSeqNo > visibleSeqNo) {
+                visibleSeqNo = refreshingSeqNo;
+            }
+            while (!waiters.isEmpty() && waiters.peek().seqNo <= visibleSeqNo) {
+                ready.add(waiters.poll());
+            }
+        }
+        for (Waiter waiter : ready) {
+            waiter.listener.complete(waiter.seqNo);
+        }
+    }
+
+    /**
+     * 索引被替换或关闭时调用，通知全部等待中的监听
+     */
+    public void close() {
+        List<Waiter> ready;
+        synchronized (this) {
+            closed = true;
+            ready = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        for (Waiter waiter : ready) {
+            waiter.listener.complete(waiter.seqNo);
+        }
+    }
+
+    private static final class Waiter implements Comparable<Waiter> {
+        private final long seqNo;
+        private final CompletableFuture<Long> listener;
+
+        Waiter(long seqNo, CompletableFuture<Long> listener) {
+            this.seqNo = seqNo;
+            this.listener = listener;
+        }
+
+        @Override
+        public int compareTo(Waiter o) {
+            return Long.compare(seqNo, o.seqNo);
+        }
+    }
+}
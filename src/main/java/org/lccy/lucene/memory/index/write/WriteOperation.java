@@ -0,0 +1,125 @@
+package org.lccy.lucene.memory.index.write;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.Query;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步写入队列中的单个写操作（插入/更新、删除），也用于操作日志和reload期间的写操作重放
+ *
+ * @Date: 2026/10/17 10:20 <br>
+ * @author: liuchen11
+ */
+public class WriteOperation {
+
+    public enum OpType {
+        // 只追加在最后，操作日志中保存的是序号
+        INDEX, DELETE, UPDATE_DOC_VALUES,
+        // 按条件删除，只用于reload期间的写操作重放，不写入操作日志
+        DELETE_BY_QUERY
+    }
+
+    private final OpType opType;
+    private final String id;
+    private final Document document;
+    private final Query query;
+    private final CompletableFuture<Long> future;
+    private long seqNo = -1;
+
+    private WriteOperation(OpType opType, String id, Document document) {
+        this(opType, id, document, null);
+    }
+
+    private WriteOperation(OpType opType, String id, Document document, Query query) {
+        this.opType = opType;
+        this.id = id;
+        this.document = document;
+        this.query = query;
+        this.future = new CompletableFuture<>();
+    }
+
+    public static WriteOperation index(String id, Document document) {
+        return new WriteOperation(OpType.INDEX, id, document);
+    }
+
+    public static WriteOperation delete(String id) {
+        return new WriteOperation(OpType.DELETE, id, null);
+    }
+
+    /**
+     * 原地更新DocValues
+     *
+     * @param id       主键
+     * @param document 只包含需要更新的NumericDocValuesField
+     */
+    public static WriteOperation updateDocValues(String id, Document document) {
+        return new WriteOperation(OpType.UPDATE_DOC_VALUES, id, document);
+    }
+
+    /**
+     * 按条件删除，没有主键
+     *
+     * @param query 删除条件
+     */
+    public static WriteOperation deleteByQuery(Query query) {
+        return new WriteOperation(OpType.DELETE_BY_QUERY, null, null, query);
+    }
+
+    /**
+     * 同一主键的旧操作被当前操作覆盖（last write wins），旧操作随当前操作一起完成
+     *
+     * @param older 被覆盖的旧操作
+     */
+    public void fold(WriteOperation older) {
+        future.whenComplete((result, ex) -> {
+            if (ex != null) {
+                older.future.completeExceptionally(ex);
+            } else {
+                older.future.complete(result);
+            }
+        });
+    }
+
+    /**
+     * 注册可见性监听，当前操作及被覆盖的操作在seqNo可检索时完成
+     */
+    public void listen(RefreshListeners listeners) {
+        listeners.addOrNotify(seqNo, future);
+    }
+
+    /**
+     * 写入失败
+     */
+    public void fail(Throwable ex) {
+        future.completeExceptionally(ex);
+    }
+
+    public OpType getOpType() {
+        return opType;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    public CompletableFuture<Long> getFuture() {
+        return future;
+    }
+
+    public long getSeqNo() {
+        return seqNo;
+    }
+
+    public void setSeqNo(long seqNo) {
+        this.seqNo = seqNo;
+    }
+}
@@ -1,27 +1,22 @@
 package org.lccy.lucene.memory.loader;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONObject;
-import org.apache.lucene.document.Document;
-import org.lccy.lucene.memory.builder.DocumentBuilder;
+import org.lccy.lucene.memory.builder.ReusableDocument;
 import org.lccy.lucene.memory.index.config.IndexConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
- * 从类路径下加载索引数据
+ * 从类路径下加载索引数据，每行一个json文档<br/>
+ * 流式加载时逐个token读取，直接填充到索引提供的可复用文档，不经过JSONObject
  *
  * @Date: 2023/11/21 16:48 <br>
  * @author: liuchen11
  */
-public class ClassPathIndexDataLoader implements IndexDataLoader {
+public class ClassPathIndexDataLoader implements StreamingIndexDataLoader {
 
     private static final Logger logger = LoggerFactory.getLogger(ClassPathIndexDataLoader.class);
 
@@ -32,30 +27,20 @@ public class ClassPathIndexDataLoader implements IndexDataLoader {
     }
 
     @Override
-    public List<Document> load(IndexConfig indexConfig) {
+    public void load(IndexConfig indexConfig, IndexDataConsumer consumer) {
         InputStream inputStream = getClass().getClassLoader().getResourceAsStream(path);
         if(inputStream == null) {
             throw new IllegalArgumentException("MemoryIndex classpath data file is empty.");
         }
-        List<String> dataList = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                dataList.add(line);
+        try (JsonDocumentReader reader = new JsonDocumentReader(new InputStreamReader(inputStream), indexConfig)) {
+            while (reader.hasNext()) {
+                ReusableDocument document = consumer.obtain();
+                reader.next(document);
+                consumer.accept(document);
             }
         } catch (IOException e) {
             logger.error("classpath load memory index data error:" + e.getMessage(), e);
             throw new IllegalArgumentException("classpath load memory index data error", e);
         }
-
-        List<Document> result = new ArrayList<>();
-        for (String data : dataList) {
-            JSONObject dataObj = JSON.parseObject(data);
-            // build document
-            Document document = DocumentBuilder.build(dataObj, indexConfig);
-            result.add(document);
-        }
-
-        return result;
     }
 }
@@ -0,0 +1,44 @@
+package org.lccy.lucene.memory.loader;
+
+import org.apache.lucene.document.Document;
+import org.lccy.lucene.memory.builder.ReusableDocument;
+
+import java.util.Map;
+
+/**
+ * 流式导入时的数据接收接口，由MemoryIndex实现<br/>
+ * 接收的数据会被直接写入索引，索引速度跟不上时调用线程阻塞（背压），加载时不需要保存全部数据
+ *
+ * @Date: 2026/10/17 15:52 <br>
+ * @author: liuchen11
+ */
+public interface IndexDataConsumer {
+
+    /**
+     * 接收已经构造好的文档
+     *
+     * @param document
+     */
+    void accept(Document document);
+
+    /**
+     * 接收原始数据，在索引线程中构造文档
+     *
+     * @param source 字段名-字段值，必须包含主键字段
+     */
+    void accept(Map<String, Object> source);
+
+    /**
+     * 获取一个可复用文档，填充后通过{@link #accept(ReusableDocument)}提交；没有空闲文档时阻塞（背压）
+     *
+     * @return 已清空的文档
+     */
+    ReusableDocument obtain();
+
+    /**
+     * 接收通过{@link #obtain()}获取并填充的文档，写入索引后回收复用，提交后不能再访问
+     *
+     * @param document
+     */
+    void accept(ReusableDocument document);
+}
@@ -6,7 +6,9 @@ import org.apache.lucene.document.Document;
 import java.util.List;
 
 /**
- * 索引数据加载接口
+ * 索引数据加载接口<br/>
+ * MemoryIndex导入时调用流式的{@link #load(IndexConfig, IndexDataConsumer)}，默认实现基于{@link #load(IndexConfig)}，
+ * 数据量大时建议实现{@link StreamingIndexDataLoader}，避免全部数据同时驻留内存
  *
  * @Date: 2023/11/21 16:20 <br>
  * @author: liuchen11
@@ -19,4 +21,16 @@ public interface IndexDataLoader {
      * @return
      */
     List<Document> load(IndexConfig indexConfig);
+
+    /**
+     * 流式加载数据，每加载一条交给consumer，consumer阻塞时应该暂停加载
+     *
+     * @param indexConfig
+     * @param consumer
+     */
+    default void load(IndexConfig indexConfig, IndexDataConsumer consumer) {
+        for (Document document : load(indexConfig)) {
+            consumer.accept(document);
+        }
+    }
 }
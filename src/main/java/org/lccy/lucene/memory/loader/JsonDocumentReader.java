@@ -0,0 +1,414 @@
+package org.lccy.lucene.memory.loader;
+
+import com.alibaba.fastjson.JSON;
+import org.apache.lucene.document.Document;
+import org.lccy.lucene.memory.builder.DocumentPlan;
+import org.lccy.lucene.memory.builder.DocumentPlan.FieldPlan;
+import org.lccy.lucene.memory.builder.ReusableDocument;
+import org.lccy.lucene.memory.constants.FieldTypeEnum;
+import org.lccy.lucene.memory.index.config.IndexConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 流式读取NDJSON（每行一个json对象）并直接构造Lucene文档<br/>
+ * 逐个读取json token，按文档构造计划直接填充字段，不经过JSONObject，数值字段按原始类型解析，
+ * 未配置的字段在关闭动态映射时直接跳过<br/>
+ * 只有对象、数组等复合值（json类型字段等）仍然交给fastjson解析<br/>
+ * 非线程安全
+ *
+ * @Date: 2026/10/17 16:10 <br>
+ * @author: liuchen11
+ */
+public class JsonDocumentReader implements Closeable {
+
+    // long最多19位，18位以内不会溢出
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final Reader reader;
+    private final DocumentPlan plan;
+    private final char[] buffer = new char[8192];
+    private int pos = 0;
+    private int limit = 0;
+    private int line = 1;
+    // 复用的字符串、数值、原始json缓冲
+    private final StringBuilder chars = new StringBuilder(64);
+    private final StringBuilder raw = new StringBuilder(256);
+    private boolean recording = false;
+
+    public JsonDocumentReader(Reader reader, IndexConfig indexConfig) {
+        this.reader = reader;
+        this.plan = indexConfig.getDocumentPlan();
+    }
+
+    /**
+     * 是否还有文档
+     */
+    public boolean hasNext() throws IOException {
+        return skipWhitespace() >= 0;
+    }
+
+    /**
+     * 读取下一个文档，每次创建新的文档
+     *
+     * @return 没有更多数据时返回null
+     * @throws IOException
+     * @throws IllegalArgumentException json格式错误或缺少主键字段
+     */
+    public Document next() throws IOException {
+        if (!hasNext()) {
+            return null;
+        }
+        ReusableDocument document = new ReusableDocument(plan);
+        next(document);
+        return document.getDocument();
+    }
+
+    /**
+     * 读取下一个文档到可复用文档中，调用前需要通过{@link #hasNext()}判断
+     *
+     * @param target 读取前清空
+     * @throws IOException
+     * @throws IllegalArgumentException json格式错误或缺少主键字段
+     */
+    public void next(ReusableDocument target) throws IOException {
+        target.reset();
+        expect('{');
+        boolean hasPrimary = false;
+        int c = skipWhitespace();
+        if (c == '}') {
+            pos++;
+        } else {
+            while (true) {
+                expect('"');
+                String fieldName = readString();
+                expect(':');
+                if (plan.getPrimaryName().equals(fieldName)) {
+                    hasPrimary = true;
+                }
+                FieldPlan field = plan.getField(fieldName);
+                if (plan.isSystemKeyword(fieldName) || (field == null && !plan.isDynamicsMapping())) {
+                    skipValue();
+                } else {
+                    readValue(target, fieldName, field);
+                }
+                c = skipWhitespace();
+                pos++;
+                if (c == '}') {
+                    break;
+                } else if (c != ',') {
+                    throw syntaxError("expected ',' or '}'", c);
+                }
+            }
+        }
+        if (!hasPrimary) {
+            throw new IllegalArgumentException("MemoryIndex document must has primary field:" + plan.getPrimaryName() + ", line:" + line);
+        }
+    }
+
+    /**
+     * @param field 未配置的字段（动态映射）为null
+     */
+    private void readValue(ReusableDocument target, String fieldName, FieldPlan field) throws IOException {
+        int c = skipWhitespace();
+        if (c == '[' && field != null && (field.getType() == FieldTypeEnum.KEYWORD || field.getType() == FieldTypeEnum.STORE)) {
+            // 多值字段逐个转换
+            pos++;
+            c = skipWhitespace();
+            if (c == ']') {
+                pos++;
+                return;
+            }
+            while (true) {
+                readScalar(target, fieldName, field);
+                c = skipWhitespace();
+                pos++;
+                if (c == ']') {
+                    return;
+                } else if (c != ',') {
+                    throw syntaxError("expected ',' or ']'", c);
+                }
+            }
+        }
+        readScalar(target, fieldName, field);
+    }
+
+    private void readScalar(ReusableDocument target, String fieldName, FieldPlan field) throws IOException {
+        int c = skipWhitespace();
+        switch (c) {
+            case '"':
+                pos++;
+                add(target, fieldName, field, readString());
+                break;
+            case '{':
+            case '[':
+                add(target, fieldName, field, JSON.parse(readRaw()));
+                break;
+            case 't':
+                expectLiteral("true");
+                add(target, fieldName, field, Boolean.TRUE);
+                break;
+            case 'f':
+                expectLiteral("false");
+                add(target, fieldName, field, Boolean.FALSE);
+                break;
+            case 'n':
+                expectLiteral("null");
+                break;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumber(target, fieldName, field);
+                } else {
+                    throw syntaxError("unexpected value", c);
+                }
+        }
+    }
+
+    private void add(ReusableDocument target, String fieldName, FieldPlan field, Object value) {
+        if (field != null) {
+            target.add(field, value);
+        } else {
+            target.addDynamic(fieldName, value);
+        }
+    }
+
+    private void readNumber(ReusableDocument target, String fieldName, FieldPlan field) throws IOException {
+        chars.setLength(0);
+        boolean integral = true;
+        int c;
+        while ((c = peek()) >= 0 && isNumberChar(c)) {
+            if (c == '.' || c == 'e' || c == 'E') {
+                integral = false;
+            }
+            chars.append((char) c);
+            pos++;
+        }
+        FieldTypeEnum type = field == null ? null : field.getType();
+        if (type == FieldTypeEnum.LONG || type == FieldTypeEnum.FLOAT || type == FieldTypeEnum.DOUBLE) {
+            int digits = chars.length() - (chars.charAt(0) == '-' ? 1 : 0);
+            if (integral && digits <= MAX_LONG_DIGITS) {
+                target.addLong(field, parseLong(chars));
+            } else if (type == FieldTypeEnum.FLOAT) {
+                target.addDouble(field, Float.parseFloat(chars.toString()));
+            } else if (type == FieldTypeEnum.DOUBLE) {
+                target.addDouble(field, Double.parseDouble(chars.toString()));
+            } else {
+                target.addString(field, chars.toString());
+            }
+        } else if (type == null || type == FieldTypeEnum.JSON) {
+            // json类型、动态映射的字段保留数值，与fastjson解析出的原始数据一致
+            add(target, fieldName, field, JSON.parse(chars.toString()));
+        } else {
+            // 其他非数值字段保留原始文本
+            add(target, fieldName, field, chars.toString());
+        }
+    }
+
+    private static boolean isNumberChar(int c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+    }
+
+    private long parseLong(CharSequence value) {
+        int i = 0;
+        boolean negative = value.charAt(0) == '-';
+        if (negative) {
+            i++;
+        }
+        if (i >= value.length()) {
+            throw new IllegalArgumentException("MemoryIndex json number format error:" + value + ", line:" + line);
+        }
+        long result = 0;
+        for (; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch < '0' || ch > '9') {
+                throw new IllegalArgumentException("MemoryIndex json number format error:" + value + ", line:" + line);
+            }
+            result = result * 10 + (ch - '0');
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * 读取字符串，开头的引号已经读取
+     */
+    private String readString() throws IOException {
+        chars.setLength(0);
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                throw syntaxError("unterminated string", c);
+            } else if (c == '"') {
+                return chars.toString();
+            } else if (c == '\\') {
+                int escape = read();
+                switch (escape) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        chars.append((char) escape);
+                        break;
+                    case 'b':
+                        chars.append('\b');
+                        break;
+                    case 'f':
+                        chars.append('\f');
+                        break;
+                    case 'n':
+                        chars.append('\n');
+                        break;
+                    case 'r':
+                        chars.append('\r');
+                        break;
+                    case 't':
+                        chars.append('\t');
+                        break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                throw syntaxError("invalid unicode escape", escape);
+                            }
+                            code = (code << 4) | digit;
+                        }
+                        chars.append((char) code);
+                        break;
+                    default:
+                        throw syntaxError("invalid escape", escape);
+                }
+            } else {
+                chars.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * 读取一个完整的json值的原始文本，用于对象、数组等复合值
+     */
+    private String readRaw() throws IOException {
+        raw.setLength(0);
+        recording = true;
+        try {
+            skipValue();
+        } finally {
+            recording = false;
+        }
+        return raw.toString();
+    }
+
+    /**
+     * 跳过一个完整的json值
+     */
+    private void skipValue() throws IOException {
+        int c = skipWhitespace();
+        if (c == '"') {
+            read();
+            skipString();
+            return;
+        }
+        if (c != '{' && c != '[') {
+            // 数值、true、false、null
+            while ((c = peek()) >= 0 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+                read();
+            }
+            return;
+        }
+        int depth = 0;
+        do {
+            c = read();
+            if (c < 0) {
+                throw syntaxError("unterminated value", c);
+            } else if (c == '"') {
+                skipString();
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        } while (depth > 0);
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                throw syntaxError("unterminated string", c);
+            } else if (c == '\\') {
+                read();
+            } else if (c == '"') {
+                return;
+            }
+        }
+    }
+
+    private void expectLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            int c = read();
+            if (c != literal.charAt(i)) {
+                throw syntaxError("expected " + literal, c);
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = skipWhitespace();
+        if (c != expected) {
+            throw syntaxError("expected '" + expected + "'", c);
+        }
+        pos++;
+    }
+
+    /**
+     * 跳过空白字符，返回下一个字符但不消费
+     */
+    private int skipWhitespace() throws IOException {
+        int c;
+        while ((c = peek()) >= 0 && Character.isWhitespace(c)) {
+            read();
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (pos >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos];
+    }
+
+    private int read() throws IOException {
+        if (pos >= limit && !fill()) {
+            return -1;
+        }
+        char c = buffer[pos++];
+        if (c == '\n') {
+            line++;
+        }
+        if (recording) {
+            raw.append(c);
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        int n = reader.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    private IllegalArgumentException syntaxError(String message, int c) {
+        String found = c < 0 ? "EOF" : String.valueOf((char) c);
+        return new IllegalArgumentException("MemoryIndex json format error: " + message + ", found:" + found + ", line:" + line);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,61 @@
+package org.lccy.lucene.memory.loader;
+
+import org.apache.lucene.document.Document;
+import org.lccy.lucene.memory.builder.DocumentBuilder;
+import org.lccy.lucene.memory.builder.ReusableDocument;
+import org.lccy.lucene.memory.index.config.IndexConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式的索引数据加载接口，只需要实现{@link #load(IndexConfig, IndexDataConsumer)}<br/>
+ * {@link #load(IndexConfig)}默认把流式加载的数据收集为列表，MemoryIndex导入时不会调用
+ *
+ * @Date: 2026/10/17 23:59 <br>
+ * @author: liuchen11
+ */
+public interface StreamingIndexDataLoader extends IndexDataLoader {
+
+    /**
+     * 流式加载数据，每加载一条交给consumer，consumer阻塞时应该暂停加载
+     *
+     * @param indexConfig
+     * @param consumer
+     */
+    @Override
+    void load(IndexConfig indexConfig, IndexDataConsumer consumer);
+
+    /**
+     * 加载全部数据到列表
+     *
+     * @return
+     */
+    @Override
+    default List<Document> load(IndexConfig indexConfig) {
+        List<Document> result = new ArrayList<>();
+        load(indexConfig, new IndexDataConsumer() {
+            @Override
+            public void accept(Document document) {
+                result.add(document);
+            }
+
+            @Override
+            public void accept(Map<String, Object> source) {
+                result.add(DocumentBuilder.build(source, indexConfig));
+            }
+
+            @Override
+            public ReusableDocument obtain() {
+                return new ReusableDocument(indexConfig.getDocumentPlan());
+            }
+
+            @Override
+            public void accept(ReusableDocument document) {
+                result.add(document.getDocument());
+            }
+        });
+        return result;
+    }
+}
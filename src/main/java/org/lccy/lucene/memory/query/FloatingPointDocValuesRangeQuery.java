@@ -0,0 +1,101 @@
+package org.lccy.lucene.memory.query;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.*;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * 只保存DocValues的float、double字段的范围查询<br/>
+ * NumericDocValues中保存的是浮点数的IEEE位表示（与排序时的读取方式一致），不能直接按long比较，逐个文档还原后比较
+ *
+ * @Date: 2026/10/17 20:35 <br>
+ * @author: liuchen11
+ */
+public final class FloatingPointDocValuesRangeQuery extends Query {
+
+    private final String field;
+    // true为float字段，false为double字段
+    private final boolean floatValue;
+    private final double lowerValue;
+    private final double upperValue;
+
+    /**
+     * @param field      字段名
+     * @param floatValue 是否为float字段
+     * @param lowerValue 下限（包含）
+     * @param upperValue 上限（包含）
+     */
+    public FloatingPointDocValuesRangeQuery(String field, boolean floatValue, double lowerValue, double upperValue) {
+        this.field = Objects.requireNonNull(field);
+        this.floatValue = floatValue;
+        this.lowerValue = lowerValue;
+        this.upperValue = upperValue;
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+        return new ConstantScoreWeight(this, boost) {
+            @Override
+            public Scorer scorer(LeafReaderContext context) throws IOException {
+                NumericDocValues values = context.reader().getNumericDocValues(field);
+                if (values == null) {
+                    return null;
+                }
+                TwoPhaseIterator iterator = new TwoPhaseIterator(values) {
+                    @Override
+                    public boolean matches() throws IOException {
+                        long bits = values.longValue();
+                        double value = floatValue ? Float.intBitsToFloat((int) bits) : Double.longBitsToDouble(bits);
+                        return value >= lowerValue && value <= upperValue;
+                    }
+
+                    @Override
+                    public float matchCost() {
+                        return 2;
+                    }
+                };
+                return new ConstantScoreScorer(this, score(), scoreMode, iterator);
+            }
+
+            @Override
+            public boolean isCacheable(LeafReaderContext ctx) {
+                return DocValues.isCacheable(ctx, field);
+            }
+        };
+    }
+
+    @Override
+    public void visit(QueryVisitor visitor) {
+        if (visitor.acceptField(field)) {
+            visitor.visitLeaf(this);
+        }
+    }
+
+    @Override
+    public String toString(String defaultField) {
+        StringBuilder b = new StringBuilder();
+        if (!field.equals(defaultField)) {
+            b.append(field).append(':');
+        }
+        return b.append('[').append(lowerValue).append(" TO ").append(upperValue).append(']').toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!sameClassAs(other)) {
+            return false;
+        }
+        FloatingPointDocValuesRangeQuery that = (FloatingPointDocValuesRangeQuery) other;
+        return field.equals(that.field) && floatValue == that.floatValue
+                && Double.compare(lowerValue, that.lowerValue) == 0 && Double.compare(upperValue, that.upperValue) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(classHash(), field, floatValue, lowerValue, upperValue);
+    }
+}
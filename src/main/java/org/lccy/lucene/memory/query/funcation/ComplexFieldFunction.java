@@ -4,6 +4,7 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.Explanation;
+import org.lccy.lucene.memory.builder.DocumentLoader;
 import org.lccy.lucene.memory.constants.Constants;
 import org.lccy.lucene.memory.exception.LuceneException;
 import org.lccy.lucene.memory.index.config.IndexConfig;
@@ -41,7 +42,7 @@ public class ComplexFieldFunction implements ScoreFunction {
     @Override
     public double score(LeafReaderContext context, int docId, float subQueryScore) throws LuceneException, IOException {
 
-        Document document = context.reader().document(docId);
+        Document document = DocumentLoader.load(context.reader(), docId, indexConfig);
         String categoryName = csw.getCategoryField();
         String categoryCode = getStrValue(document.getField(categoryName), indexConfig.getFieldConfig(categoryName));
         if (CommonUtil.isEmpty(categoryCode)) {
@@ -212,7 +213,7 @@ public class ComplexFieldFunction implements ScoreFunction {
     @Override
     public Explanation explain(LeafReaderContext context, int doc, Explanation subQueryScore) throws LuceneException, IOException {
 
-        Document document = context.reader().document(doc);
+        Document document = DocumentLoader.load(context.reader(), doc, indexConfig);
         String categoryName = csw.getCategoryField();
         String categoryCode = getStrValue(document.getField(categoryName), indexConfig.getFieldConfig(categoryName));
         if (CommonUtil.isEmpty(categoryCode)) {
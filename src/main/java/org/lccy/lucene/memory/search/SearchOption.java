@@ -13,6 +13,7 @@ import org.apache.lucene.util.QueryBuilder;
 import org.lccy.lucene.memory.constants.FieldTypeEnum;
 import org.lccy.lucene.memory.constants.SearchCriteriaSettingKey;
 import org.lccy.lucene.memory.exception.QueryException;
+import org.lccy.lucene.memory.query.FloatingPointDocValuesRangeQuery;
 import org.lccy.lucene.memory.index.config.IndexConfig;
 import org.lccy.lucene.memory.index.mapping.IndexFieldMapping;
 import org.lccy.lucene.memory.util.DateUtil;
@@ -310,7 +311,11 @@ public class SearchOption {
                             if (!upperInclude && upperDate != Long.MIN_VALUE) {
                                 upperDate = Math.addExact(upperDate, -1);
                             }
-                            query = LongPoint.newRangeQuery(field, lowerDate, upperDate);
+                            if (fieldConf.isDocValueOnly()) {
+                                query = NumericDocValuesField.newSlowRangeQuery(field, lowerDate, upperDate);
+                            } else {
+                                query = LongPoint.newRangeQuery(field, lowerDate, upperDate);
+                            }
                             break;
                         case LONG:
                             long lowerLong;
@@ -331,7 +336,11 @@ public class SearchOption {
                             if (!upperInclude && upperLong != Long.MIN_VALUE) {
                                 upperLong = Math.addExact(upperLong, -1);
                             }
-                            query = LongPoint.newRangeQuery(field, lowerLong, upperLong);
+                            if (fieldConf.isDocValueOnly()) {
+                                query = NumericDocValuesField.newSlowRangeQuery(field, lowerLong, upperLong);
+                            } else {
+                                query = LongPoint.newRangeQuery(field, lowerLong, upperLong);
+                            }
                             break;
 
                         case FLOAT:
@@ -353,7 +362,11 @@ public class SearchOption {
                             if (!upperInclude && upperFloat != Float.MIN_VALUE) {
                                 upperFloat = upperFloat - 1f;
                             }
-                            query = FloatPoint.newRangeQuery(field, lowerFloat, upperFloat);
+                            if (fieldConf.isDocValueOnly()) {
+                                query = new FloatingPointDocValuesRangeQuery(field, true, lowerFloat, upperFloat);
+                            } else {
+                                query = FloatPoint.newRangeQuery(field, lowerFloat, upperFloat);
+                            }
                             break;
 
                         case DOUBLE:
@@ -375,7 +388,11 @@ public class SearchOption {
                             if (!upperInclude && upperDouble != Double.MIN_VALUE) {
                                 upperDouble = upperDouble - 1;
                             }
-                            query = DoublePoint.newRangeQuery(field, lowerDouble, upperDouble);
+                            if (fieldConf.isDocValueOnly()) {
+                                query = new FloatingPointDocValuesRangeQuery(field, false, lowerDouble, upperDouble);
+                            } else {
+                                query = DoublePoint.newRangeQuery(field, lowerDouble, upperDouble);
+                            }
                             break;
                         default:
                             throw new QueryException("Only keyword | long | date | float | double field support range query");
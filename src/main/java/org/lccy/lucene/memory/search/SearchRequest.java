@@ -4,7 +4,9 @@ import lombok.Getter;
 import lombok.Setter;
 import org.apache.lucene.search.ScoreDoc;
 import org.lccy.lucene.memory.aggs.collector.Aggregator;
+import org.lccy.lucene.memory.aggs.collector.AggregatorFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -33,8 +35,10 @@ public class SearchRequest {
     private List<String> exclude;
     // 在查询结果上继续过滤结果集，比如查询指定数据、去重等，但是此时总条数是不精确的，分页查询时禁用，适合查询size很大时，取topN的数据
     private SearchResultFilter filter;
-    // 分组查询条件
+    // 分组查询条件，只作为分组定义使用，查询时创建新的分组收集器，可以重复使用
     private List<Aggregator> aggregators;
+    // 分组定义，不可变，可以在多次查询间复用，与aggregators同时设置时合并
+    private List<AggregatorFactory> aggregations;
     // 执行计划
     private boolean explain = false;
 
@@ -51,4 +55,19 @@ public class SearchRequest {
         this.criteriaList = criteriaList;
     }
 
+    /**
+     * 本次查询的所有分组定义，没有分组时返回空列表
+     */
+    public List<AggregatorFactory> aggregatorFactories() {
+        List<AggregatorFactory> factories = new ArrayList<>();
+        if (aggregators != null) {
+            for (Aggregator aggregator : aggregators) {
+                factories.add(aggregator.factory());
+            }
+        }
+        if (aggregations != null) {
+            factories.addAll(aggregations);
+        }
+        return factories;
+    }
 }
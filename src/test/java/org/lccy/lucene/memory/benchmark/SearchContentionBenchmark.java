@@ -0,0 +1,166 @@
+package org.lccy.lucene.memory.benchmark;
+
+import org.apache.lucene.document.Document;
+import org.lccy.lucene.memory.builder.DocumentBuilder;
+import org.lccy.lucene.memory.constants.FieldTypeEnum;
+import org.lccy.lucene.memory.index.MemoryIndex;
+import org.lccy.lucene.memory.index.config.IndexConfig;
+import org.lccy.lucene.memory.index.mapping.IndexFieldMapping;
+import org.lccy.lucene.memory.index.mapping.IndexSettingMapping;
+import org.lccy.lucene.memory.search.PageArg;
+import org.lccy.lucene.memory.search.SearchCriteria;
+import org.lccy.lucene.memory.search.SearchOption;
+import org.lccy.lucene.memory.search.SearchRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 检索路径的并发压测：1到64个检索线程同时执行search、count，观察吞吐随线程数的变化<br/>
+ * backgroundWrites为true时另有一个线程持续写入并刷新，检索线程在索引代的引用计数上并发获取、释放IndexSearcher<br/>
+ * 运行：main方法依次以1、2、4、8、16、32、64个线程执行，输出各线程数的吞吐和相对单线程的加速比
+ *
+ * @Date: 2026/10/17 10:30 <br>
+ * @author: liuchen11
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchContentionBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+    private static final int CATEGORIES = 100;
+
+    @Param({"100000"})
+    private int numDocs;
+
+    @Param({"false", "true"})
+    private boolean backgroundWrites;
+
+    private MemoryIndex memoryIndex;
+    private Thread writer;
+    private volatile boolean running;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        IndexConfig indexConfig = indexConfig();
+        memoryIndex = new MemoryIndex(indexConfig, config -> {
+            List<Document> documents = new ArrayList<>(numDocs);
+            for (int i = 0; i < numDocs; i++) {
+                documents.add(DocumentBuilder.build(source(i), config));
+            }
+            return documents;
+        });
+        if (backgroundWrites) {
+            running = true;
+            writer = new Thread(() -> {
+                // 持续写入并由定时任务刷新，检索线程会不断切换到新打开的IndexReader
+                while (running) {
+                    memoryIndex.insertUpdate(source(ThreadLocalRandom.current().nextInt(numDocs)));
+                }
+            }, "benchmark-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join();
+        }
+        memoryIndex.close();
+    }
+
+    @Benchmark
+    public void search(Blackhole blackhole) {
+        String category = "c" + ThreadLocalRandom.current().nextInt(CATEGORIES);
+        List<SearchCriteria> criteriaList = Collections.singletonList(new SearchCriteria("category", category,
+                new SearchOption(SearchOption.SearchLogic.filter, SearchOption.SearchType.term)));
+        blackhole.consume(memoryIndex.search(new SearchRequest(new PageArg(1, 10), criteriaList)));
+    }
+
+    @Benchmark
+    public int count() {
+        return memoryIndex.count();
+    }
+
+    private IndexConfig indexConfig() {
+        IndexSettingMapping indexSetting = new IndexSettingMapping();
+        indexSetting.setRefreshInterval(100);
+        IndexFieldMapping id = new IndexFieldMapping();
+        id.setName("id");
+        id.setType(FieldTypeEnum.KEYWORD);
+        id.setPrimary(true);
+        IndexFieldMapping category = new IndexFieldMapping();
+        category.setName("category");
+        category.setType(FieldTypeEnum.KEYWORD);
+        IndexFieldMapping price = new IndexFieldMapping();
+        price.setName("price");
+        price.setType(FieldTypeEnum.LONG);
+        IndexConfig indexConfig = new IndexConfig();
+        indexConfig.init(indexSetting, Arrays.asList(id, category, price));
+        return indexConfig;
+    }
+
+    private static Map<String, Object> source(int i) {
+        Map<String, Object> source = new HashMap<>();
+        source.put("id", String.valueOf(i));
+        source.put("category", "c" + (i % CATEGORIES));
+        source.put("price", (long) ThreadLocalRandom.current().nextInt(10000));
+        return source;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String benchmark = args.length > 0 ? args[0] : "search";
+        double baseline = 0;
+        List<String> lines = new ArrayList<>();
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(SearchContentionBenchmark.class.getSimpleName() + "." + benchmark + "$")
+                    .param("backgroundWrites", "false")
+                    .threads(threads)
+                    .build();
+            Collection<RunResult> results = new Runner(options).run();
+            for (RunResult result : results) {
+                double score = result.getPrimaryResult().getScore();
+                if (threads == 1) {
+                    baseline = score;
+                }
+                lines.add(String.format("threads=%-3d %14.1f ops/s  speedup=%.2f", threads, score,
+                        baseline > 0 ? score / baseline : 0));
+            }
+        }
+        lines.forEach(System.out::println);
+    }
+}